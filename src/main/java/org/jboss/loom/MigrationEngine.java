@@ -14,14 +14,17 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.UnknownHostException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.xml.parsers.DocumentBuilder;
 import org.eclipse.persistence.exceptions.JAXBException;
 import org.jboss.as.cli.batch.BatchedCommand;
-import org.jboss.as.controller.client.ModelControllerClient;
 import org.jboss.loom.actions.ActionDependencySorter;
 import org.jboss.loom.actions.CliCommandAction;
 import org.jboss.loom.actions.IMigrationAction;
 import org.jboss.loom.actions.ManualAction;
+import org.jboss.loom.actions.ParallelActionPerformer;
 import org.jboss.loom.actions.review.BeansXmlReview;
 import org.jboss.loom.actions.review.IActionReview;
 import org.jboss.loom.conf.AS7Config;
@@ -30,7 +33,6 @@ import org.jboss.loom.conf.GlobalConfiguration;
 import org.jboss.loom.ctx.DeploymentInfo;
 import org.jboss.loom.ctx.MigrationContext;
 import org.jboss.loom.ex.ActionException;
-import org.jboss.loom.ex.CliBatchException;
 import org.jboss.loom.ex.InitMigratorsExceptions;
 import org.jboss.loom.ex.LoadMigrationException;
 import org.jboss.loom.ex.MigrationException;
@@ -51,11 +53,17 @@ import org.jboss.loom.recog.ServerInfo;
 import org.jboss.loom.recog.ServerRecognizer;
 import org.jboss.loom.spi.IMigrator;
 import org.jboss.loom.tools.report.Reporter;
+import org.jboss.loom.utils.ParallelUtils;
+import org.jboss.loom.utils.Utils;
+import org.jboss.loom.utils.XmlDocumentCache;
 import org.jboss.loom.utils.XmlUtils;
 import org.jboss.loom.utils.as7.AS7CliUtils;
-import org.jboss.loom.utils.as7.BatchFailure;
-import org.jboss.loom.utils.as7.BatchedCommandWithAction;
+import org.jboss.loom.utils.as7.AS7ClientPool;
+import org.jboss.loom.utils.as7.CliBatchExecutor;
+import org.jboss.loom.utils.as7.OfflineConfigTarget;
+import org.jboss.loom.utils.compar.FileHashCache;
 import org.jboss.loom.utils.compar.FileHashComparer;
+import org.jboss.loom.utils.compar.FileHasher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -395,30 +403,24 @@ public class MigrationEngine {
         List<IMigrationAction> actions = ctx.getActions();
         List<IMigrationAction> sorted = ActionDependencySorter.sort( actions );
         
-        // Store CLI actions into an ordered list.
-        // In perform(), they are just put into a batch. Using this, we can tell which one failed.
-        List<CliCommandAction> cliActions = new LinkedList();
+        // With more threads, only the CLI batch is built here, in order; the rest is performed concurrently below.
+        boolean parallel = config.getGlobal().getParallelism() > 1;
 
         // Perform the actions.
         log.info(dryPrefix + "Performing actions:");
         for( IMigrationAction action : sorted ) {
-            if( action instanceof CliCommandAction )
-                cliActions.add((CliCommandAction) action);
-        
             log.info("    " + action.toDescription());
             action.setMigrationContext(ctx); // Again. To be sure.
             
             // On dry run, CliCommandActions can still be performed as they only add to the batch.
-            if( (action instanceof CliCommandAction) ||  ! dryRun )
-                try {
-                    action.perform();
-                } catch( ActionException ex ){
-                    throw ex;
-                } catch( Throwable ex ){
-                    throw new ActionException( action, "Failed to perform action:\n"+action.toDescription()+"\n    " + ex.getMessage(), ex);
-                }
+            if( (action instanceof CliCommandAction) || ! (dryRun || parallel) )
+                ParallelActionPerformer.performWrapped( action );
         }
         
+        // Perform the file actions concurrently, respecting the dependencies.
+        if( parallel && ! dryRun )
+            new ParallelActionPerformer( config.getGlobal().getParallelism() ).perform( sorted );
+        
         /// DEBUG: Dump created CLI operations
         log.debug(dryPrefix + "Management operations in batch:");
         int i = 1;
@@ -428,32 +430,18 @@ public class MigrationEngine {
 
         // Execution
         log.debug(dryPrefix + "Executing CLI batch:");
-        try {
-            if( ! dryRun )
-                AS7CliUtils.executeRequest( ctx.getBatch().toRequest(), config.getGlobal().getAS7Config() );
-        }
-        catch( CliBatchException ex ){
-            //Integer index = AS7CliUtils.parseFailedOperationIndex( ex.getResponseNode() );
-            BatchFailure failure = AS7CliUtils.extractFailedOperationNode( ex.getResponseNode() );
-            if( null == failure ){
-                log.warn("Unable to parse CLI batch operation index: " + ex.getResponseNode());
-                throw new MigrationException("Executing a CLI batch failed: " + ex, ex);
+        if( ! dryRun ){
+            GlobalConfiguration global = config.getGlobal();
+            try {
+                new CliBatchExecutor( ctx.getAS7Executor(), global.getCliChunkSize(), global.isCliChunkCommit() )
+                        .execute( ctx.getBatch().getCommands() );
+                if( ctx.getOfflineTarget() != null )
+                    ctx.getOfflineTarget().save();
+            }
+            finally {
+                // The model has changed (or might have, if a chunk failed).
+                ctx.getAS7Model().invalidate();
             }
-            
-            IMigrationAction causeAction;
-                    
-            // First, try if it's a BatchedCommandWithAction, and get the action if so.
-            BatchedCommand cmd = ctx.getBatch().getCommands().get( failure.getIndex() - 1 );
-            if( cmd instanceof BatchedCommandWithAction )
-                causeAction = ((BatchedCommandWithAction)cmd).getAction();
-            // Then shoot blindly into cliActions. May be wrong offset - some actions create multiple CLI commands! TODO.
-            else
-                causeAction = cliActions.get( failure.getIndex() - 1 );
-            
-            throw new ActionException( causeAction, "Executing a CLI batch failed: " + failure.getMessage());
-        }
-        catch( Exception ex ) {
-            throw new MigrationException("Executing a CLI batch failed: " + ex, ex);
         }
         
     }// performActions()
@@ -487,6 +475,9 @@ public class MigrationEngine {
                 throw new MigrationException( "Rollback failed: " + ex.formatDescription(), ex );
             }
         }
+        // Offline mode - restore the config file.
+        if( ctx.getOfflineTarget() != null )
+            ctx.getOfflineTarget().rollback();
     }
     
     private void announceManualActions(){
@@ -527,14 +518,72 @@ public class MigrationEngine {
      */
     private void loadASourceServerConfig() throws MigrationException {
         log.debug("======== loadASourceServerConfig() ========");
+        
+        // Several migrators read the same files; Parse each once, and release them all once loaded.
+        XmlDocumentCache docCache = new XmlDocumentCache();
+        XmlUtils.setDocumentCache( docCache );
         try {
+            int threads = Math.min( config.getGlobal().getParallelism(), this.migrators.size() );
+            if( threads > 1 ){
+                loadASourceServerConfigParallel( threads );
+                return;
+            }
+            
             for (IMigrator mig : this.migrators) {
                 log.debug("    Scanning with " + mig.getClass().getSimpleName());
                 mig.loadSourceServerConfig(this.ctx);
             }
         } catch (JAXBException e) {
             throw new LoadMigrationException(e);
+        } finally {
+            XmlUtils.setDocumentCache( null );
+            docCache.clear();
+        }
+    }
+    
+    /**
+     *  Lets the migrators load the source server config concurrently.
+     *  The migrators read disjoint parts of the source server, and store the data in a synchronized map.
+     *  All migrators are let finish; the failures are reported together, in the order of migrators.
+     */
+    private void loadASourceServerConfigParallel( int threads ) throws MigrationException {
+        log.debug("    Loading with " + threads + " threads.");
+        
+        ExecutorService pool = ParallelUtils.createPool( threads, "SourceConfigLoader" );
+        List<Future<Void>> futures = new ArrayList( this.migrators.size() );
+        try {
+            for( final IMigrator mig : this.migrators ) {
+                futures.add( pool.submit( new Callable<Void>() {
+                    @Override public Void call() throws Exception {
+                        log.debug("    Scanning with " + mig.getClass().getSimpleName());
+                        mig.loadSourceServerConfig( MigrationEngine.this.ctx );
+                        return null;
+                    }
+                }));
+            }
         }
+        finally {
+            ParallelUtils.shutdown( pool );
+        }
+        
+        List<Exception> exs = new LinkedList();
+        for( int i = 0; i < futures.size(); i++ ) {
+            try {
+                ParallelUtils.getUnwrapped( futures.get(i) );
+            }
+            catch( JAXBException ex ) {
+                exs.add( new LoadMigrationException( ex ) );
+            }
+            catch( Exception ex ) {
+                String migName = this.migrators.get(i).getClass().getSimpleName();
+                exs.add( ex instanceof MigrationException ? ex : new LoadMigrationException( migName + " failed: " + ex.getMessage(), ex ) );
+            }
+        }
+        
+        // Same order as if loaded serially.
+        this.ctx.sortMigrationData( this.migrators );
+        
+        MigrationExceptions.wrapExceptions( exs, "Failed loading source server config: " );
     }
     
     
@@ -544,6 +593,11 @@ public class MigrationEngine {
     private void recognizeSourceServer() throws MigrationException {
         log.debug("======== recognizeSourceServer() ========");
         File serverDir = new File(config.getGlobal().getAS5Config().getDir());
+        
+        // Reuse the hashes from the previous runs, for the files which didn't change.
+        File hashCacheFile = Utils.getCacheFile( config.getGlobal().getCacheDir(), "file-hashes", serverDir );
+        FileHashCache hashCache = hashCacheFile == null ? null : FileHashCache.load( hashCacheFile );
+        FileHashComparer.setHasher( new FileHasher( config.getGlobal().getParallelism(), hashCache ) );
         try {
             // Recognize
             ServerInfo serverInfo = ServerRecognizer.recognize( serverDir );
@@ -563,13 +617,15 @@ public class MigrationEngine {
         catch( Exception ex ) {
             throw new MigrationException("Failed recognizing the source server in " + serverDir + ":\n    " + ex.getMessage(), ex);
         }
+        finally {
+            if( hashCache != null )
+                hashCache.save();
+        }
     }
 
     // Helper for the above method.
     private static void announceHashComparisonResults( ServerInfo serverInfo, boolean noMissOrEmpty ) {
-        Map<Path, FileHashComparer.MatchResult> matches = serverInfo.getHashesComparisonResult().getMatches();
-        for( Map.Entry<Path, FileHashComparer.MatchResult> entry : matches.entrySet() ) {
-            if( entry.getValue() == FileHashComparer.MatchResult.MATCH )  continue;
+        for( Map.Entry<Path, FileHashComparer.MatchResult> entry : serverInfo.getHashesComparisonResult().getNonMatches() ) {
             if( entry.getValue() == FileHashComparer.MatchResult.MISSING && noMissOrEmpty )  continue;
             if( entry.getValue() == FileHashComparer.MatchResult.EMPTY   && noMissOrEmpty )  continue;
             log.info("    " + entry.getValue().rightPad() + ": " + entry.getKey());
@@ -616,20 +672,29 @@ public class MigrationEngine {
     // AS 7 management client connection.
     
     private void openManagementClient() throws MigrationException {
-        ModelControllerClient as7Client = null;
         AS7Config as7Config = config.getGlobal().getAS7Config();
+        
+        // Offline mode - work with the config file instead.
+        if( config.getGlobal().isOffline() ){
+            File configFile = new File( as7Config.getConfigFilePath() );
+            log.info("Offline mode - the changes are applied to " + configFile.getPath());
+            ctx.setOfflineTarget( new OfflineConfigTarget( configFile ).load() );
+            return;
+        }
+        
         try {
-            as7Client = ModelControllerClient.Factory.create( as7Config.getHost(), as7Config.getManagementPort() );
+            // Likely already created by the ConfigurationValidator.
+            ctx.setAS7ClientPool( AS7ClientPool.get( as7Config ) );
         }
         catch( UnknownHostException ex ){
             throw new MigrationException("Unknown AS 7 host: " + as7Config.getHost(), ex);
         }
-        ctx.setAS7ManagementClient( as7Client );
     }
 
     private void closeManagementClient(){
-        AS7CliUtils.safeClose( ctx.getAS7Client() );
-        ctx.setAS7ManagementClient( null );
+        ctx.setOfflineTarget( null );
+        ctx.setAS7ClientPool( null );
+        AS7ClientPool.closeAll();
     }
 
 
@@ -640,7 +705,7 @@ public class MigrationEngine {
     private void parseAS7Config() throws MigrationException {
         File as7configFile = new File( this.config.getGlobal().getAS7Config().getConfigFilePath() );
         try {
-            DocumentBuilder db = XmlUtils.createXmlDocumentBuilder();
+            DocumentBuilder db = XmlUtils.getDocumentBuilder();
             Document doc = db.parse(as7configFile);
             ctx.setAS7ConfigXmlDoc(doc);
             
@@ -146,11 +146,57 @@ public class MigratorApp {
                 continue;
             }
 
+            if( arg.equals("report.paged") ) {
+                globalConfig.setPagedReport(true);
+                continue;
+            }
+
             if( arg.startsWith("migrators.dir=") || arg.startsWith("migr.dir=") ) {
                 globalConfig.setExternalMigratorsDir( StringUtils.substringAfter(arg, "="));
                 continue;
             }
 
+            if( arg.startsWith("threads=") || arg.startsWith("parallelism=") ) {
+                String threads = StringUtils.substringAfter(arg, "=");
+                try {
+                    globalConfig.setParallelism( Integer.parseInt( threads ) );
+                } catch( NumberFormatException ex ){
+                    globalConfig.setParallelism( -1 );
+                }
+                continue;
+            }
+
+            if( arg.startsWith("cli.chunk=") ) {
+                String size = StringUtils.substringAfter(arg, "=");
+                try {
+                    globalConfig.setCliChunkSize( Integer.parseInt( size ) );
+                } catch( NumberFormatException ex ){
+                    globalConfig.setCliChunkSize( -1 );
+                }
+                continue;
+            }
+
+            if( arg.equals("dest.offline") || arg.equals("offline") ) {
+                globalConfig.setOffline(true);
+                continue;
+            }
+
+            if( arg.equals("cli.chunk.commit") ) {
+                globalConfig.setCliChunkCommit(true);
+                continue;
+            }
+
+            if( arg.startsWith("cache.dir=") ) {
+                String dir = StringUtils.substringAfter(arg, "=");
+                globalConfig.setCacheDir( dir.isEmpty() ? null : dir );
+                continue;
+            }
+
+            if( arg.equals("stock.migrate") ) {
+                globalConfig.setMigrateStockConfigs(true);
+                continue;
+            }
+
             
 
             // Module-specific configurations.
@@ -7,10 +7,15 @@
  */
 package org.jboss.loom.actions;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.jboss.loom.ctx.MigrationContext;
 import org.jboss.loom.ex.MigrationException;
@@ -33,7 +38,12 @@ public abstract class AbstractStatefulAction implements IMigrationAction {
     private StackTraceElement originStacktrace;
     private Class<? extends IMigrator> fromMigrator;
     private List<String> warnings = new LinkedList();
-    private List<IMigrationAction> deps = new LinkedList();
+    private List<IMigrationAction> deps = new DepsList();
+    
+    // Cached results of dependsOn(); null when not computed or invalidated.
+    private volatile Map<IMigrationAction, Integer> distances;
+    // Actions whose cached distances were computed through this one's dependencies.
+    private final Map<AbstractStatefulAction, Boolean> cachedBy = new IdentityHashMap();
     
 
     public AbstractStatefulAction(){
@@ -103,39 +113,87 @@ public abstract class AbstractStatefulAction implements IMigrationAction {
     
     /**
      *  {@inheritDoc}
+     * 
+     *  The distances to all transitive dependencies are computed at once by a breadth-first walk, and cached -
+     *  so the cache takes memory proportional to the number of transitive dependencies.
+     *  The cache is dropped when the dependencies of this action or of any action reached by the walk change;
+     *  Changes elsewhere, e.g. in other migrations, don't touch it.
      */
     @Override
-    public int dependsOn( IMigrationAction other ) throws CircularDependencyException {
-        
-        Set<IMigrationAction> visited = new HashSet();
-        visited.add( this );
-        visited.add( other );
-        
-        return dependsOn( other, visited );
-    }
-        
-    /**
-     *  {@inheritDoc}
-     */
-    private int dependsOn( IMigrationAction other, Set<IMigrationAction> visited ) throws CircularDependencyException {
+    public synchronized int dependsOn( IMigrationAction other ) throws CircularDependencyException {
         
         if( this.getDependencies().isEmpty() )
             return -1;
         if( this.equals( other ) )
             return 0;
-        if( this.getDependencies().contains( other ) )
-            return 1;
         
-        int minDist = Integer.MAX_VALUE;
-        for( IMigrationAction dep : this.getDependencies() ){
-            if( visited.contains( dep ) )
-                throw new CircularDependencyException(this, dep);
-            int dist = dep.dependsOn( other );
-            if( dist > 0 )
-                minDist = Math.min( dist, minDist );
+        Map<IMigrationAction, Integer> dists = this.distances;
+        if( dists == null )
+            this.distances = dists = computeDistances();
+        Integer dist = dists.get( other );
+        return dist == null ? -1 : dist;
+    }
+    
+    /**
+     *  Breadth-first walk through the dependencies; The first time an action is reached is the shortest distance.
+     *  Keyed by equals(), as the previous contains()-based implementation was.
+     */
+    private Map<IMigrationAction, Integer> computeDistances() throws CircularDependencyException {
+        Map<IMigrationAction, Integer> dists = new HashMap();
+        Map<IMigrationAction, IMigrationAction> parents = new IdentityHashMap();
+        Deque<IMigrationAction> queue = new ArrayDeque();
+        parents.put( this, null );
+        queue.add( this );
+        int levelEnd = 1, dist = 1; // Count of items up to the end of the current level, to know the distance.
+        int polled = 0;
+        
+        while( ! queue.isEmpty() ){
+            IMigrationAction cur = queue.poll();
+            for( IMigrationAction dep : cur.getDependencies() ) {
+                if( dep == this ){
+                    List<IMigrationAction> cycle = new LinkedList();
+                    cycle.add( this );
+                    for( IMigrationAction a = cur; a != null; a = parents.get(a) )
+                        cycle.add( 0, a );
+                    throw new CircularDependencyException( cycle );
+                }
+                if( parents.containsKey( dep ) )
+                    continue;
+                if( dep instanceof AbstractStatefulAction )
+                    ((AbstractStatefulAction) dep).registerCachedBy( this );
+                parents.put( dep, cur );
+                queue.add( dep );
+                if( ! dists.containsKey( dep ) )
+                    dists.put( dep, dist );
+            }
+            if( ++polled == levelEnd ){
+                levelEnd = polled + queue.size();
+                dist++;
+            }
         }
-        if( minDist == Integer.MAX_VALUE )  return -1;
-        else return minDist + 1;
+        return dists;
+    }
+    
+    private void registerCachedBy( AbstractStatefulAction action ) {
+        synchronized( this.cachedBy ){
+            this.cachedBy.put( action, Boolean.TRUE );
+        }
+    }
+
+    /**
+     *  Drops the cached distances of this action and of the actions which reached it when computing theirs.
+     */
+    private void dependenciesChanged() {
+        this.distances = null;
+        List<AbstractStatefulAction> dependents;
+        synchronized( this.cachedBy ){
+            if( this.cachedBy.isEmpty() )
+                return;
+            dependents = new ArrayList( this.cachedBy.keySet() );
+            this.cachedBy.clear();
+        }
+        for( AbstractStatefulAction dependent : dependents )
+            dependent.distances = null;
     }
     
     public static class CircularDependencyException extends MigrationException {
@@ -143,6 +201,41 @@ public abstract class AbstractStatefulAction implements IMigrationAction {
             super("Circular dependency of actions - somewhere between these:\n\n" 
                     + a.toDescription() + "\n\n" + b.toDescription());
         }
+        
+        /**
+         *  @param cycle  Actions, each depending on the next one; The last one is the same as the first.
+         */
+        public CircularDependencyException( List<IMigrationAction> cycle ) {
+            super( formatCycle( cycle ) );
+        }
+        
+        private static String formatCycle( List<IMigrationAction> cycle ) {
+            StringBuilder sb = new StringBuilder("Circular dependency of actions:\n");
+            boolean first = true;
+            for( IMigrationAction action : cycle ) {
+                sb.append( first ? "\n    " : "\n      ...depends on:\n    " ).append( action.toDescription() );
+                first = false;
+            }
+            return sb.toString();
+        }
+    }
+    
+    
+    /**
+     *  A list of dependencies which invalidates the cached distances on changes.
+     *  Also covers direct changes through getDependencies().
+     */
+    private class DepsList extends ArrayList<IMigrationAction> {
+        @Override public boolean add( IMigrationAction e ) { dependenciesChanged(); return super.add( e ); }
+        @Override public void add( int index, IMigrationAction e ) { dependenciesChanged(); super.add( index, e ); }
+        @Override public boolean addAll( Collection<? extends IMigrationAction> c ) { dependenciesChanged(); return super.addAll( c ); }
+        @Override public boolean addAll( int index, Collection<? extends IMigrationAction> c ) { dependenciesChanged(); return super.addAll( index, c ); }
+        @Override public IMigrationAction set( int index, IMigrationAction e ) { dependenciesChanged(); return super.set( index, e ); }
+        @Override public IMigrationAction remove( int index ) { dependenciesChanged(); return super.remove( index ); }
+        @Override public boolean remove( Object o ) { dependenciesChanged(); return super.remove( o ); }
+        @Override public boolean removeAll( Collection<?> c ) { dependenciesChanged(); return super.removeAll( c ); }
+        @Override public boolean retainAll( Collection<?> c ) { dependenciesChanged(); return super.retainAll( c ); }
+        @Override public void clear() { dependenciesChanged(); super.clear(); }
     }
     
     
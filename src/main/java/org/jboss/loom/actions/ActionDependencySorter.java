@@ -1,44 +1,116 @@
 package org.jboss.loom.actions;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import org.jboss.loom.actions.AbstractStatefulAction.CircularDependencyException;
 
 /**
  * Sorts a list of actions so that dependencies go first, and depending actions go after.
- * 
+ *
+ * It's a depth-first topological sort, so it takes O(V+E) - each action and each dependency is visited once.
+ * Each action's dependencies are placed right before it, in the order they were added;
+ * The actions which nothing in the list depends on keep their input order.
+ * That is not a stable sort - a dependency is pulled ahead of the independent actions which preceded it in the input.
+ * The walk is iterative, so long dependency chains don't exhaust the stack.
+ *
  * @Jira  MIGR-104
  * @author Ondrej Zizka, ozizka at redhat.com
  */
 public class ActionDependencySorter {
-    
-    public static <T extends IMigrationAction> List<T> sort( List<T> actions ){
-        
-        List<T> ret = new ArrayList(actions);
-        Collections.sort( ret, new DepComparator() );
-        return ret;
-    }
-    
-    static class DepComparator implements Comparator<IMigrationAction> {
-        @Override
-        public int compare( IMigrationAction o1, IMigrationAction o2 ) {
-            try {
-                int a = o1.dependsOn( o2 );
-                if( a != -1 )  return -a;
-
-                int b = o2.dependsOn( o1 );
-                if( b != -1 )  return -b;
-                
-                //return Integer.compare( o1.hashCode(), o2.hashCode() ); // For deterministic behavior.
-                return 0; // All right that was not a good idea - it breaks those from Migrators which don't set dependency yet...
-            }
-            catch( AbstractStatefulAction.CircularDependencyException ex ){
-                throw new RuntimeException( ex );
+
+    // DFS states. Unvisited actions are not in the map at all.
+    private static final Boolean IN_PROGRESS = Boolean.FALSE;
+    private static final Boolean DONE = Boolean.TRUE;
+
+
+    /**
+     *  @throws CircularDependencyException  if the actions' dependencies form a cycle; The message contains the whole cycle.
+     */
+    public static <T extends IMigrationAction> List<T> sort( List<T> actions ) throws CircularDependencyException {
+
+        // How many times is each instance in the list, and which instance to use for equal dependencies.
+        Map<IMigrationAction, Integer> counts = new IdentityHashMap( actions.size() );
+        Map<IMigrationAction, IMigrationAction> canonical = new HashMap( actions.size() );
+        for( T action : actions ) {
+            Integer count = counts.get( action );
+            counts.put( action, count == null ? 1 : count + 1 );
+            if( ! canonical.containsKey( action ) )
+                canonical.put( action, action );
+        }
+
+        List<T> ret = new ArrayList( actions.size() );
+
+        Map<IMigrationAction, Boolean> state = new IdentityHashMap( actions.size() );
+        // Current DFS path, and the iterators over dependencies of the actions on it.
+        List<IMigrationAction> path = new ArrayList();
+        List<Iterator<IMigrationAction>> iters = new ArrayList();
+
+        for( T root : actions ) {
+            if( state.containsKey( root ) )  continue;
+
+            state.put( root, IN_PROGRESS );
+            path.add( root );
+            iters.add( root.getDependencies().iterator() );
+
+            while( ! path.isEmpty() ){
+                int top = path.size() - 1;
+                Iterator<IMigrationAction> it = iters.get( top );
+
+                // Descend to the next dependency.
+                if( it.hasNext() ){
+                    IMigrationAction dep = resolve( it.next(), counts, canonical );
+                    Boolean depState = state.get( dep );
+                    if( depState == null ){
+                        state.put( dep, IN_PROGRESS );
+                        path.add( dep );
+                        iters.add( dep.getDependencies().iterator() );
+                    }
+                    else if( depState == IN_PROGRESS )
+                        throw new CircularDependencyException( extractCycle( path, dep ) );
+                    continue;
+                }
+
+                // All dependencies are done -> this one is done.
+                IMigrationAction done = path.remove( top );
+                iters.remove( top );
+                state.put( done, DONE );
+
+                // Only return what was given; Dependencies out of the list are only walked through.
+                Integer count = counts.get( done );
+                for( int i = 0; count != null && i < count; i++ )
+                    ret.add( (T) done );
             }
         }
+        return ret;
     }
-    
-}// class
 
 
+    /**
+     *  Dependencies should reference the very same instances, but equal ones are accepted too.
+     */
+    private static IMigrationAction resolve( IMigrationAction dep, Map<IMigrationAction, Integer> counts, Map<IMigrationAction, IMigrationAction> canonical ) {
+        if( counts.containsKey( dep ) )
+            return dep;
+        IMigrationAction same = canonical.get( dep );
+        return same != null ? same : dep;
+    }
+
+
+    /**
+     *  @returns  The part of the path from the given action to the end, plus the action again.
+     */
+    private static List<IMigrationAction> extractCycle( List<IMigrationAction> path, IMigrationAction closing ) {
+        int from = path.size() - 1;
+        while( from > 0 && path.get( from ) != closing )
+            from--;
+        List<IMigrationAction> cycle = new ArrayList( path.subList( from, path.size() ) );
+        cycle.add( closing );
+        return cycle;
+    }
+
+}// class
+
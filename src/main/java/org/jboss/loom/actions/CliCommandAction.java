@@ -76,7 +76,7 @@ public class CliCommandAction extends AbstractStatefulAction {
         // If already exists, 
         boolean exists;
         try {
-            exists = AS7CliUtils.exists( this.command.getRequest(), getMigrationContext().getAS7Client() );
+            exists = getMigrationContext().getAS7Model().exists( this.command.getRequest() );
             //log.debug( "Exists? " + exists + "  :  " + this.command );
         } catch( Exception ex ) {
             throw new ActionException( this, "Failed querying AS 7 for existence of " + this.command.getRequest() + ": " + ex, ex );
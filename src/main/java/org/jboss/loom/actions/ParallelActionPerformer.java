@@ -0,0 +1,234 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.actions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import org.jboss.loom.ex.ActionException;
+import org.jboss.loom.ex.MigrationException;
+import org.jboss.loom.utils.ParallelUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Performs the file-system actions (everything except CliCommandAction) concurrently,
+ * respecting the dependencies between actions.
+ *
+ * The actions form a DAG through IMigrationAction.getDependencies().
+ * An action is submitted to the worker pool once all actions it depends on are done.
+ * CliCommandActions only add to the CLI batch, which the caller does in topological order beforehand;
+ * here they are just passed through, so that actions depending on them transitively still wait.
+ *
+ * Actions writing to the same destination are chained in the given order, so they never run concurrently.
+ *
+ * On the first failure, no more actions are started; the running ones are let finish,
+ * and the failure of the first action (in the given order) is thrown.
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class ParallelActionPerformer {
+    private static final Logger log = LoggerFactory.getLogger( ParallelActionPerformer.class );
+
+    private final int threads;
+
+
+    public ParallelActionPerformer( int threads ) {
+        this.threads = threads;
+    }
+
+
+    /**
+     *  @param sorted  Actions, sorted so that dependencies go first - see ActionDependencySorter.
+     */
+    public void perform( List<? extends IMigrationAction> sorted ) throws MigrationException {
+
+        final int n = sorted.size();
+
+        // Index the actions. Dependencies are references to the same instances, but fall back to equals().
+        Map<IMigrationAction, Integer> indexById = new IdentityHashMap( n );
+        Map<IMigrationAction, Integer> indexByEq = new HashMap( n );
+        for( int i = 0; i < n; i++ ) {
+            IMigrationAction action = sorted.get(i);
+            indexById.put( action, i );
+            if( ! indexByEq.containsKey( action ) )
+                indexByEq.put( action, i );
+        }
+
+        // Build the DAG: dependency -> dependents, and counts of unfinished dependencies.
+        final List<List<Integer>> dependents = new ArrayList( n );
+        final int[] pending = new int[n];
+        for( int i = 0; i < n; i++ )
+            dependents.add( new ArrayList<Integer>(2) );
+
+        Map<String, Integer> lastWithDest = new HashMap();
+        for( int i = 0; i < n; i++ ) {
+            IMigrationAction action = sorted.get(i);
+            for( IMigrationAction dep : action.getDependencies() ) {
+                Integer d = indexById.get( dep );
+                if( d == null )  d = indexByEq.get( dep );
+                if( d == null || d == i )  continue; // Not among the performed actions.
+                dependents.get( d ).add( i );
+                pending[i]++;
+            }
+            // Chain the actions writing to the same place.
+            String dest = getDestinationKey( action );
+            if( dest != null ){
+                Integer prev = lastWithDest.put( dest, i );
+                if( prev != null ){
+                    dependents.get( prev ).add( i );
+                    pending[i]++;
+                }
+            }
+        }
+
+        // Lowest index first - keeps the order close to the serial one.
+        PriorityQueue<Integer> ready = new PriorityQueue();
+        for( int i = 0; i < n; i++ )
+            if( pending[i] == 0 )  ready.add( i );
+
+        ExecutorService pool = ParallelUtils.createPool( this.threads, "ActionPerformer" );
+        CompletionService<Outcome> cs = new ExecutorCompletionService( pool );
+
+        int running = 0;
+        int done = 0;
+        Outcome firstFailure = null;
+        try {
+            while( true ){
+
+                // Dispatch what is ready, unless something failed already.
+                while( firstFailure == null && ! ready.isEmpty() ){
+                    final int i = ready.poll();
+                    final IMigrationAction action = sorted.get(i);
+
+                    // CLI actions are already in the batch - just pass through.
+                    if( ! isPerformedHere( action ) ){
+                        done++;
+                        release( i, dependents, pending, ready );
+                        continue;
+                    }
+
+                    cs.submit( new Callable<Outcome>() {
+                        @Override public Outcome call() {
+                            try {
+                                performWrapped( action );
+                                return new Outcome( i, null );
+                            } catch( ActionException ex ){
+                                return new Outcome( i, ex );
+                            }
+                        }
+                    });
+                    running++;
+                }
+
+                if( running == 0 )
+                    break;
+
+                // Wait for some action to finish.
+                Outcome outcome;
+                try {
+                    outcome = cs.take().get();
+                }
+                catch( InterruptedException ex ) {
+                    Thread.currentThread().interrupt();
+                    throw new MigrationException("Interrupted while performing the actions.", ex);
+                }
+                catch( ExecutionException ex ) {
+                    // performWrapped() wraps everything, so this shouldn't happen.
+                    throw new MigrationException("Failed performing an action: " + ex.getCause(), ex.getCause());
+                }
+                running--;
+
+                if( outcome.error != null ){
+                    if( firstFailure == null || outcome.index < firstFailure.index )
+                        firstFailure = outcome;
+                    continue;
+                }
+                done++;
+                release( outcome.index, dependents, pending, ready );
+            }
+        }
+        finally {
+            ParallelUtils.shutdown( pool );
+        }
+
+        if( firstFailure != null )
+            throw firstFailure.error;
+
+        if( done < n )
+            throw new MigrationException("Only " + done + " of " + n + " actions could be performed"
+                    + " - the rest has unsatisfiable (circular) dependencies.");
+
+        log.debug("    Performed " + n + " actions with " + this.threads + " threads.");
+    }
+
+
+    /**
+     *  Marks the action as done and moves the dependents which have nothing else to wait for to the ready queue.
+     */
+    private static void release( int i, List<List<Integer>> dependents, int[] pending, PriorityQueue<Integer> ready ) {
+        for( int dependent : dependents.get(i) ) {
+            if( --pending[dependent] == 0 )
+                ready.add( dependent );
+        }
+    }
+
+
+    /**
+     *  CliCommandActions only add to the batch, which is done by the caller, serially and in order.
+     */
+    public static boolean isPerformedHere( IMigrationAction action ) {
+        return ! (action instanceof CliCommandAction);
+    }
+
+
+    /**
+     *  Actions with the same key write to the same place and must not run concurrently.
+     */
+    private static String getDestinationKey( IMigrationAction action ) {
+        if( action instanceof FileAbstractAction )
+            return ((FileAbstractAction) action).getDest().getAbsolutePath();
+        if( action instanceof ModuleCreationAction )
+            return "module:" + ((ModuleCreationAction) action).getModuleName();
+        return null;
+    }
+
+
+    /**
+     *  Performs the action, wrapping any failure into an ActionException.
+     */
+    public static void performWrapped( IMigrationAction action ) throws ActionException {
+        try {
+            action.perform();
+        } catch( ActionException ex ){
+            throw ex;
+        } catch( Throwable ex ){
+            throw new ActionException( action, "Failed to perform action:\n"+action.toDescription()+"\n    " + ex.getMessage(), ex);
+        }
+    }
+
+
+    private static class Outcome {
+        final int index;
+        final ActionException error;
+
+        Outcome( int index, ActionException error ) {
+            this.index = index;
+            this.error = error;
+        }
+    }
+
+}// class
@@ -2,7 +2,6 @@ package org.jboss.loom.actions.review;
 
 import java.io.File;
 import java.util.List;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -11,6 +10,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 import org.jboss.loom.actions.CopyFileAction;
 import org.jboss.loom.actions.IMigrationAction;
 import org.jboss.loom.ex.MigrationException;
+import org.jboss.loom.utils.XmlUtils;
 
 /**
  *  TODO: Check each <bean class="...">. If the class is org.jboss.*, WARN.
@@ -41,8 +41,8 @@ public class BeansXmlReview extends ActionReviewBase {
     
     private List<Bean> extractBeans( File beansFile ) throws MigrationException {
         try {
-            Unmarshaller unmarshaller = JAXBContext.newInstance(Deployment.class).createUnmarshaller();
-            Deployment depl = (Deployment) unmarshaller.unmarshal(beansFile);
+            Unmarshaller unmarshaller = XmlUtils.getUnmarshaller(Deployment.class);
+            Deployment depl = (Deployment) XmlUtils.unmarshal(unmarshaller, beansFile);
             return depl.beans;
         } catch( JAXBException ex ) {
             throw new MigrationException("Failed parsing " + beansFile.getAbsolutePath() + ":\n  " + ex, ex);
@@ -1,12 +1,11 @@
 package org.jboss.loom.conf;
 
 import java.io.File;
-import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.loom.utils.as7.AS7ClientPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,23 +66,38 @@ public class ConfigurationValidator {
         
         // Management host and port
         mgmt: {
+            // Offline mode - no server needed, but the config file must be there.
+            if( config.getGlobal().isOffline() ){
+                if( as7Config.getDir() != null && ! new File( as7Config.getConfigFilePath() ).isFile() )
+                    problems.add("dest.offline needs the AS 7 config file, not found: " + as7Config.getConfigFilePath());
+                // A failed migration restores the original file, so nothing committed would be kept.
+                if( config.getGlobal().isCliChunkCommit() )
+                    problems.add("cli.chunk.commit can't be used with dest.offline - the config file is written only if all chunks succeed.");
+                break mgmt;
+            }
+            
             if( as7Config.getManagementPort() == -1 ){
                 problems.add("dest.mgmt doesn't contain valid port after ':'.");
                 break mgmt;
             }
         
-            ModelControllerClient client = null;
+            // The client is kept in the pool for the migration itself.
             try {
-                client = ModelControllerClient.Factory.create(as7Config.getHost(), as7Config.getManagementPort());
-                client.close();
+                AS7ClientPool.get( as7Config );
             }
             catch( UnknownHostException ex ){
                 problems.add("Can't connect to AS 7 management: " + as7Config.getHost() + ":" + as7Config.getManagementPort());
             }
-            catch( IOException ex ){ } // Happens on close().
         }
         
         
+        // Parallelism
+        if( config.getGlobal().getParallelism() < 1 )
+            problems.add("threads must be a positive number.");
+        if( config.getGlobal().getCliChunkSize() < 0 )
+            problems.add("cli.chunk must be a positive number, or 0 for a single batch.");
+        
+        
         // App (deployment)
         Set<String> paths = config.getGlobal().getDeploymentsPaths();
         for( String string : paths ) {
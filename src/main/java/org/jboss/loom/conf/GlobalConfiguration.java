@@ -7,6 +7,7 @@
  */
 package org.jboss.loom.conf;
 
+import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -45,6 +46,27 @@ public class GlobalConfiguration {
     private String reportDir = "MigrationReport";
     
     private String externalMigratorsDir;
+    
+    /** How many threads to use for the parallelizable phases. 1 means everything runs serially. */
+    private int parallelism = 1;
+    
+    /** Max operations per CLI composite. 0 means the whole batch at once. */
+    private int cliChunkSize = 0;
+    
+    /** If a CLI chunk fails, keep the previous ones? By default, they are undone. */
+    private boolean cliChunkCommit = false;
+    
+    /** Apply the changes to the target config file, rather than through a running server. */
+    private boolean offline = false;
+    
+    /** Where to keep the indexes reused across runs. Null means they are not persisted. */
+    private String cacheDir = new File( System.getProperty("user.home"), ".jboss-migration/cache" ).getPath();
+    
+    /** Migrate also the source config files which are the same as in the distribution. */
+    private boolean migrateStockConfigs = false;
+    
+    /** Write the big HTML report sections to separate files, loaded by the page as needed. */
+    private boolean pagedReport = false;
 
     
     //<editor-fold defaultstate="collapsed" desc="get/set">
@@ -71,6 +93,27 @@ public class GlobalConfiguration {
 
     public String getExternalMigratorsDir() { return externalMigratorsDir; }
     public void setExternalMigratorsDir( String externalMigratorsDir ) { this.externalMigratorsDir = externalMigratorsDir; }
+
+    public int getParallelism() { return parallelism; }
+    public void setParallelism( int parallelism ) { this.parallelism = parallelism; }
+
+    public int getCliChunkSize() { return cliChunkSize; }
+    public void setCliChunkSize( int cliChunkSize ) { this.cliChunkSize = cliChunkSize; }
+
+    public boolean isCliChunkCommit() { return cliChunkCommit; }
+    public void setCliChunkCommit( boolean cliChunkCommit ) { this.cliChunkCommit = cliChunkCommit; }
+
+    public boolean isOffline() { return offline; }
+    public void setOffline( boolean offline ) { this.offline = offline; }
+
+    public String getCacheDir() { return cacheDir; }
+    public void setCacheDir( String cacheDir ) { this.cacheDir = cacheDir; }
+
+    public boolean isMigrateStockConfigs() { return migrateStockConfigs; }
+    public void setMigrateStockConfigs( boolean migrateStockConfigs ) { this.migrateStockConfigs = migrateStockConfigs; }
+
+    public boolean isPagedReport() { return pagedReport; }
+    public void setPagedReport( boolean pagedReport ) { this.pagedReport = pagedReport; }
     //</editor-fold>
 
     // JAXB
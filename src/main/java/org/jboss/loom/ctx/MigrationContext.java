@@ -7,6 +7,8 @@
  */
 package org.jboss.loom.ctx;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import org.jboss.as.cli.batch.Batch;
 import org.jboss.as.cli.batch.impl.DefaultBatch;
@@ -14,9 +16,21 @@ import org.jboss.as.controller.client.ModelControllerClient;
 import org.jboss.loom.actions.IMigrationAction;
 import org.jboss.loom.conf.AS7Config;
 import org.jboss.loom.conf.Configuration;
+import org.jboss.loom.conf.GlobalConfiguration;
 import org.jboss.loom.ex.MigrationException;
 import org.jboss.loom.recog.ServerInfo;
 import org.jboss.loom.spi.IMigrator;
+import org.jboss.loom.utils.JarClassIndex;
+import org.jboss.loom.utils.SourceTreeCatalog;
+import org.jboss.loom.utils.Utils;
+import org.jboss.loom.utils.UtilsAS5;
+import org.jboss.loom.utils.as7.AS7ClientPool;
+import org.jboss.loom.utils.as7.AS7ModelMirror;
+import org.jboss.loom.utils.as7.AS7ModuleIndex;
+import org.jboss.loom.utils.as7.IOperationExecutor;
+import org.jboss.loom.utils.as7.OfflineConfigTarget;
+import org.jboss.loom.utils.compar.ComparisonResult;
+import org.jboss.loom.utils.compar.FileHashComparer;
 import org.w3c.dom.Document;
 
 /**
@@ -32,7 +46,11 @@ public class MigrationContext {
     private Map<Class<? extends IMigrator>, IMigrator> migrators = new HashMap();
 
 
-    private final Map<Class<? extends IMigrator>, MigratorData> migrationData = new HashMap();
+    /**
+     * Synchronized, as the migrators may load the source server config concurrently.
+     * Kept in the order of migrators, see sortMigrationData().
+     */
+    private final Map<Class<? extends IMigrator>, MigratorData> migrationData = Collections.synchronizedMap( new LinkedHashMap() );
 
     private final List<IMigrationAction> actions = new LinkedList();
     // TBC: Roman said there are cases when the same file is suggested for copying by multiple migrators?
@@ -60,7 +78,22 @@ public class MigrationContext {
     // New batch holding all scripts from CliCommandAction
     private Batch batch = new DefaultBatch();
     
-    private ModelControllerClient as7Client;
+    private AS7ClientPool as7ClientPool;
+    
+    // Offline mode - the target config file instead of a running server.
+    private OfflineConfigTarget offlineTarget;
+    
+    // Local copy of the AS 7 management model, to save round trips.
+    private AS7ModelMirror as7Model;
+    
+    // Class -> .jar index of the source server libs; Built on first use.
+    private JarClassIndex as5ClassIndex;
+    
+    // Index of the target server's modules; Built on first use.
+    private AS7ModuleIndex as7ModuleIndex;
+    
+    // All files of the source server profile; Listed on first use.
+    private SourceTreeCatalog sourceTree;
 
     //private final AS7Config as7Config;
 
@@ -78,6 +111,13 @@ public class MigrationContext {
 
     public ServerInfo getSourceServer() { return sourceServer; }
     public void setSourceServer( ServerInfo sourceServer ) { this.sourceServer = sourceServer; }
+    /** Comparison of the source server files against its distribution; Null if not known. */
+    public ComparisonResult getSourceServerComparison() { return sourceServer == null ? null : sourceServer.getHashesComparisonResult(); }
+    /** Is the source server file the same as in the distribution? False if unknown. */
+    public boolean isStockFile( File file ) {
+        ComparisonResult res = getSourceServerComparison();
+        return res != null && res.getResult( file ) == FileHashComparer.MatchResult.MATCH;
+    }
 
     public List<DeploymentInfo> getDeployments() { return deploymentInfos; }
     public void setDeployments( List<DeploymentInfo> deploymentsDirs ) { this.deploymentInfos = deploymentsDirs; }
@@ -90,8 +130,21 @@ public class MigrationContext {
     public List<IMigrationAction> getActions() { return actions; }
 
     public Batch getBatch() { return batch; }
-    public void setAS7ManagementClient( ModelControllerClient as7Client ) { this.as7Client = as7Client; }
-    public ModelControllerClient getAS7Client() { return as7Client; }
+    public void setAS7ClientPool( AS7ClientPool pool ) {
+        this.as7ClientPool = pool;
+        this.as7Model = pool == null ? null : new AS7ModelMirror( pool );
+    }
+    public AS7ClientPool getAS7ClientPool() { return as7ClientPool; }
+    public void setOfflineTarget( OfflineConfigTarget target ) {
+        this.offlineTarget = target;
+        this.as7Model = target == null ? null : new AS7ModelMirror( target );
+    }
+    public OfflineConfigTarget getOfflineTarget() { return offlineTarget; }
+    /** Where to execute the management operations - the server, or the config file in offline mode. */
+    public IOperationExecutor getAS7Executor() { return offlineTarget != null ? offlineTarget : as7ClientPool; }
+    /** The current shared client; Don't keep it, it may be replaced after a connection failure. */
+    public ModelControllerClient getAS7Client() { return as7ClientPool == null ? null : as7ClientPool.getClient(); }
+    public AS7ModelMirror getAS7Model() { return as7Model; }
 
     public MigrationException getFinalException() { return finalException; }
     public void setFinalException( MigrationException finalException ) { this.finalException = finalException; }
@@ -111,4 +164,62 @@ public class MigrationContext {
     //</editor-fold>
 
 
+    /**
+     *  Index of the classes in the source server's lib dirs, built once per run and kept in the cache dir.
+     *  Synchronized, as the migrators may ask concurrently.
+     */
+    public synchronized JarClassIndex getAS5ClassIndex() throws IOException {
+        if( this.as5ClassIndex == null ){
+            GlobalConfiguration global = conf.getGlobal();
+            File[] dirs = UtilsAS5.getLibDirs( global.getAS5Config().getDir(), global.getAS5Config().getProfileName() );
+            File cacheFile = Utils.getCacheFile( global.getCacheDir(), "as5-classes", dirs );
+            this.as5ClassIndex = JarClassIndex.build( cacheFile, global.getParallelism(), dirs );
+        }
+        return this.as5ClassIndex;
+    }
+
+
+    /**
+     *  Index of the target server's modules repository, built once per run and kept in the cache dir.
+     */
+    public synchronized AS7ModuleIndex getAS7ModuleIndex() throws IOException {
+        if( this.as7ModuleIndex == null ){
+            GlobalConfiguration global = conf.getGlobal();
+            this.as7ModuleIndex = AS7ModuleIndex.build( global.getAS7Config().getModulesDir(), global.getCacheDir(), global.getParallelism() );
+        }
+        return this.as7ModuleIndex;
+    }
+
+
+    /**
+     *  The files of the source server's profile dir, listed once per run. Use for lookups instead of walking the dir.
+     */
+    public synchronized SourceTreeCatalog getSourceTree() throws IOException {
+        if( this.sourceTree == null ){
+            GlobalConfiguration global = conf.getGlobal();
+            this.sourceTree = SourceTreeCatalog.build( global.getAS5Config().getProfileDir(), global.getParallelism() );
+        }
+        return this.sourceTree;
+    }
+
+
+    /**
+     *  Re-orders the migration data according to the given migrators order,
+     *  so that the result doesn't depend on which migrator finished loading first.
+     *  Data of migrators not in the list go last, in their current order.
+     */
+    public void sortMigrationData( List<IMigrator> order ) {
+        synchronized( this.migrationData ){
+            Map<Class<? extends IMigrator>, MigratorData> rest = new LinkedHashMap( this.migrationData );
+            this.migrationData.clear();
+            for( IMigrator mig : order ) {
+                MigratorData data = rest.remove( mig.getClass() );
+                if( data != null )
+                    this.migrationData.put( mig.getClass(), data );
+            }
+            this.migrationData.putAll( rest );
+        }
+    }
+
+
 }// class
@@ -7,10 +7,17 @@
  */
 package org.jboss.loom.migrators;
 
+import java.io.File;
+import java.io.IOException;
 import org.apache.commons.collections.map.MultiValueMap;
 import org.jboss.loom.conf.Configuration;
 import org.jboss.loom.conf.GlobalConfiguration;
+import org.jboss.loom.ctx.MigrationContext;
+import org.jboss.loom.ex.LoadMigrationException;
 import org.jboss.loom.spi.IMigrator;
+import org.jboss.loom.utils.SourceTreeCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -19,6 +26,7 @@ import org.jboss.loom.spi.IMigrator;
  * @author Roman Jakubco
  */
 public abstract class AbstractMigrator implements IMigrator {
+    private static final Logger log = LoggerFactory.getLogger(AbstractMigrator.class);
 
     private GlobalConfiguration globalConfig;
 
@@ -87,4 +95,29 @@ public abstract class AbstractMigrator implements IMigrator {
         return ifExists_;
     }
 
+
+    /**
+     *  Whether to skip the given source config file because it's the same as in the distribution,
+     *  so migrating it would only recreate what the target has by default.
+     *  Only for the files where that holds - e.g. not login-config.xml, whose policies AS 7 doesn't have.
+     *  Never skips if the user set stock.migrate, or if the files weren't compared.
+     */
+    protected boolean skipStockConfigFile( MigrationContext ctx, File file ){
+        if( this.getGlobalConfig().isMigrateStockConfigs() || ! ctx.isStockFile( file ) )
+            return false;
+        log.info("    Skipping " + file.getPath() + " - same as in the distribution.");
+        return true;
+    }
+
+    /**
+     *  The source server's files, from the context; Listed on the first call.
+     */
+    protected SourceTreeCatalog getSourceTree( MigrationContext ctx ) throws LoadMigrationException {
+        try {
+            return ctx.getSourceTree();
+        } catch( IOException ex ) {
+            throw new LoadMigrationException("Failed listing the source server files: " + ex.getMessage(), ex);
+        }
+    }
+
 }// class
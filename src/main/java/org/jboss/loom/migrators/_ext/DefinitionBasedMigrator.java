@@ -67,7 +67,7 @@ public class DefinitionBasedMigrator extends AbstractMigrator implements IMigrat
     public void loadSourceServerConfig( MigrationContext ctx ) throws MigrationException {
         
         for( MigratorDefinition.XmlFileQueryDef query : this.descriptor.xmlQueries ) {
-            List<IConfigFragment> conf = XmlUtils.readXmlConfigFiles(
+            List<IConfigFragment> conf = XmlUtils.readXmlConfigFiles( getSourceTree( ctx ), getGlobalConfig().getParallelism(),
                     new File("."), query.pathMask, query.xpath, query.jaxbBean, query.subjectLabel);
             this.loads.put( query.id, new ConfigLoadResult( query, conf ) );
         }
@@ -10,12 +10,8 @@ package org.jboss.loom.migrators.connectionFactories;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.lang.StringUtils;
 import org.jboss.as.controller.client.helpers.ClientConstants;
 import org.jboss.dmr.ModelNode;
@@ -75,24 +71,25 @@ public class ResAdapterMigrator extends AbstractMigrator {
                 throw new LoadMigrationException("Can't read: " + dsFiles.getPath());
 
 
-            // -ds.xml files.
-            SuffixFileFilter sf = new SuffixFileFilter("-ds.xml");
-            Collection<File> dsXmls = FileUtils.listFiles(dsFiles, sf, FileFilterUtils.trueFileFilter());
+            // -ds.xml files. The parsed documents are shared with DatasourceMigrator.
+            List<File> dsXmls = ctx.getSourceTree().findBySuffix("-ds.xml", dsFiles);
             log.debug("  Found -ds.xml files #: " + dsXmls.size());
             if (dsXmls.isEmpty())
                 return;
 
             List<ConnectionFactoriesBean> connFactories = new LinkedList();
-            Unmarshaller dataUnmarshaller = JAXBContext.newInstance(ConnectionFactoriesBean.class).createUnmarshaller();
+            Unmarshaller dataUnmarshaller = XmlUtils.getUnmarshaller(ConnectionFactoriesBean.class);
 
             // For each -ds.xml
             for (File dsXml : dsXmls) {
                 Document doc = XmlUtils.parseFileToXmlDoc(dsXml);
 
-                Element element = doc.getDocumentElement();
-                if ("connection-factories".equals(element.getTagName())) {
-                    ConnectionFactoriesBean conn = (ConnectionFactoriesBean) dataUnmarshaller.unmarshal(dsXml);
-                    connFactories.add(conn);
+                synchronized (doc) {
+                    Element element = doc.getDocumentElement();
+                    if ("connection-factories".equals(element.getTagName())) {
+                        ConnectionFactoriesBean conn = (ConnectionFactoriesBean) dataUnmarshaller.unmarshal(doc);
+                        connFactories.add(conn);
+                    }
                 }
             }
 
@@ -154,10 +151,12 @@ public class ResAdapterMigrator extends AbstractMigrator {
             final File profileDir = getGlobalConfig().getAS5Config().getProfileDir(); //  .../deployments ?
             Collection<File> foundRARs;
             try {
-                foundRARs = Utils.searchForFileOrDir( referencedRAR, profileDir );
+                foundRARs = ctx.getSourceTree().findByName( referencedRAR, profileDir, true );
             } catch ( IOException ex ) {
                 throw new MigrationException("Can't find " + referencedRAR + ": " + ex.getMessage(), ex);
             }
+            if( foundRARs.isEmpty() )
+                throw new MigrationException("Can't find " + referencedRAR + " in " + profileDir.getAbsolutePath());
             File rarFrom = foundRARs.iterator().next();
             File rarTo = Utils.createPath(getGlobalConfig().getAS7Config().getDir(), "standalone", "deployments", rarFrom.getName());
             CopyFileAction action = new CopyFileAction( this.getClass(), rarFrom, rarTo, CopyFileAction.IfExists.SKIP);
@@ -7,9 +7,6 @@
  */
 package org.jboss.loom.migrators.dataSources;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.jboss.as.controller.client.helpers.ClientConstants;
 import org.jboss.dmr.ModelNode;
 import org.jboss.loom.utils.as7.CliAddScriptBuilder;
@@ -34,18 +31,16 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import org.jboss.loom.spi.ann.ConfigPartDescriptor;
-import org.jboss.loom.utils.ClassUtils;
 import org.jboss.loom.utils.UtilsAS5;
 import org.jboss.loom.utils.XmlUtils;
 import org.jboss.loom.utils.as7.AS7CliUtils;
-import org.jboss.loom.utils.as7.AS7ModuleUtils;
+import org.jboss.loom.utils.as7.AS7ModuleIndex;
 
 /**
  * Migrator of Datasource subsystem implementing IMigrator
@@ -84,21 +79,23 @@ public class DatasourceMigrator extends AbstractMigrator {
             if( ! dsFiles.canRead() )
                 throw new LoadMigrationException("Can't read: " + dsFiles);
             
-            SuffixFileFilter sf = new SuffixFileFilter("-ds.xml");
-            Collection<File> dsXmls = FileUtils.listFiles(dsFiles, sf, FileFilterUtils.trueFileFilter());
+            // The parsed documents are shared with ResAdapterMigrator.
+            List<File> dsXmls = ctx.getSourceTree().findBySuffix("-ds.xml", dsFiles);
             log.debug("  Found -ds.xml files #: " + dsXmls.size());
             if( dsXmls.isEmpty() )
                 return;
 
             List<DatasourcesBean> dsColl = new LinkedList();
-            Unmarshaller dataUnmarshaller = JAXBContext.newInstance(DatasourcesBean.class).createUnmarshaller();
+            Unmarshaller dataUnmarshaller = XmlUtils.getUnmarshaller(DatasourcesBean.class);
             
             for( File dsXml : dsXmls ) {
                 Document doc = XmlUtils.parseFileToXmlDoc( dsXml );
-                Element element = doc.getDocumentElement();
-                if( DATASOURCES_ROOT_ELEMENT_NAME.equals( element.getTagName() )){
-                    DatasourcesBean dataSources = (DatasourcesBean) dataUnmarshaller.unmarshal(dsXml);
-                    dsColl.add(dataSources);
+                synchronized( doc ){
+                    Element element = doc.getDocumentElement();
+                    if( DATASOURCES_ROOT_ELEMENT_NAME.equals( element.getTagName() )){
+                        DatasourcesBean dataSources = (DatasourcesBean) dataUnmarshaller.unmarshal(doc);
+                        dsColl.add(dataSources);
+                    }
                 }
             }
 
@@ -215,14 +212,14 @@ public class DatasourceMigrator extends AbstractMigrator {
         
         // Find out if the driver already exists in AS 7. If so, find which module and which configured JDBC driver it is.
         try {
-            File driverJarAS7 = ClassUtils.lookForJarWithClass( driverClass, getGlobalConfig().getAS7Config().getModulesDir() );
-            // A .jar with driver class found.
-            if( driverJarAS7 != null ){
-                log.info("Target server already contains JDBC driver '" + driverClass + "': " + driverJarAS7);
-                String driverModuleName = AS7ModuleUtils.identifyModuleContainingJar( getGlobalConfig().getAS7Config(), driverJarAS7 );
+            AS7ModuleIndex.ModuleInfo driverModuleAS7 = ctx.getAS7ModuleIndex().findModuleWithClass( driverClass );
+            // A module with the driver class found.
+            if( driverModuleAS7 != null ){
+                log.info("Target server already contains JDBC driver '" + driverClass + "' in module " + driverModuleAS7.getName());
+                String driverModuleName = driverModuleAS7.getName();
                 
                 // If a driver with that class exists, no actions needed. Return it's name.
-                String existingDiverName = AS7CliUtils.findJdbcDriverUsingModule( driverModuleName, ctx.getAS7Client() );
+                String existingDiverName = ctx.getAS7Model().findJdbcDriverUsingModule( driverModuleName );
                 if( existingDiverName != null )
                     return existingDiverName;
                 
@@ -241,9 +238,7 @@ public class DatasourceMigrator extends AbstractMigrator {
         // Find driver .jar in AS 5
         File driverJarAS5;
         try {
-            driverJarAS5 = UtilsAS5.findJarFileWithClass( driverClass, // TODO: return List<FIle>
-                getGlobalConfig().getAS5Config().getDir(),
-                getGlobalConfig().getAS5Config().getProfileName());
+            driverJarAS5 = UtilsAS5.findJarFileWithClass( driverClass, ctx.getAS5ClassIndex() ); // TODO: return List<FIle>
         }
         catch( IOException ex ) {
             throw new MigrationException("Finding .jar containing driver class '"+driverClass+"' in the target server failed:\n    " + ex .getMessage(), ex );
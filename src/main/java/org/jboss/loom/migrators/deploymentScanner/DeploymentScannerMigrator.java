@@ -18,10 +18,8 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import org.jboss.loom.conf.AS5Config;
 import org.jboss.loom.conf.AS7Config;
 import org.jboss.loom.conf.GlobalConfiguration;
@@ -106,12 +104,11 @@ public class DeploymentScannerMigrator extends AbstractMigrator {
             return valueList;
         
         try {
-            DocumentBuilder docBuilder = XmlUtils.createXmlDocumentBuilder();
+            DocumentBuilder docBuilder = XmlUtils.getDocumentBuilder();
             Document doc = docBuilder.parse(f);
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
             String exp = "/server/profile/subsystem/deployment-scanner";
-            NodeList nodeList = (NodeList) xpath.evaluate(exp, doc, XPathConstants.NODESET );
+            NodeList nodeList = (NodeList) XmlUtils.compileXPath(exp).evaluate(doc, XPathConstants.NODESET);
 
             int cnt = nodeList.getLength();
             for( int i =0; i < cnt; i++ ){
@@ -162,13 +159,12 @@ public class DeploymentScannerMigrator extends AbstractMigrator {
         try {
             Document destDoc = ctx.getAS7ConfigXmlDoc();
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
             String exp = "/server/profile/subsystem/deployment-scanner";
-            NodeList nList = (NodeList) xpath.evaluate(exp, destDoc, XPathConstants.NODESET);
+            NodeList nList = (NodeList) XmlUtils.compileXPath(exp).evaluate(destDoc, XPathConstants.NODESET);
 
             if (0 == nList.getLength()) {
                 // No deployment-scanner subsystem found.  Prep to add
-                Subsystem subsystem = createDeploymentScannerSubsystem( destDoc, ctx, xpath );
+                Subsystem subsystem = createDeploymentScannerSubsystem( destDoc, ctx );
                 if( subsystem != null ) {
                     SubsystemAction action = new SubsystemAction(subsystem, as7configFile, ctx.getAS7ConfigXmlDoc());
                     ctx.getActions().add(action);
@@ -224,13 +220,12 @@ public class DeploymentScannerMigrator extends AbstractMigrator {
     /* --------------------------------------------------------------------*/
 
     private Subsystem createDeploymentScannerSubsystem(Document destDoc,
-        MigrationContext ctx, XPath xpath)
+        MigrationContext ctx)
         throws JAXBException, XPathExpressionException {
 
         //deployment-scanner subsystem does not exist.  Create it.
         String exp = "/server/profile";
-        NodeList pList = (NodeList) xpath.evaluate(exp, destDoc,
-            XPathConstants.NODESET);
+        NodeList pList = (NodeList) XmlUtils.compileXPath(exp).evaluate(destDoc, XPathConstants.NODESET);
         Subsystem subsystem = null;
 
         if (pList.getLength() > 0) {
@@ -258,14 +253,13 @@ public class DeploymentScannerMigrator extends AbstractMigrator {
         List<ValueType> resultList = new LinkedList();
 
         try {
-            DocumentBuilder docBuilder = XmlUtils.createXmlDocumentBuilder();
+            DocumentBuilder docBuilder = XmlUtils.getDocumentBuilder();
             Document doc = docBuilder.parse(f);
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
             String exp = "/deployment/bean[@name='BootstrapProfileFactory']/property[@name='applicationURIs']//list[@elementClass='java.net.URI']";
-            Node  n = (Node) xpath.evaluate(exp, doc, XPathConstants.NODE);
+            Node  n = (Node) XmlUtils.compileXPath(exp).evaluate(doc, XPathConstants.NODE);
 
-            Unmarshaller unmarshaller = JAXBContext.newInstance(ListType.class).createUnmarshaller();
+            Unmarshaller unmarshaller = XmlUtils.getUnmarshaller(ListType.class);
             ListType l = (ListType) unmarshaller.unmarshal(n);
 
             for (ValueType v : l.getValue()) {
@@ -291,16 +285,15 @@ public class DeploymentScannerMigrator extends AbstractMigrator {
         try {
             File f = Utils.createPath(as5Config.getDeployDir(), "hdscanner-jboss-beans.xml");
 
-            DocumentBuilder docBuilder = XmlUtils.createXmlDocumentBuilder();
+            DocumentBuilder docBuilder = XmlUtils.getDocumentBuilder();
             Document doc = docBuilder.parse(f);
 
             // Get the data into a JAXB bean.
-            XPath xpath = XPathFactory.newInstance().newXPath();
             String exp = "/deployment/bean/property[@name='scanPeriod']";
-            Node node = (Node) xpath.evaluate(exp, doc, XPathConstants.NODE);
+            Node node = (Node) XmlUtils.compileXPath(exp).evaluate(doc, XPathConstants.NODE);
             if( node == null )
                 return result;
-            JAXBContext jaxbCtx = JAXBContext.newInstance(PropertyType.class);
+            JAXBContext jaxbCtx = XmlUtils.getJaxbContext(PropertyType.class);
             Unmarshaller unmarshaller = jaxbCtx.createUnmarshaller();
             PropertyType pType = (PropertyType) unmarshaller.unmarshal(node);
             
@@ -11,13 +11,12 @@ import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import org.jboss.loom.actions.ManualAction;
 import org.jboss.loom.ex.MigrationException;
 import org.jboss.loom.migrators.deploymentScanner.jaxb.StandaloneDeploymentScannerType;
+import org.jboss.loom.utils.XmlUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
@@ -60,9 +59,8 @@ public class StandaloneDeploymentScannerAction extends ManualAction {
 
         // confirm required xml element
         try {
-            XPath xpath = XPathFactory.newInstance().newXPath();
             String exp = "/server/profile/subsystem/deployment-scanner";
-            NodeList nList = (NodeList) xpath.evaluate(exp, destDoc, XPathConstants.NODESET);
+            NodeList nList = (NodeList) XmlUtils.compileXPath(exp).evaluate(destDoc, XPathConstants.NODESET);
 
             if( nList.getLength() == 0 )
                 throw new MigrationException("deployment-scanner subsystem not found in file: " + destDoc.getBaseURI());
@@ -18,10 +18,8 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.io.File;
 import org.jboss.loom.utils.XmlUtils;
 
@@ -57,9 +55,8 @@ public class SubsystemAction extends AbstractStatefulAction {
 
         // confirm required xml element
         try {
-            XPath xpath = XPathFactory.newInstance().newXPath();
             String exp = "/server/profile";
-            NodeList pList = (NodeList) xpath.evaluate(exp, destDoc, XPathConstants.NODESET);
+            NodeList pList = (NodeList) XmlUtils.compileXPath(exp).evaluate(destDoc, XPathConstants.NODESET);
             if (pList.getLength() == 0)
                 throw new MigrationException("profile element not found in file: " + destDoc.getBaseURI());
         }
@@ -73,15 +70,14 @@ public class SubsystemAction extends AbstractStatefulAction {
     public void perform() throws MigrationException {
 
         try {
-            DocumentBuilder docBuilder = XmlUtils.createXmlDocumentBuilder();
-            XPath xpath = XPathFactory.newInstance().newXPath();
+            DocumentBuilder docBuilder = XmlUtils.getDocumentBuilder();
             String exp = "/server/profile";
-            NodeList pList = (NodeList) xpath.evaluate(exp, destDoc, XPathConstants.NODESET);
+            NodeList pList = (NodeList) XmlUtils.compileXPath(exp).evaluate(destDoc, XPathConstants.NODESET);
 
             if(pList.getLength() == 0)
                 throw new MigrationException("profile element not found in file: " + destDoc.getBaseURI());
 
-            JAXBContext jaxbCtx = JAXBContext.newInstance(Subsystem.class);
+            JAXBContext jaxbCtx = XmlUtils.getJaxbContext(Subsystem.class);
             Marshaller marshaller = jaxbCtx.createMarshaller();
 
             // transform data into DOM obj for insertion
@@ -113,9 +109,8 @@ public class SubsystemAction extends AbstractStatefulAction {
     public void postValidate() throws MigrationException {
 
         try {
-            XPath xpath = XPathFactory.newInstance().newXPath();
             String exp = "/server/profile/subsystem/deployment-scanner";
-            NodeList pList = (NodeList) xpath.evaluate(exp, destDoc, XPathConstants.NODESET);
+            NodeList pList = (NodeList) XmlUtils.compileXPath(exp).evaluate(destDoc, XPathConstants.NODESET);
 
             if (pList.getLength() == 0)
                 throw new MigrationException("new deployment-scanner subsystem not successfully created");
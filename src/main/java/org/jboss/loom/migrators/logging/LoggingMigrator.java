@@ -10,7 +10,6 @@ package org.jboss.loom.migrators.logging;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.stream.XMLInputFactory;
@@ -35,11 +34,13 @@ import org.jboss.loom.migrators.AbstractMigrator;
 import org.jboss.loom.migrators.logging.jaxb.*;
 import org.jboss.loom.spi.IConfigFragment;
 import org.jboss.loom.spi.ann.ConfigPartDescriptor;
+import org.jboss.loom.utils.OfflineEntityResolver;
 import org.jboss.loom.utils.Utils;
 import org.jboss.loom.utils.UtilsAS5;
 import org.jboss.loom.utils.as7.AS7CliUtils;
 import org.jboss.loom.utils.as7.CliAddScriptBuilder;
 import org.jboss.loom.utils.as7.CliApiCommandBuilder;
+import org.jboss.loom.utils.XmlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -122,14 +123,20 @@ public class LoggingMigrator extends AbstractMigrator {
                     //"conf", "jboss-log4j.xml");
                     super.getGlobalConfig().getAS5Config().getConfDir(), "jboss-log4j.xml");
 
+            if( skipStockConfigFile( ctx, log4jConfFile ) ){
+                ctx.getMigrationData().put(LoggingMigrator.class, new MigratorData());
+                return;
+            }
+
             XMLInputFactory xif = XMLInputFactory.newFactory();
             xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            xif.setXMLResolver(OfflineEntityResolver.INSTANCE);
             XMLStreamReader xsr = xif.createXMLStreamReader(new StreamSource(log4jConfFile));
 
             //if( ! log4jConfFile.canRead())
             //    throw new LoadMigrationException("Cannot find/open file: " + log4jConfFile.getAbsolutePath());
             
-            Unmarshaller unmarshaller = JAXBContext.newInstance(LoggingAS5Bean.class).createUnmarshaller();
+            Unmarshaller unmarshaller = XmlUtils.getUnmarshaller(LoggingAS5Bean.class);
             LoggingAS5Bean loggingAS5 = (LoggingAS5Bean) unmarshaller.unmarshal(xsr);
 
             MigratorData mData = new MigratorData();
@@ -182,7 +189,7 @@ public class LoggingMigrator extends AbstractMigrator {
         // Appenders.
         HashMap<File, String> tempModules = new HashMap();
         for( AppenderBean appender : appenders) {
-            List<? extends IMigrationAction> actions = createAppenderAction( appender, tempModules );
+            List<? extends IMigrationAction> actions = createAppenderAction( appender, tempModules, ctx );
             for( IMigrationAction action : actions ) {
                 ctx.getActions().add( action );
                 appenderNamesToActions.put( appender.getAppenderName(), action );
@@ -247,17 +254,17 @@ public class LoggingMigrator extends AbstractMigrator {
      *
      * @param handler Custom-Handler with custom class, which must be deployed into AS7
      * @param tempModules Map containing names of the jar files and their created modules, which were already migrated
+     * @param ctx      migration context
      * @return  list containing CliCommandAction for adding Custom-Handler and ModuleCreationAction for adding module if
      *          needed
      * @throws MigrationException if class cannot be found in jars in AS5 structure
      */
-    private List<IMigrationAction> createCustomHandlerActions(CustomHandlerBean handler, HashMap<File, String> tempModules)
+    private List<IMigrationAction> createCustomHandlerActions(CustomHandlerBean handler, HashMap<File, String> tempModules, MigrationContext ctx)
             throws MigrationException {
         
         File fileJar;
         try {
-            fileJar = UtilsAS5.findJarFileWithClass(handler.getClassValue(), getGlobalConfig().getAS5Config().getDir(),
-                    getGlobalConfig().getAS5Config().getProfileName());
+            fileJar = UtilsAS5.findJarFileWithClass(handler.getClassValue(), ctx.getAS5ClassIndex());
         } catch (IOException ex) {
             throw new MigrationException("Failed finding jar with class " + handler.getClassValue() + ": " + ex.getMessage(), ex);
         }
@@ -307,7 +314,7 @@ public class LoggingMigrator extends AbstractMigrator {
      *  Processes AppenderBean. Adds actions to context!
      *  TODO: Refactor to return the action.
      */
-    private List<? extends IMigrationAction> createAppenderAction( AppenderBean appenderBean, HashMap<File, String> tempModules ) throws MigrationException {
+    private List<? extends IMigrationAction> createAppenderAction( AppenderBean appenderBean, HashMap<File, String> tempModules, MigrationContext ctx ) throws MigrationException {
         
         // Selection of classes which are stored in log4j or jboss logging jars.
         String cls = appenderBean.getAppenderClass();
@@ -316,7 +323,7 @@ public class LoggingMigrator extends AbstractMigrator {
             // In situation that the user creates own class with same name as classes in log4j or jboss logging => CustomHandler
             // Module for these handlers must be set with creation of ModuleCreationAction
             CustomHandlerBean handler = createCustomHandler(appenderBean, true);
-            return createCustomHandlerActions(handler, tempModules);
+            return createCustomHandlerActions(handler, tempModules, ctx);
         }
             
 
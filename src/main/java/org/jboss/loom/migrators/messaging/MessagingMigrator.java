@@ -56,7 +56,7 @@ public class MessagingMigrator extends AbstractMigrator implements IMigrator {
         ServerPeerBean serverPeerBean = XmlUtils.readXmlConfigFile( false, confFile, "/server/mbean[@code='org.jboss.jms.server.ServerPeer']", ServerPeerBean.class, "Messaging ServerPeer config");
         
         // PersistenceService
-        List<PersistenceServiceBean> persServBeans = XmlUtils.readXmlConfigFiles( mesgDir, "*-persistence-service.xml", 
+        List<PersistenceServiceBean> persServBeans = XmlUtils.readXmlConfigFiles( getSourceTree( ctx ), getGlobalConfig().getParallelism(), mesgDir, "*-persistence-service.xml", 
                 "/server/mbean[@code='org.jboss.messaging.core.jmx.JDBCPersistenceManagerService']", PersistenceServiceBean.class, "Messaging PersistenceService config");
         
         // ConnectionFactory-es
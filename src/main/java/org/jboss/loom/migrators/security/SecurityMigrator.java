@@ -13,7 +13,6 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import org.apache.commons.lang.StringUtils;
@@ -27,7 +26,6 @@ import org.jboss.loom.conf.GlobalConfiguration;
 import org.jboss.loom.ctx.MigrationContext;
 import org.jboss.loom.ctx.MigratorData;
 import org.jboss.loom.ex.CliScriptException;
-import org.jboss.loom.ex.CopyException;
 import org.jboss.loom.ex.LoadMigrationException;
 import org.jboss.loom.ex.MigrationException;
 import org.jboss.loom.migrators.AbstractMigrator;
@@ -38,6 +36,7 @@ import org.jboss.loom.utils.Utils;
 import org.jboss.loom.utils.UtilsAS5;
 import org.jboss.loom.utils.as7.CliAddScriptBuilder;
 import org.jboss.loom.utils.as7.CliApiCommandBuilder;
+import org.jboss.loom.utils.XmlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -91,9 +90,11 @@ public class SecurityMigrator extends AbstractMigrator {
             if (!file.canRead()) {
                 throw new LoadMigrationException("Can't read: " + file.getAbsolutePath());
             }
+            // Not skipped even if stock - AS 7 has none of the AS 5 application policies (jmx-console, HsqlDbRealm, ...),
+            // and the deployments and datasources may refer to them.
 
-            Unmarshaller unmarshaller = JAXBContext.newInstance(SecurityAS5Bean.class).createUnmarshaller();
-            SecurityAS5Bean securityAS5 = (SecurityAS5Bean) unmarshaller.unmarshal(file);
+            Unmarshaller unmarshaller = XmlUtils.getUnmarshaller(SecurityAS5Bean.class);
+            SecurityAS5Bean securityAS5 = (SecurityAS5Bean) XmlUtils.unmarshal(unmarshaller, file);
 
             MigratorData mData = new MigratorData();
             mData.getConfigFragments().addAll(securityAS5.getApplicationPolicies());
@@ -168,7 +169,7 @@ public class SecurityMigrator extends AbstractMigrator {
         String lmName = deriveLoginModuleName( lmAS5.getLoginModule() );
         lmAS7.setLoginModuleCode( lmName );
         if( lmName.equals( lmAS5.getLoginModule() ) ){
-            ModuleCreationAction action = createModuleActionForLogMod(lmAS7, lmName, resource);
+            ModuleCreationAction action = createModuleActionForLogMod(lmAS7, lmName, resource, ctx);
             if(action != null) ctx.getActions().add( action );
         }
 
@@ -187,7 +188,7 @@ public class SecurityMigrator extends AbstractMigrator {
                     String fName = new File( moAS5.getModuleValue() ).getName();
                     value = AS7_CONFIG_DIR_PLACEHOLDER + "/" + fName;
                     if(resource.getFileNames().add(fName)){
-                        CopyFileAction action = createCopyActionForFile(resource, fName);
+                        CopyFileAction action = createCopyActionForFile(resource, fName, ctx);
                         if( action != null) ctx.getActions().add( action );
                     }
                     break;
@@ -210,21 +211,26 @@ public class SecurityMigrator extends AbstractMigrator {
      * @param fileName  file, which should be copied into AS7
      * @return  If the file is already set for copying then null else the created CopyFileAction
      */
-    private  CopyFileAction createCopyActionForFile(SecurityMigResource resource, String fileName ) {
+    private  CopyFileAction createCopyActionForFile(SecurityMigResource resource, String fileName, MigrationContext ctx ) {
 
         if( ! resource.getFileNames().add(fileName) ) return null;
 
-        File src;
+        // TODO: MIGR-54 The paths in AS 5 config relate to some base dir. Find out which and use that, instead of searching.
+        //       Then, create the actions directly in the code creating this "files to copy" collection.
+        File profileDir = getGlobalConfig().getAS5Config().getProfileDir();
+        List<File> found;
         try {
-            // TODO: MIGR-54 The paths in AS 5 config relate to some base dir. Find out which and use that, instead of searching.
-            //       Then, create the actions directly in the code creating this "files to copy" collection.
-            src = Utils.searchForFile(fileName, getGlobalConfig().getAS5Config().getProfileDir()).iterator().next();
-        } catch( CopyException ex ) {
-            //throw new ActionException("Failed copying a security file: " + ex.getMessage(), ex);
+            found = ctx.getSourceTree().findByName(fileName, profileDir, false);
+        } catch( IOException ex ) {
+            log.warn("Couldn't list " + profileDir + " to find " + fileName + ": " + ex.getMessage());
+            return null;
+        }
+        if( found.isEmpty() ) {
             // Some files referenced in security may not exist. (?)
             log.warn("Couldn't find file referenced in AS 5 security config: " + fileName);
             return null;
         }
+        File src = found.get(0);
 
         File target = Utils.createPath(getGlobalConfig().getAS7Config().getConfigDir(), src.getName());
         CopyFileAction action = new CopyFileAction( this.getClass(), src, target, CopyFileAction.IfExists.WARN );
@@ -238,17 +244,17 @@ public class SecurityMigrator extends AbstractMigrator {
      * @param lmAS7  Login-Module containing this class
      * @param className custom made class, which should be deployed into AS7
      * @param resource helping class containing all resources of the SecurityMigrator
+     * @param ctx migration context
      * @return  null if the JAR file containing the given class is already set for the creation of the module else
      *          created ModuleCreationAction.
      * @throws MigrationException
      */
     private ModuleCreationAction createModuleActionForLogMod(LoginModuleAS7Bean lmAS7, String className,
-                                                                    SecurityMigResource resource)
+                                                                    SecurityMigResource resource, MigrationContext ctx)
             throws MigrationException{
         File fileJar;
         try {
-            fileJar = UtilsAS5.findJarFileWithClass(className, getGlobalConfig().getAS5Config().getDir(),
-                    getGlobalConfig().getAS5Config().getProfileName());
+            fileJar = UtilsAS5.findJarFileWithClass(className, ctx.getAS5ClassIndex());
         } catch (IOException ex) {
             throw new MigrationException("Failed finding jar with class " + className + ": " + ex.getMessage(), ex);
         }
@@ -9,9 +9,9 @@ package org.jboss.loom.migrators.server;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import org.jboss.as.controller.client.helpers.ClientConstants;
@@ -29,6 +29,7 @@ import org.jboss.loom.spi.ann.ConfigPartDescriptor;
 import org.jboss.loom.utils.Utils;
 import org.jboss.loom.utils.as7.CliAddScriptBuilder;
 import org.jboss.loom.utils.as7.CliApiCommandBuilder;
+import org.jboss.loom.utils.XmlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
@@ -69,10 +70,15 @@ public class ServerMigrator extends AbstractMigrator {
         if (!file.canRead())
             throw new LoadMigrationException("Cannot find/open file: " + file.getAbsolutePath(), new FileNotFoundException());
 
+        if( skipStockConfigFile( ctx, file ) ){
+            ctx.getMigrationData().put(ServerMigrator.class, new MigratorData());
+            return;
+        }
+
         try {
-            Unmarshaller unmarshaller = JAXBContext.newInstance(ServerAS5Bean.class).createUnmarshaller();
+            Unmarshaller unmarshaller = XmlUtils.getUnmarshaller(ServerAS5Bean.class);
 
-            ServerAS5Bean serverAS5 = (ServerAS5Bean) unmarshaller.unmarshal(file);
+            ServerAS5Bean serverAS5 = (ServerAS5Bean) XmlUtils.unmarshal(unmarshaller, file);
 
             MigratorData mData = new MigratorData();
             for (ServiceBean s : serverAS5.getServices()) {
@@ -173,7 +179,7 @@ public class ServerMigrator extends AbstractMigrator {
             if( connector.getKeystoreFile() != null ) {
                 String fName =  new File(connector.getKeystoreFile()).getName();
                 connAS7.setCertifKeyFile(AS7_CONFIG_DIR_PLACEHOLDER +  "/keys/" + fName);
-                CopyFileAction action = createCopyActionForKeyFile(resource, fName);
+                CopyFileAction action = createCopyActionForKeyFile(resource, fName, ctx);
                 if ( action != null ) ctx.getActions().add(action);
             }
 
@@ -201,22 +207,26 @@ public class ServerMigrator extends AbstractMigrator {
      * @return  null if the file is already set for copying or the file cannot be found in the AS5 structure else
      *          created CopyFileAction
      */
-    private CopyFileAction createCopyActionForKeyFile(ServerMigratorResource resource, String fName){
+    private CopyFileAction createCopyActionForKeyFile(ServerMigratorResource resource, String fName, MigrationContext ctx){
         // TODO:
         final String property = "${jboss.server.home.dir}";
 
         // TODO: MIGR-54 The paths in AS 5 config relate to some base dir. Find out which and use that, instead of searching.
         //       Then, create the actions directly in the code creating this "files to copy" collection.
         File as5profileDir = getGlobalConfig().getAS5Config().getProfileDir();
-        File src;
+        List<File> found;
         try {
-            src = Utils.searchForFile(fName, as5profileDir).iterator().next();
-        } catch( CopyException ex ) {
-            //throw new ActionException("Failed copying a security file: " + ex.getMessage(), ex);
+            found = ctx.getSourceTree().findByName(fName, as5profileDir, false);
+        } catch( IOException ex ) {
+            log.warn("Couldn't list " + as5profileDir + " to find " + fName + ": " + ex.getMessage());
+            return null;
+        }
+        if( found.isEmpty() ) {
             // Some files referenced in security may not exist. (?)
             log.warn("Couldn't find file referenced in AS 5 server config: " + fName);
             return null;
         }
+        File src = found.get(0);
 
         if( ! resource.getKeystores().add(src) ) return null;
 
@@ -252,7 +262,7 @@ public class ServerMigrator extends AbstractMigrator {
      */
     private static void createDefaultSockets(MigrationContext ctx, ServerMigratorResource resource) throws LoadMigrationException {
         try {
-            Unmarshaller unmarshaller = JAXBContext.newInstance(SocketBindingBean.class).createUnmarshaller();
+            Unmarshaller unmarshaller = XmlUtils.getUnmarshaller(SocketBindingBean.class);
 
             // TODO:  Read over Management API. MIGR-71
             NodeList bindings = ctx.getAS7ConfigXmlDoc().getElementsByTagName("socket-binding");
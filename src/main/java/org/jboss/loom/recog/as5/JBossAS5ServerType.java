@@ -3,10 +3,6 @@ package org.jboss.loom.recog.as5;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.filefilter.FileFilterUtils;
@@ -19,6 +15,7 @@ import org.jboss.loom.recog.Version;
 import org.jboss.loom.recog.VersionRange;
 import org.jboss.loom.utils.compar.ComparisonResult;
 import org.jboss.loom.utils.compar.FileHashComparer;
+import org.jboss.loom.utils.compar.HashDatabase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,11 +31,14 @@ public class JBossAS5ServerType implements IServerType, HasHashes {
     
     private static final String JAR_VERSIONS_XML = "jar-versions.xml";
     private static final String HASH_FILES_PATH = "/fileHashes/as5/";
+    private static final String HASH_DB_FILE = "hashes.bin";
+    private static final IOFileFilter JARS_FILTER = FileFilterUtils.suffixFileFilter(".jar");
     
     
 
     /**
-     *  First checks jar-versions.xml. If that's not present, then compares checksums of all jars.
+     *  First checks jar-versions.xml. If that's not known, hashes the few .jar's which tell the versions apart.
+     *  If that's ambiguous (e.g. some of them were patched), compares checksums of all jars.
      * @param homeDir
      * @return 
      */
@@ -59,41 +59,89 @@ public class JBossAS5ServerType implements IServerType, HasHashes {
             log.error("Failed computing CRC32 of " + jvx.getPath() + ": " + ex.getMessage(), ex);
         }
         
+        // Check the discriminating .jar's.
+        String ver = recognizeByFingerprint( homeDir );
+        if( ver != null )
+            return VersionRange.forProduct( ver, ver, new AsToEapMap() );
         
-        // No match - check .jars.
-        IOFileFilter filter = FileFilterUtils.suffixFileFilter(".jar");
+        // No match - check .jars. Each .jar is hashed once and compared against all distributions.
+        HashDatabase db = getHashDatabase();
+        List<HashDatabase.Distribution> dists = db.getDistributions();
         
-        int minMismatches = Integer.MAX_VALUE;
-        HashFile minMisHF = null;
+        List<ComparisonResult> results;
+        try {
+            results = FileHashComparer.compareHashesAndDir( db, getAllDistributions(), homeDir, JARS_FILTER );
+        }
+        catch( IOException ex ) {
+            throw new RuntimeException("Failed comparing dir " + homeDir.getPath() + " against the hashes: " + ex.getMessage(), ex);
+        }
         
-        // Compare the directory against each hash file.
-        for( HashFile hashFile : getHashFiles()) {
-            try {
-                InputStream is = this.getClass().getResourceAsStream( HASH_FILES_PATH + hashFile.fName );
-                
-                ComparisonResult result = FileHashComparer.compareHashesAndDir( is, homeDir, filter );
-                log.debug("   Comparison of .jar's in %s against %s: %d of %d match.", homeDir.getPath(), hashFile.fName,
-                        result.getCountMatches(), result.getCountTotal() );
-                int curMismatches = result.getCountMismatches();
-                if( curMismatches < minMismatches){
-                     minMisHF = hashFile;
-                     minMismatches = curMismatches;
-                }
-            }
-            catch( IOException ex ) {
-                throw new RuntimeException("Failed comparing dir " + homeDir.getPath() + " against hashfile " + hashFile.fName + ": " + ex.getMessage(), ex);
+        // The fewest mismatches wins; Among those, the most matches.
+        HashDatabase.Distribution bestDist = null;
+        ComparisonResult best = null;
+        for( int i = 0; i < results.size(); i++ ) {
+            ComparisonResult result = results.get(i);
+            log.debug("   Comparison of .jar's in " + homeDir.getPath() + " against " + dists.get(i).name + ": " 
+                    + result.getCountMatches() + " of " + result.getCountTotal() + " match.");
+            if( best == null || result.getCountMismatches() < best.getCountMismatches()
+                || (result.getCountMismatches() == best.getCountMismatches() && result.getCountMatches() > best.getCountMatches()) ){
+                best = result;
+                bestDist = dists.get(i);
             }
         }
         
         // If there's some almost certain match, return that as recognized version.
-        if( minMisHF != null )
-            return VersionRange.forProduct( minMisHF.version, minMisHF.version, new AsToEapMap() );
+        if( bestDist != null ){
+            int compared = best.getCountMatches() + best.getCountMismatches();
+            int confidence = compared == 0 ? 0 : 100 * best.getCountMatches() / compared;
+            log.debug("   Best match: " + bestDist.name + ", " + confidence + " % of the present .jar's match.");
+            return VersionRange.forProduct( bestDist.version, bestDist.version, new AsToEapMap() );
+        }
         
         // Default range - all we know - AS 5 to AS 6.
         return new VersionRange( "5.0.0", "6" );
     }
 
 
+    /**
+     *  Hashes only the .jar's which tell the known distributions apart.
+     *  @returns  The version if the .jar's fit the distributions of exactly one version, null otherwise.
+     */
+    private static String recognizeByFingerprint( File homeDir ) {
+        HashDatabase db = getHashDatabase();
+        int[] fingerprint = HashDatabaseHolder.FINGERPRINT;
+        
+        List<ComparisonResult> results;
+        try {
+            results = FileHashComparer.compareHashesAndDir( db, getAllDistributions(), fingerprint, homeDir );
+        }
+        catch( IOException ex ) {
+            log.debug("   Failed comparing the discriminating .jar's in " + homeDir.getPath() + ": " + ex.getMessage());
+            return null;
+        }
+        
+        String found = null;
+        nextDist:
+        for( int d = 0; d < results.size(); d++ ) {
+            // The distribution's files must match...
+            if( results.get(d).getCountMatches() != results.get(d).getCountTotal() )
+                continue;
+            // ...and those it doesn't have must not be there.
+            for( int i : fingerprint ) {
+                if( ! db.has( d, i ) && new File( homeDir, db.getPath(i) ).exists() )
+                    continue nextDist;
+            }
+            String ver = db.getDistributions().get(d).version;
+            if( found != null && ! found.equals( ver ) )
+                return null;
+            found = ver;
+        }
+        log.debug("   Checked " + fingerprint.length + " discriminating .jar's in " + homeDir.getPath() + ": " 
+                + (found == null ? "no distribution fits." : "EAP " + found));
+        return found;
+    }
+
+
     @Override
     public boolean isPresentInDir( File homeDir ) {
         if( ! new File(homeDir, JAR_VERSIONS_XML).exists() )
@@ -107,56 +155,53 @@ public class JBossAS5ServerType implements IServerType, HasHashes {
     }
 
 
-    // Hash files.
-    private static List<HashFile> getHashFiles(){ return HASH_FILES; }
-    private static final List<HashFile>  HASH_FILES = Arrays.asList(
-        new HashFile( "jboss-eap-5.0.0-crc32.txt", "5.0.0"),
-        new HashFile( "jboss-eap-5.0.0-unsigned-crc32.txt", "5.0.0"),
-        new HashFile( "jboss-eap-5.0.1-crc32.txt", "5.0.1"),
-        new HashFile( "jboss-eap-5.1.0-crc32.txt", "5.1.0"),
-        new HashFile( "jboss-eap-5.1.0-unsigned-crc32.txt", "5.1.0"),
-        new HashFile( "jboss-eap-5.1.1-crc32.txt", "5.1.1"),
-        new HashFile( "jboss-eap-5.1.1-unsigned-crc32.txt", "5.1.1"),
-        new HashFile( "jboss-eap-5.1.2-crc32.txt", "5.1.2"),
-        new HashFile( "jboss-eap-5.2.0-crc32.txt", "5.2.0")
-    );
-    
-    private InputStream getHashFileForVersion( String ver ){
-        for( HashFile hashFile : HASH_FILES ) {
-            if( hashFile.version.equals(ver) ){
-                String path = HASH_FILES_PATH + hashFile.fName;
-                InputStream is = this.getClass().getResourceAsStream(path);
-                if( is != null ) return is;
-                throw new IllegalStateException("Hash file not found on classpath: " + path);
+    /**
+     *  Hashes of the known distributions, generated from the text hash files by HashDatabase.main().
+     *  Loaded on first use and kept - it's shared by all migrations in the JVM.
+     *  Everything else about the distributions is derived from it, so adding one only takes regenerating the .bin.
+     */
+    private static HashDatabase getHashDatabase(){
+        return HashDatabaseHolder.DB;
+    }
+    private static class HashDatabaseHolder {
+        static final HashDatabase DB;
+        static {
+            String path = HASH_FILES_PATH + HASH_DB_FILE;
+            try {
+                DB = HashDatabase.load( JBossAS5ServerType.class.getResourceAsStream( path ) );
+            } catch( IOException ex ) {
+                throw new IllegalStateException("Failed reading the hash database " + path + ": " + ex.getMessage(), ex);
             }
         }
-        return null;
+        
+        /** jar-versions.xml CRC32 -> version. */
+        static final Map<Long, String> JAR_VERSIONS_XML_CRCS = DB.getVersionsByCrc( JAR_VERSIONS_XML );
+        
+        /** The .jar's which tell the versions apart. */
+        static final int[] FINGERPRINT = DB.findDiscriminatingPaths( JARS_FILTER );
     }
     
-    // jar-versions.xml CRC32 -> versions.
-    private static Map<Long, String> getJarVersionsXmlCrcToVersionsMap(){ return JAR_VERSIONS_XML_CRC_TO_VERSION_MAP; }
-    private static final Map<Long, String> JAR_VERSIONS_XML_CRC_TO_VERSION_MAP = new HashMap();
-    static {
-        Map<Long, String> map = JAR_VERSIONS_XML_CRC_TO_VERSION_MAP;
-        map.put( 0x9f12a476L, "5.0.0");
-        map.put( 0x9e98373eL, "5.0.1");
-        map.put( 0x2b9c02cbL, "5.1.0");
-        map.put( 0x52e957e7L, "5.1.1");
-        map.put( 0x10c95871L, "5.1.2");
-        map.put( 0xb7414c39L, "5.2.0");
+    private static int[] getAllDistributions(){
+        int[] all = new int[ getHashDatabase().getDistributions().size() ];
+        for( int i = 0; i < all.length; i++ )
+            all[i] = i;
+        return all;
     }
     
+    // jar-versions.xml CRC32 -> versions.
+    private static Map<Long, String> getJarVersionsXmlCrcToVersionsMap(){ return HashDatabaseHolder.JAR_VERSIONS_XML_CRCS; }
+    
     @Override
     public ComparisonResult compareHashes( Version version, File serverRootDir ) throws MigrationException {
         if( version.verProduct == null )
             throw new MigrationException("Comparing file hashes is only supported for EAP, not AS. Supplied version was: " + version.verProject);
         
-        InputStream hashFile = getHashFileForVersion(version.verProduct);
-        if( null == hashFile )
+        int dist = getHashDatabase().indexOfVersion( version.verProduct );
+        if( dist == -1 )
             throw new MigrationException("No hash files for EAP version: " + version.verProduct);
             
         try {
-            return FileHashComparer.compareHashesAndDir( hashFile, serverRootDir, null );
+            return FileHashComparer.compareHashesAndDir( getHashDatabase(), dist, serverRootDir, null );
         } catch( Exception ex ) {
             String msg = String.format("Failed comparing hashes of %s against dir %s:\n    ",  this.format(version), serverRootDir);
             throw new MigrationException( msg + ex.getMessage(), ex);
@@ -200,21 +245,4 @@ public class JBossAS5ServerType implements IServerType, HasHashes {
         return sb.toString();
     }
     
-    
-    
-    // --- Structs ---
-    
-    static class HashFile {
-        public String fName;
-        public String version;
-        public HashFile( String fName, String version ) {
-            this.fName = fName;
-            this.version = version;
-        }
-    }
-    static class HashFileMatch{
-        public HashFile hashFile;
-        public Map<Path, FileHashComparer.MatchResult> matches;
-    }
-
 }// class
@@ -1,20 +1,25 @@
 package org.jboss.loom.tools.report;
 
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import javax.xml.bind.Marshaller;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 import org.apache.commons.io.FileUtils;
 import org.jboss.loom.ctx.MigrationContext;
 import org.jboss.loom.ex.MigrationException;
+import org.jboss.loom.utils.TeeContentHandler;
 import org.jboss.loom.utils.XmlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 
 /**
  *  Extracts report data from MigrationContext and dumps them to a XML file.
@@ -28,6 +33,7 @@ public class Reporter {
     private static final String XSLT_FILE = "MigrationReportJaxbBean.xsl";
     private static final String CSS_FILE = "MigrationReport.css";
     private static final String JQUERY_FILE = "jquery-1.10.1.min.js";
+    private static final String PAGED_JS_FILE = "MigrationReportPaged.js";
 
     
     public static void createReport( MigrationContext ctx, File reportDir ) throws MigrationException {
@@ -48,26 +54,30 @@ public class Reporter {
             File reportFile = new File(reportDir, "MigrationReport-"+timestamp+".xml");
             FileUtils.forceMkdir( reportDir );
             
-            // Write to a file.
-            //log.debug("Writing the report to " + reportFile.getPath());
-            //mar.marshal( report, reportFile );
-            
-            // Write to a Node.
-            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            mar.marshal( report, doc );
-            
-            // Write node to a file.
-            log.debug("Storing the XML report to " + reportFile.getPath());
-            XmlUtils.saveXmlToFile( doc, reportFile );
-            
-            // Use XSLT to produce HTML report.
+            // Marshall once, into both the XML and the HTML (XSLT) output - no DOM in between.
             File htmlFile = new File( reportFile.getPath() + ".html");
-            log.debug("Storing the HTML report to " + htmlFile.getPath());
-            InputStream is = Reporter.class.getResourceAsStream(RESOURCES_PATH + XSLT_FILE);
-            XmlUtils.transformDocToFile( doc, htmlFile, is );
+            log.debug("Storing the XML report to " + reportFile.getPath() + " and the HTML report to " + htmlFile.getPath());
+            boolean paged = ctx.getConf().getGlobal().isPagedReport();
+            try( OutputStream xmlOut = new BufferedOutputStream( new FileOutputStream( reportFile ) );
+                 OutputStream htmlOut = new BufferedOutputStream( new FileOutputStream( htmlFile ) ) )
+            {
+                TransformerHandler xmlHandler = XmlUtils.createTransformerHandler( null, new StreamResult( xmlOut ) );
+                Templates xslt = XmlUtils.getTemplates( RESOURCES_PATH + XSLT_FILE );
+                StreamResult htmlResult = new StreamResult( htmlOut );
+                // The chunks are resolved against the HTML file's URI.
+                htmlResult.setSystemId( htmlFile.toURI().toString() );
+                TransformerHandler htmlHandler = XmlUtils.createTransformerHandler( xslt, htmlResult );
+                if( paged ){
+                    // The big sections go to <report>.html.chunks/<section>-<n>.js; See the XSLT.
+                    File chunksDir = new File( htmlFile.getPath() + ".chunks");
+                    FileUtils.forceMkdir( chunksDir );
+                    htmlHandler.getTransformer().setParameter("chunksDir", chunksDir.getName());
+                }
+                mar.marshal( report, new TeeContentHandler( xmlHandler, htmlHandler ) );
+            }
             
             // Copy CSS and jQuery.
-            is = Reporter.class.getResourceAsStream(RESOURCES_PATH + CSS_FILE);
+            InputStream is = Reporter.class.getResourceAsStream(RESOURCES_PATH + CSS_FILE);
             FileUtils.copyInputStreamToFile( is, new File(reportDir, CSS_FILE) );
             is = Reporter.class.getResourceAsStream(RESOURCES_PATH + JQUERY_FILE);
             FileUtils.copyInputStreamToFile( is, new File(reportDir, "jQuery.js") );
@@ -75,6 +85,10 @@ public class Reporter {
             FileUtils.copyInputStreamToFile( is, new File(reportDir, "iconsBig.png") );
             is = Reporter.class.getResourceAsStream(RESOURCES_PATH + "iconsMed.png");
             FileUtils.copyInputStreamToFile( is, new File(reportDir, "iconsMed.png") );
+            if( paged ){
+                is = Reporter.class.getResourceAsStream(RESOURCES_PATH + PAGED_JS_FILE);
+                FileUtils.copyInputStreamToFile( is, new File(reportDir, PAGED_JS_FILE) );
+            }
         }
         catch( TransformerException ex ){
             //log.error("ex:", ex);
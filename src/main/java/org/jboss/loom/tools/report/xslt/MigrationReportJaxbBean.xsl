@@ -4,9 +4,19 @@
 
     Author:  Ondrej Zizka, ozizka@redhat.com
 -->
-<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="2.0">
+<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="2.0"
+        xmlns:xs="http://www.w3.org/2001/XMLSchema"
+        xmlns:rep="urn:jboss-migration:report" exclude-result-prefixes="xs rep">
     <xsl:output method="html"/>
 
+    <!--
+        Paged mode: If set, the comparison, config fragments and actions are written as scripts to this directory
+        (relative to the HTML file), $chunkSize items each, and MigrationReportPaged.js loads them as needed.
+    -->
+    <xsl:param name="chunksDir" select="''"/>
+    <xsl:param name="chunkSize" select="500"/>
+    <xsl:variable name="paged" select="$chunksDir != ''"/>
+
     <!-- Syntax at http://www.w3.org/TR/xslt -->
     <xsl:template match="/">
 <html>
@@ -16,6 +26,9 @@
     </style>
     <link rel="stylesheet" type="text/css" href="MigrationReport.css"/>
     <script src="jQuery.js"/>
+    <xsl:if test="$paged">
+        <script src="MigrationReportPaged.js"/>
+    </xsl:if>
 </head>
 <body>
     <div class="header" style="background-color: #3B4D64; border-bottom: 1ex solid #243446;">
@@ -28,13 +41,32 @@
 
         <h2><div class="icon"/><span>Source server</span></h2>
         <h3>Files comparison against distribution archive</h3>
-        <xsl:call-template name="ComparisonResult"/>
+        <xsl:choose>
+            <xsl:when test="$paged"> <xsl:call-template name="ComparisonResultPaged"/> </xsl:when>
+            <xsl:otherwise>          <xsl:call-template name="ComparisonResult"/> </xsl:otherwise>
+        </xsl:choose>
 
         <h2><div class="icon"/><span>Source server configuration</span></h2>
-        <xsl:call-template name="MigratorData"/>
+        <xsl:choose>
+            <xsl:when test="$paged">
+                <xsl:call-template name="Paged">
+                    <xsl:with-param name="section" select="'fragments'"/>
+                    <xsl:with-param name="items" select="/migrationReport/configsData/configData/configFragments/configFragment"/>
+                </xsl:call-template>
+            </xsl:when>
+            <xsl:otherwise> <xsl:call-template name="MigratorData"/> </xsl:otherwise>
+        </xsl:choose>
 
         <h2><div class="icon"/><span>Actions to migrate to the target server</span></h2>
-        <xsl:call-template name="Actions"/>
+        <xsl:choose>
+            <xsl:when test="$paged">
+                <xsl:call-template name="Paged">
+                    <xsl:with-param name="section" select="'actions'"/>
+                    <xsl:with-param name="items" select="/migrationReport/actions/action"/>
+                </xsl:call-template>
+            </xsl:when>
+            <xsl:otherwise> <xsl:call-template name="Actions"/> </xsl:otherwise>
+        </xsl:choose>
 
         <xsl:if test="finalException">
             <div class="finalException">
@@ -227,6 +259,113 @@
         </xsl:for-each>
     </xsl:template>
     
+    <!-- ========  Paged mode  ======== -->
+
+    <xsl:template name="ComparisonResultPaged">
+        <div class="box comparison">
+            <a href="#" onclick="$('#comparison').slideToggle(10)">show/hide</a>
+            <xsl:call-template name="Paged">
+                <xsl:with-param name="section" select="'comparison'"/>
+                <xsl:with-param name="items" select="/migrationReport/comparisonResult/matches/match[@result != 'MATCH']"/>
+            </xsl:call-template>
+        </div>
+    </xsl:template>
+
+    <!--
+        Placeholder for the section in the page, and the section's items written to $chunksDir/{$section}-{n}.js,
+        each calling MigrationReport.chunk( section, n, [items] ). Loaded as scripts, because a page opened
+        from the disk can't read other files.
+    -->
+    <xsl:template name="Paged">
+        <xsl:param name="section"/>
+        <xsl:param name="items"/>
+
+        <div class="paged" id="paged-{$section}">
+            <div class="pagedBar">
+                <input type="text" class="filter" placeholder="Filter"/>
+                <span class="status"/>
+            </div>
+            <xsl:choose>
+                <xsl:when test="$section = 'comparison'">
+                    <table class="flat data vertBorder fs90" id="comparison">
+                        <thead> <tr> <th colspan="2">Result</th> <th>File</th> </tr> </thead>
+                        <tbody class="items"/>
+                    </table>
+                </xsl:when>
+                <xsl:otherwise> <div class="items"/> </xsl:otherwise>
+            </xsl:choose>
+            <div class="more"/>
+        </div>
+        <script>
+            MigrationReport.section( <xsl:value-of select="string-join( (rep:js($section), rep:js($chunksDir),
+                string(count($items)), string(xs:integer(ceiling(count($items) div $chunkSize))) ), ', ')"/> );
+        </script>
+
+        <xsl:for-each-group select="$items" group-adjacent="(position() - 1) idiv $chunkSize">
+            <xsl:result-document href="{$chunksDir}/{$section}-{position() - 1}.js" method="text" encoding="UTF-8">
+                <xsl:value-of select="concat('MigrationReport.chunk(', rep:js($section), ', ', position() - 1, ', [&#10;')"/>
+                <xsl:for-each select="current-group()">
+                    <xsl:apply-templates select="." mode="json"/>
+                    <xsl:if test="position() != last()">,&#10;</xsl:if>
+                </xsl:for-each>
+                <xsl:text>&#10;]);&#10;</xsl:text>
+            </xsl:result-document>
+        </xsl:for-each-group>
+    </xsl:template>
+
+    <!-- The items as JS objects; Rendered by MigrationReportPaged.js the same way as the templates above. -->
+
+    <xsl:template match="match" mode="json">
+        <xsl:value-of select="rep:obj( ('r', 'p'), (rep:js(@result), rep:js(@path)) )"/>
+    </xsl:template>
+
+    <xsl:template match="configFragment" mode="json">
+        <xsl:variable name="data" select="../.."/>
+        <xsl:value-of select="rep:obj(
+            ('g', 'gl', 'gd', 'n', 'c', 'f', 'pt', 's', 'd', 'dl', 'props'),
+            ( rep:js( ($data/@name, $data/@fromMigrator)[1] ), rep:js($data/@docLink), rep:js($data/@docName),
+              rep:js( (@name, @fromMigrator)[1] ), rep:js(@class),
+              rep:js(origin/@file), rep:js(origin/@part), rep:js(origin/@server),
+              rep:js(docRef/@name), rep:js(docRef/@link),
+              rep:arr( for $p in properties/property return rep:arr( (rep:js($p/@name), rep:js($p/@value)) ) ) ) )"/>
+    </xsl:template>
+
+    <xsl:template match="action" mode="json">
+        <xsl:variable name="label">
+            <xsl:if test="@label"><xsl:value-of select="@label"/></xsl:if>
+            <xsl:if test="not( @label )">
+                <xsl:value-of select="reverse(tokenize(@class,'\.'))[1]"/>
+                <xsl:if test="@fromMigrator"> from migrator <xsl:value-of select="@fromMigrator"/></xsl:if>
+            </xsl:if>
+        </xsl:variable>
+        <xsl:value-of select="rep:obj(
+            ('id', 'm', 'l', 'desc', 'props', 'w', 'deps'),
+            ( rep:js(@id), rep:js(@fromMigrator), rep:js($label), rep:js(desc),
+              rep:arr( for $p in properties/property return rep:arr( (rep:js($p/@style), rep:js($p/@label), rep:js($p/@value)) ) ),
+              rep:arr( for $w in warnings/warning return rep:js($w) ),
+              rep:arr( for $d in dependencies/dep return rep:js($d) ) ) )"/>
+    </xsl:template>
+
+    <!-- JS string literal; Empty string for no value. -->
+    <xsl:function name="rep:js" as="xs:string">
+        <xsl:param name="val" as="item()?"/>
+        <xsl:variable name="s" select="
+            replace( replace( replace( replace( replace( string($val),
+                '\\', '\\\\'), '&quot;', '\\&quot;'), '&#10;', '\\n'), '&#13;', '\\r'), '[&#x2028;&#x2029;]', ' ')"/>
+        <xsl:sequence select="concat('&quot;', $s, '&quot;')"/>
+    </xsl:function>
+
+    <xsl:function name="rep:arr" as="xs:string">
+        <xsl:param name="vals" as="xs:string*"/>
+        <xsl:sequence select="concat('[', string-join($vals, ','), ']')"/>
+    </xsl:function>
+
+    <xsl:function name="rep:obj" as="xs:string">
+        <xsl:param name="keys" as="xs:string*"/>
+        <xsl:param name="vals" as="xs:string*"/>
+        <xsl:sequence select="concat('{', string-join( for $i in 1 to count($keys) return concat($keys[$i], ':', $vals[$i]), ','), '}')"/>
+    </xsl:function>
+    
     <!-- Catch-all template - ignore whatever is not specified above. -->
     <xsl:template match="@*|node()"/>
 
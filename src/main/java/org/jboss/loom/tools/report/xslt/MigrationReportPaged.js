@@ -0,0 +1,240 @@
+/*
+    Paged mode of the migration report (option report.paged).
+
+    The big sections are not in the page; MigrationReportJaxbBean.xsl writes them to <report>.html.chunks/<section>-<n>.js,
+    which call MigrationReport.chunk(). A chunk is loaded when the section's end scrolls into view,
+    and its items are rendered a page at a time, so the page stays light however many items there are.
+    Filtering goes through the loaded items and loads further chunks until a page of matches is found.
+
+    The chunks are scripts, not JSON, because a page opened from the disk can't read other files.
+
+    Author: Ondrej Zizka, ozizka at redhat.com
+*/
+
+var MigrationReport = (function( $ ){
+
+    /** Items rendered per step. */
+    var PAGE = 100;
+    /** How close to the viewport (px) the section end must get to render the next step. */
+    var MARGIN = 800;
+
+    var sections = {};
+
+
+    function Section( name, dir, count, chunks ){
+        this.name = name;
+        this.dir = dir;
+        this.count = count;
+        this.chunks = chunks;
+        this.items = [];        // Loaded so far, in order.
+        this.loaded = 0;        // Chunks loaded.
+        this.loading = false;
+        this.filter = "";
+        this.next = 0;          // Index of the next item to render or filter out.
+        this.shown = 0;
+        this.render = renderers[name];
+        this.$root = $("#paged-" + name);
+        this.$items = this.$root.find(".items");
+        this.$status = this.$root.find(".status");
+        this.$more = this.$root.find(".more");
+
+        var self = this, timer = null;
+        this.$root.find("input.filter").on("keyup change", function(){
+            var val = $.trim( $(this).val() ).toLowerCase();
+            clearTimeout( timer );
+            timer = setTimeout( function(){ self.setFilter( val ); }, 300 );
+        });
+    }
+
+    Section.prototype = {
+
+        setFilter: function( filter ){
+            if( filter === this.filter )  return;
+            this.filter = filter;
+            this.next = 0;
+            this.shown = 0;
+            this.group = this.$group = null;
+            this.$items.empty();
+            this.fill();
+        },
+
+        /** Renders the next page of items, loading a chunk if needed. */
+        fill: function(){
+            // An empty tbody has no size, hence the closest table.
+            if( ! this.$items.closest("table, div").is(":visible") || ! this.nearViewport() )  return;
+
+            var rendered = 0;
+            while( rendered < PAGE ){
+                if( this.next >= this.items.length ){
+                    if( this.loaded < this.chunks )
+                        this.load();   // fill() is called again when it arrives.
+                    break;
+                }
+                var item = this.items[ this.next++ ];
+                if( this.filter && item._text.indexOf( this.filter ) == -1 )  continue;
+                this.render( item, this );
+                rendered++;
+                this.shown++;
+            }
+            this.updateStatus();
+
+            // The page may still end above the fold.
+            if( rendered == PAGE ){
+                var self = this;
+                setTimeout( function(){ self.fill(); }, 0 );
+            }
+        },
+
+        load: function(){
+            if( this.loading )  return;
+            this.loading = true;
+            this.updateStatus();
+            var self = this;
+            var script = document.createElement("script");
+            script.src = this.dir + "/" + this.name + "-" + this.loaded + ".js";
+            script.onerror = function(){
+                self.loading = false;
+                self.$more.text("Failed to load " + script.src);
+            };
+            document.getElementsByTagName("head")[0].appendChild( script );
+        },
+
+        /** Called by the chunk script. */
+        addChunk: function( index, items ){
+            for( var i = 0; i < items.length; i++ )
+                items[i]._text = JSON.stringify( items[i] ).replace( /"\w+":/g, "" ).toLowerCase();  // Values only.
+            this.items = this.items.concat( items );
+            this.loaded = index + 1;
+            this.loading = false;
+            this.fill();
+        },
+
+        nearViewport: function(){
+            var $win = $(window);
+            var bottom = this.$root.offset().top + this.$root.outerHeight();
+            return bottom < $win.scrollTop() + $win.height() + MARGIN;
+        },
+
+        updateStatus: function(){
+            var done = this.next >= this.items.length && this.loaded >= this.chunks;
+            this.$status.text( this.shown + (this.filter ? " matching" : "") + " shown, "
+                    + this.items.length + " of " + this.count + " loaded." );
+            this.$more.text( this.loading ? "Loading..." : (done ? "" : "Scroll down for more.") );
+        }
+    };
+
+
+
+    /*  Renderers - the same HTML as the non-paged templates in MigrationReportJaxbBean.xsl.  */
+
+    function div( cls, text ){
+        var $div = $("<div/>").addClass( cls );
+        return text === undefined ? $div : $div.text( text );
+    }
+
+    var renderers = {
+
+        comparison: function( it, sec ){
+            $("<tr/>").addClass("match " + it.r)
+                .append('<td class="icon"><div/></td>')
+                .append( $('<td class="result"/>').text( it.r ) )
+                .append( $("<td/>").text( it.p ) )
+                .appendTo( sec.$items );
+        },
+
+        fragments: function( it, sec ){
+            // A box per migrator, as long as the fragments come from the same one.
+            if( sec.group !== it.g || ! sec.$group ){
+                sec.group = it.g;
+                var $h4 = $("<h4/>").append( div("icon") ).append( document.createTextNode( it.g ) );
+                if( it.gl )
+                    $h4.append(" (").append( $("<a/>").attr("href", it.gl).text( it.gd || "Documentation" ) ).append(")");
+                sec.$group = $('<table class="fragments flat vertBorder" style="border-collapse: collapse;"/>');
+                $('<div class="box migratorData"/>').append( $h4 )
+                    .append( div("padding").append( sec.$group ) )
+                    .appendTo( sec.$items );
+            }
+
+            var $td = $("<td/>").append( div("name", it.n) );
+            var $origin = div("origin").appendTo( $td );
+            var parts = [ ["class", "Class", it.c], ["file", "File", it.f], ["part", "Part", it.pt], ["server", "Server", it.s] ];
+            $.each( parts, function( i, p ){
+                if( p[2] )
+                    div( p[0] ).append( div("icon") ).append(" " + p[1] + ": ").append( $("<code/>").text( p[2] ) ).appendTo( $origin );
+            });
+            if( it.d )
+                div("docRef").append( $("<a/>").attr("href", it.dl).text( it.d ) ).appendTo( $td );
+            if( it.props.length ){
+                var $props = $('<table class="flat vertBorder"/>');
+                $.each( it.props, function( i, p ){
+                    $("<tr/>").append( $("<th/>").text( p[0] ) ).append( $("<td/>").text( p[1] ) ).appendTo( $props );
+                });
+                div("properties").append( $props ).appendTo( $td );
+            }
+            $("<tr/>").append('<td class="icon"><div/></td>').append( $td ).appendTo( sec.$group );
+        },
+
+        actions: function( it, sec ){
+            var $pad = div("padding").append( $('<p class="desc"/>').text( it.desc ) );
+
+            if( it.props.length ){
+                var $props = div("padding").appendTo( $pad );
+                $.each( it.props, function( i, p ){
+                    var $prop = div("property " + p[0]).append( div("icon") );
+                    if( p[1] )  $prop.append( div("label", p[1]) );
+                    $prop.append( div("value", p[2]) ).appendTo( $props );
+                });
+            }
+            if( it.m )
+                $pad.append( div("fromMigrator", "From migrator " + it.m) );
+            if( it.w.length ){
+                var $warns = $('<table class="warnings wid100p flat vertBorder"/>');
+                $.each( it.w, function( i, w ){
+                    $("<tr/>").append('<td class="icon"><div/></td>').append( $('<td class="text"/>').text( w ) ).appendTo( $warns );
+                });
+                div("padding").append( $warns ).appendTo( $pad );
+            }
+            if( it.deps.length ){
+                var $deps = div("padding").text("Depends on ").appendTo( $pad );
+                $.each( it.deps, function( i, dep ){
+                    $deps.append( $("<a/>").attr("href", "#action" + dep).text( " " + (i + 1) + " " ) );
+                });
+            }
+
+            $("<div/>").addClass("box action " + it.m).attr("id", it.id)
+                .append( $("<a/>").attr("name", "action" + it.id) )
+                .append( $("<h4/>").append( div("icon") ).append( document.createTextNode( it.l ) ) )
+                .append( $pad )
+                .appendTo( sec.$items );
+        }
+    };
+
+
+
+    var scrollTimer = null;
+    function fillAll(){
+        for( var name in sections )
+            sections[name].fill();
+    }
+    $(window).on("scroll resize", function(){
+        clearTimeout( scrollTimer );
+        scrollTimer = setTimeout( fillAll, 50 );
+    });
+    // The comparison may be toggled visible.
+    $(document).on("click", "a", function(){ setTimeout( fillAll, 50 ); });
+    $( fillAll );
+
+
+    return {
+        /** Called by the page, after each section's placeholder. */
+        section: function( name, dir, count, chunks ){
+            sections[name] = new Section( name, dir, count, chunks );
+        },
+
+        /** Called by the chunk scripts. */
+        chunk: function( name, index, items ){
+            sections[name].addChunk( index, items );
+        }
+    };
+
+})( jQuery );
@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import org.apache.commons.io.FileUtils;
@@ -69,19 +68,17 @@ public class ClassUtils {
     }
 
 
+    /**
+     *  Exact lookup in the central directory - "org/Foo" doesn't match "org/Foo/Bar.class".
+     */
     static boolean containsClass( JarFile jarFile, String classFilePath ) {
-        final Enumeration<JarEntry> entries = jarFile.entries();
-        while( entries.hasMoreElements() ) {
-            final JarEntry entry = entries.nextElement();
-            if( (!entry.isDirectory()) && entry.getName().contains( classFilePath ) ) {
-                return true;
-            }
-        }
-        return false;
+        final JarEntry entry = jarFile.getJarEntry( classFilePath + ".class" );
+        return entry != null && ! entry.isDirectory();
     }
 
 
     /**
+     *  Scans the jars each time; For repeated lookups, use JarClassIndex.
      *  TODO: Return a list of files.
      */
     public static File lookForJarWithClass( String className, File... dirs ) throws IOException {
@@ -0,0 +1,271 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  Index of the classes in the .jar's under the given directories: class name -> .jar's.
+ *
+ *  Only the central directory of each .jar is read, no entry content.
+ *  The .jar's are read in parallel; The result can be kept in a cache file, where each .jar's classes
+ *  are stored with its path, size and mtime - a .jar which didn't change is not read again in the next run.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class JarClassIndex {
+    private static final Logger log = LoggerFactory.getLogger( JarClassIndex.class );
+
+    private static final int CACHE_FORMAT = 0x4A43_0001; // "JC", version 1.
+
+
+    /** Class name -> .jar's with it, in the order of the dirs and their sorted paths. */
+    private final Map<String, List<File>> jarsByClass = new HashMap();
+
+    private final int jarsCount;
+
+
+    private JarClassIndex( int jarsCount ) {
+        this.jarsCount = jarsCount;
+    }
+
+
+    /**
+     *  @returns  The first .jar containing the class, or null. Exact match - "org.Foo" is not found in "org/Foo/Bar.class".
+     */
+    public File findJarWithClass( String className ) {
+        List<File> jars = this.jarsByClass.get( className );
+        return jars == null ? null : jars.get(0);
+    }
+
+    /**
+     *  @returns  All .jar's containing the class, possibly empty.
+     */
+    public List<File> findJarsWithClass( String className ) {
+        List<File> jars = this.jarsByClass.get( className );
+        return jars == null ? Collections.<File>emptyList() : Collections.unmodifiableList( jars );
+    }
+
+    public int getJarsCount() { return jarsCount; }
+
+
+
+    /**
+     *  Indexes the .jar's under the given dirs. Non-existent dirs are skipped.
+     *
+     *  @param cacheFile  Where the index is kept between runs. May be null - then it's not kept.
+     *  @param threads    How many .jar's to read at once.
+     */
+    public static JarClassIndex build( File cacheFile, int threads, File... dirs ) throws IOException {
+        // Sorted per dir, so that the "first" .jar is the same each run.
+        Set<File> jarsSet = new LinkedHashSet();
+        for( File dir : dirs ) {
+            if( ! dir.isDirectory() ){
+                log.trace("    Not a directory: " + dir.getPath());
+                continue;
+            }
+            List<File> found = new ArrayList( FileUtils.listFiles( dir, new String[]{ "jar" }, true ) );
+            Collections.sort( found );
+            jarsSet.addAll( found );
+        }
+        return build( cacheFile, threads, new ArrayList( jarsSet ) );
+    }
+
+
+    /**
+     *  Indexes the given .jar's. The first one in the list wins the findJarWithClass().
+     */
+    public static JarClassIndex build( File cacheFile, int threads, List<File> jars ) throws IOException {
+        long start = System.currentTimeMillis();
+
+        Map<String, CachedJar> cache = cacheFile == null ? new HashMap<String, CachedJar>() : readCache( cacheFile );
+
+        // Read the changed .jar's in parallel.
+        final Map<File, List<String>> classesByJar = new LinkedHashMap();
+        Map<File, Future<List<String>>> pending = new LinkedHashMap();
+        ExecutorService pool = null;
+        try {
+            for( final File jar : jars ) {
+                CachedJar cached = cache.get( jar.getPath() );
+                if( cached != null && cached.size == jar.length() && cached.mtime == jar.lastModified() ){
+                    classesByJar.put( jar, cached.classes );
+                    continue;
+                }
+                if( pool == null )
+                    pool = ParallelUtils.createPool( threads, "jar-index" );
+                pending.put( jar, pool.submit( new Callable<List<String>>() {
+                    @Override public List<String> call() {
+                        return readClassNames( jar );
+                    }
+                }));
+            }
+            for( Map.Entry<File, Future<List<String>>> e : pending.entrySet() ) {
+                try {
+                    classesByJar.put( e.getKey(), ParallelUtils.getUnwrapped( e.getValue() ) );
+                } catch( IOException | RuntimeException ex ){
+                    throw ex;
+                } catch( Exception ex ){
+                    throw new IOException("Failed indexing " + e.getKey().getPath() + ": " + ex.getMessage(), ex);
+                }
+            }
+        }
+        finally {
+            if( pool != null )
+                ParallelUtils.shutdown( pool );
+        }
+
+        // Assemble in the order of the .jar's.
+        JarClassIndex index = new JarClassIndex( jars.size() );
+        for( File jar : jars ) {
+            for( String cls : classesByJar.get( jar ) ) {
+                List<File> list = index.jarsByClass.get( cls );
+                if( list == null )
+                    index.jarsByClass.put( cls, list = new ArrayList(1) );
+                list.add( jar );
+            }
+        }
+
+        if( cacheFile != null && ( ! pending.isEmpty() || cache.size() != jars.size() ) )
+            writeCache( cacheFile, jars, classesByJar );
+
+        log.debug("    Indexed " + index.jarsByClass.size() + " classes in " + jars.size() + " .jar's (" + pending.size() + " read)"
+                + " in " + (System.currentTimeMillis() - start) + " ms.");
+        return index;
+    }
+
+
+    /**
+     *  Class names from the central directory. A broken .jar is reported and indexed as empty, as the JVM would ignore it too.
+     */
+    private static List<String> readClassNames( File jar ) {
+        List<String> ret = new ArrayList();
+        try( ZipFile zip = new ZipFile( jar ) ) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while( entries.hasMoreElements() ) {
+                String name = entries.nextElement().getName();
+                if( ! name.endsWith(".class") || name.startsWith("META-INF/") )
+                    continue;
+                ret.add( name.substring( 0, name.length() - ".class".length() ).replace('/', '.') );
+            }
+        }
+        catch( IOException ex ){
+            log.warn("Can't read " + jar.getPath() + ", skipping: " + ex.getMessage());
+        }
+        return ret;
+    }
+
+
+
+    // === Cache file. === //
+
+    private static class CachedJar {
+        final long size;
+        final long mtime;
+        final List<String> classes;
+
+        CachedJar( long size, long mtime, List<String> classes ) {
+            this.size = size;
+            this.mtime = mtime;
+            this.classes = classes;
+        }
+    }
+
+
+    /**
+     *  A missing or unreadable cache is not an error - everything is read again.
+     */
+    private static Map<String, CachedJar> readCache( File cacheFile ) {
+        Map<String, CachedJar> ret = new HashMap();
+        if( ! cacheFile.isFile() )
+            return ret;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( cacheFile ) ) );
+            if( in.readInt() != CACHE_FORMAT )
+                return ret;
+            int jars = in.readInt();
+            for( int i = 0; i < jars; i++ ) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                int count = in.readInt();
+                List<String> classes = new ArrayList( count );
+                for( int j = 0; j < count; j++ )
+                    classes.add( in.readUTF() );
+                ret.put( path, new CachedJar( size, mtime, classes ) );
+            }
+            return ret;
+        }
+        catch( IOException ex ){
+            log.debug("    Ignoring unreadable class index cache " + cacheFile.getPath() + ": " + ex.getMessage());
+            return new HashMap();
+        }
+        finally {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+
+    /**
+     *  Written to a temp file and moved over, so that a concurrent run never reads a half-written cache.
+     *  Failing to write the cache only costs time in the next run, so it's just logged.
+     */
+    private static void writeCache( File cacheFile, List<File> jars, Map<File, List<String>> classesByJar ) {
+        File tmp = new File( cacheFile.getPath() + ".tmp" );
+        try {
+            FileUtils.forceMkdir( cacheFile.getParentFile() );
+            try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ) {
+                out.writeInt( CACHE_FORMAT );
+                out.writeInt( jars.size() );
+                for( File jar : jars ) {
+                    List<String> classes = classesByJar.get( jar );
+                    out.writeUTF( jar.getPath() );
+                    out.writeLong( jar.length() );
+                    out.writeLong( jar.lastModified() );
+                    out.writeInt( classes.size() );
+                    for( String cls : classes )
+                        out.writeUTF( cls );
+                }
+            }
+            Files.move( tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch( IOException ex ){
+            log.warn("Failed writing the class index cache " + cacheFile.getPath() + ": " + ex.getMessage());
+            FileUtils.deleteQuietly( tmp );
+        }
+    }
+
+}// class
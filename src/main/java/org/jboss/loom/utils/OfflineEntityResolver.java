@@ -0,0 +1,94 @@
+package org.jboss.loom.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ *  Resolves external DTDs and entities without network access.
+ *
+ *  Local files (file: and jar: URLs) are read as usual. For other system ID's, a bundled copy is looked up
+ *  as the resource /xml-catalog/<last segment of the system ID>, e.g. /xml-catalog/jboss-service_5_0.dtd.
+ *  Anything else resolves to an empty document. None of our parsers validate, so a DTD is only needed
+ *  for the entities it declares, which the AS 5 config files don't use.
+ *
+ *  Stateless, except for remembering what was already logged; Thread-safe.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class OfflineEntityResolver implements EntityResolver, XMLResolver {
+    private static final Logger log = LoggerFactory.getLogger( OfflineEntityResolver.class );
+
+    public static final OfflineEntityResolver INSTANCE = new OfflineEntityResolver();
+
+    private static final String CATALOG_DIR = "/xml-catalog/";
+
+    /** Not to log the same system ID for every file. */
+    private final Set<String> reported = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+
+    /**
+     *  SAX and DOM.
+     */
+    @Override
+    public InputSource resolveEntity( String publicId, String systemId ) throws IOException {
+        if( systemId == null || isLocal( systemId ) )
+            return null; // The parser reads it.
+
+        URL bundled = findBundled( systemId );
+        InputSource is = bundled != null
+                ? new InputSource( bundled.openStream() )
+                : new InputSource( new StringReader("") );
+        is.setPublicId( publicId );
+        is.setSystemId( bundled != null ? bundled.toExternalForm() : systemId );
+        return is;
+    }
+
+
+    /**
+     *  StAX.
+     */
+    @Override
+    public Object resolveEntity( String publicID, String systemID, String baseURI, String namespace ) throws XMLStreamException {
+        if( systemID == null || isLocal( systemID ) )
+            return null;
+
+        URL bundled = findBundled( systemID );
+        if( bundled == null )
+            return new ByteArrayInputStream( new byte[0] );
+        try {
+            return bundled.openStream();
+        } catch( IOException ex ) {
+            throw new XMLStreamException("Can't read bundled " + bundled + ": " + ex.getMessage(), ex);
+        }
+    }
+
+
+    private static boolean isLocal( String systemId ) {
+        return systemId.startsWith("file:") || systemId.startsWith("jar:") || ! systemId.contains(":");
+    }
+
+    /**
+     *  @returns  The bundled copy of the entity, or null.
+     */
+    private URL findBundled( String systemId ) {
+        String name = systemId.substring( systemId.lastIndexOf('/') + 1 );
+        URL url = name.isEmpty() ? null : OfflineEntityResolver.class.getResource( CATALOG_DIR + name );
+        if( this.reported.add( systemId ) ){
+            if( url != null )  log.debug("    Using the bundled " + name + " for " + systemId);
+            else               log.debug("    Not fetching " + systemId + " - not needed for parsing.");
+        }
+        return url;
+    }
+
+}// class
@@ -0,0 +1,75 @@
+package org.jboss.loom.utils;
+
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  Helpers for the few places where we run work on a bounded pool of threads.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class ParallelUtils {
+    private static final Logger log = LoggerFactory.getLogger( ParallelUtils.class );
+
+
+    /**
+     *  Creates a fixed thread pool of daemon threads named "<name>-<n>".
+     *  Daemon threads, so that a forgotten pool doesn't keep the JVM running.
+     */
+    public static ExecutorService createPool( int threads, final String name ) {
+        return Executors.newFixedThreadPool( Math.max( 1, threads ), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(1);
+            @Override public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, name + "-" + counter.getAndIncrement() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        });
+    }
+
+
+    /**
+     *  Shuts the pool down and waits for the running tasks to finish.
+     */
+    public static void shutdown( ExecutorService pool ) {
+        pool.shutdown();
+        try {
+            while( ! pool.awaitTermination( 10, TimeUnit.SECONDS ) )
+                log.debug("    Still waiting for the worker threads to finish...");
+        }
+        catch( InterruptedException ex ) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     *  Waits for the Future and unwraps the ExecutionException into the original cause.
+     *  Errors are rethrown as they are.
+     */
+    public static <T> T getUnwrapped( Future<T> future ) throws Exception {
+        try {
+            return future.get();
+        }
+        catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+        catch( ExecutionException ex ) {
+            Throwable cause = ex.getCause();
+            if( cause instanceof Exception )  throw (Exception) cause;
+            if( cause instanceof Error )      throw (Error) cause;
+            throw ex;
+        }
+    }
+
+}// class
@@ -0,0 +1,377 @@
+package org.jboss.loom.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  All files and dirs under a source server dir, listed once, with one walk per top-level subdir in parallel.
+ *  Answers the by-name, by-suffix and Ant-pattern lookups of the migrators from memory.
+ *
+ *  Paths are kept relative to the root, with '/', sorted - so the entries under a dir are a contiguous range.
+ *  Read-only once built, so it's thread-safe.
+ *  The source server is not expected to change during the run.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class SourceTreeCatalog {
+    private static final Logger log = LoggerFactory.getLogger( SourceTreeCatalog.class );
+
+    private final File root;
+
+    /** Relative to root, separated by '/'; Sorted. */
+    private final String[] paths;
+
+    private final boolean[] isDir;
+
+    /** File name -> indexes of the paths. */
+    private final Map<String, int[]> byName;
+
+    /** Extension (after the last dot, lower case) -> indexes of the files. */
+    private final Map<String, int[]> byExtension;
+
+
+    private SourceTreeCatalog( File root, String[] paths, boolean[] isDir ) {
+        this.root = root;
+        this.paths = paths;
+        this.isDir = isDir;
+
+        Map<String, List<Integer>> names = new HashMap();
+        Map<String, List<Integer>> exts = new HashMap();
+        for( int i = 0; i < paths.length; i++ ) {
+            String name = paths[i].substring( paths[i].lastIndexOf('/') + 1 );
+            add( names, name, i );
+            int dot = name.lastIndexOf('.');
+            if( ! isDir[i] && dot >= 0 )
+                add( exts, name.substring( dot + 1 ).toLowerCase(), i );
+        }
+        this.byName = toArrays( names );
+        this.byExtension = toArrays( exts );
+    }
+
+
+    /**
+     *  Walks the dir. Unreadable parts are skipped with a warning, like FileUtils.listFiles() would skip them.
+     */
+    public static SourceTreeCatalog build( File root, int threads ) throws IOException {
+        root = root.getAbsoluteFile().toPath().normalize().toFile();
+        long start = System.currentTimeMillis();
+
+        File[] children = root.listFiles();
+        if( children == null )
+            throw new IOException("Can't list " + root.getPath());
+
+        List<String> paths = new ArrayList();
+        List<Boolean> dirs = new ArrayList();
+        List<File> subdirs = new ArrayList();
+        for( File child : children ) {
+            paths.add( child.getName() );
+            dirs.add( child.isDirectory() );
+            if( child.isDirectory() )
+                subdirs.add( child );
+        }
+
+        final Path rootPath = root.toPath();
+        ExecutorService pool = ParallelUtils.createPool( Math.max( 1, Math.min( threads, subdirs.size() ) ), "SourceTreeCatalog" );
+        try {
+            List<Future<Walk>> futures = new ArrayList( subdirs.size() );
+            for( final File subdir : subdirs ) {
+                futures.add( pool.submit( new Callable<Walk>() {
+                    @Override public Walk call() throws IOException {
+                        return new Walk( rootPath ).walk( subdir.toPath() );
+                    }
+                }));
+            }
+            for( Future<Walk> future : futures ) {
+                Walk walk;
+                try {
+                    walk = ParallelUtils.getUnwrapped( future );
+                } catch( IOException | RuntimeException ex ){
+                    throw ex;
+                } catch( Exception ex ){
+                    throw new IOException("Failed listing " + root.getPath() + ": " + ex.getMessage(), ex);
+                }
+                paths.addAll( walk.paths );
+                dirs.addAll( walk.dirs );
+            }
+        }
+        finally {
+            ParallelUtils.shutdown( pool );
+        }
+
+        // Sort, keeping the dir flags along.
+        Integer[] order = new Integer[ paths.size() ];
+        for( int i = 0; i < order.length; i++ )
+            order[i] = i;
+        final List<String> unsorted = paths;
+        Arrays.sort( order, new Comparator<Integer>() {
+            @Override public int compare( Integer a, Integer b ) {
+                return unsorted.get(a).compareTo( unsorted.get(b) );
+            }
+        });
+        String[] sortedPaths = new String[ order.length ];
+        boolean[] sortedDirs = new boolean[ order.length ];
+        for( int i = 0; i < order.length; i++ ) {
+            sortedPaths[i] = paths.get( order[i] );
+            sortedDirs[i] = dirs.get( order[i] );
+        }
+
+        log.debug("    Listed " + sortedPaths.length + " entries of " + root.getPath() + " in " + (System.currentTimeMillis() - start) + " ms.");
+        return new SourceTreeCatalog( root, sortedPaths, sortedDirs );
+    }
+
+
+    public File getRoot() { return root; }
+
+    public int size() { return paths.length; }
+
+
+    /**
+     *  @returns  Whether the dir is the root or under it, i.e. whether this catalog can answer queries about it.
+     */
+    public boolean covers( File dir ) {
+        return relativize( dir ) != null;
+    }
+
+    /**
+     *  @returns  Whether the file or dir exists, according to the catalog.
+     */
+    public boolean exists( File file ) {
+        String rel = relativize( file );
+        return rel != null && (rel.isEmpty() || Arrays.binarySearch( this.paths, rel ) >= 0);
+    }
+
+
+    /**
+     *  Files (and dirs, if includeDirs) of the given name under the dir, recursively.
+     */
+    public List<File> findByName( String name, File dir, boolean includeDirs ) {
+        int[] indexes = this.byName.get( name );
+        if( indexes == null )
+            return Collections.EMPTY_LIST;
+        String prefix = dirPrefix( dir );
+        List<File> ret = new ArrayList();
+        for( int i : indexes ) {
+            if( (includeDirs || ! this.isDir[i]) && this.paths[i].startsWith( prefix ) )
+                ret.add( toFile(i) );
+        }
+        return ret;
+    }
+
+
+    /**
+     *  Files with names ending with the suffix under the dir, recursively. E.g. "-ds.xml".
+     */
+    public List<File> findBySuffix( String suffix, File dir ) {
+        String prefix = dirPrefix( dir );
+        List<File> ret = new ArrayList();
+
+        int dot = suffix.lastIndexOf('.');
+        if( dot >= 0 ){
+            int[] indexes = this.byExtension.get( suffix.substring( dot + 1 ).toLowerCase() );
+            if( indexes == null )
+                return ret;
+            for( int i : indexes ) {
+                if( this.paths[i].endsWith( suffix ) && this.paths[i].startsWith( prefix ) )
+                    ret.add( toFile(i) );
+            }
+            return ret;
+        }
+
+        int[] range = range( prefix );
+        for( int i = range[0]; i < range[1]; i++ ) {
+            if( ! this.isDir[i] && this.paths[i].endsWith( suffix ) )
+                ret.add( toFile(i) );
+        }
+        return ret;
+    }
+
+
+    /**
+     *  Files under baseDir matching the Ant-style pattern (*, ?, **), like DirScanner.
+     *  @returns  Paths relative to baseDir.
+     */
+    public List<File> findByPattern( File baseDir, String antPattern ) {
+        String prefix = dirPrefix( baseDir );
+        Pattern regex = antPatternToRegex( antPattern );
+        List<File> ret = new ArrayList();
+        int[] range = range( prefix );
+        for( int i = range[0]; i < range[1]; i++ ) {
+            if( this.isDir[i] )
+                continue;
+            String rel = this.paths[i].substring( prefix.length() );
+            if( regex.matcher( rel ).matches() )
+                ret.add( new File( rel ) );
+        }
+        return ret;
+    }
+
+
+    /**
+     *  Ant pattern: ** matches any number of dirs, * and ? anything within one name. A trailing / means /**.
+     */
+    static Pattern antPatternToRegex( String antPattern ) {
+        String pattern = antPattern.replace('\\', '/');
+        if( pattern.startsWith("/") )
+            pattern = pattern.substring(1);
+        if( pattern.endsWith("/") )
+            pattern += "**";
+
+        StringBuilder sb = new StringBuilder();
+        String[] segments = pattern.split("/");
+        for( int s = 0; s < segments.length; s++ ) {
+            boolean last = s == segments.length - 1;
+            String seg = segments[s];
+            if( "**".equals( seg ) ){
+                sb.append( last ? ".*" : "(?:[^/]*/)*" );
+                continue;
+            }
+            StringBuilder literal = new StringBuilder();
+            for( char ch : seg.toCharArray() ) {
+                if( ch != '*' && ch != '?' ){
+                    literal.append( ch );
+                    continue;
+                }
+                if( literal.length() > 0 )
+                    sb.append( Pattern.quote( literal.toString() ) );
+                literal.setLength(0);
+                sb.append( ch == '*' ? "[^/]*" : "[^/]" );
+            }
+            if( literal.length() > 0 )
+                sb.append( Pattern.quote( literal.toString() ) );
+            if( ! last )
+                sb.append('/');
+        }
+        return Pattern.compile( sb.toString() );
+    }
+
+
+
+    // === Paths === //
+
+    /**
+     *  @returns  The path relative to root, with '/', "" for the root itself; null if not under root.
+     */
+    private String relativize( File file ) {
+        Path base = this.root.toPath();
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        if( ! path.startsWith( base ) )
+            return null;
+        return base.relativize( path ).toString().replace( File.separatorChar, '/' );
+    }
+
+    /**
+     *  "" for root, "sub/dir/" for others.
+     *  @throws IllegalArgumentException if the dir is not under root - check covers() first.
+     */
+    private String dirPrefix( File dir ) {
+        String rel = relativize( dir );
+        if( rel == null )
+            throw new IllegalArgumentException("Not under " + this.root.getPath() + ": " + dir.getPath());
+        return rel.isEmpty() ? "" : rel + "/";
+    }
+
+    /**
+     *  [from, to) of the paths starting with the prefix.
+     */
+    private int[] range( String prefix ) {
+        if( prefix.isEmpty() )
+            return new int[]{ 0, this.paths.length };
+        int from = Arrays.binarySearch( this.paths, prefix );
+        if( from < 0 )
+            from = -from - 1;
+        // '/' + 1 = '0', so "dir0" sorts right after everything under "dir/".
+        String end = prefix.substring( 0, prefix.length() - 1 ) + (char)('/' + 1);
+        int to = Arrays.binarySearch( this.paths, end );
+        if( to < 0 )
+            to = -to - 1;
+        return new int[]{ from, to };
+    }
+
+    private File toFile( int index ) {
+        return new File( this.root, this.paths[index] );
+    }
+
+
+    private static void add( Map<String, List<Integer>> map, String key, int index ) {
+        List<Integer> list = map.get( key );
+        if( list == null )
+            map.put( key, list = new ArrayList(1) );
+        list.add( index );
+    }
+
+    private static Map<String, int[]> toArrays( Map<String, List<Integer>> map ) {
+        Map<String, int[]> ret = new HashMap( map.size() * 4 / 3 + 1 );
+        for( Map.Entry<String, List<Integer>> e : map.entrySet() ) {
+            int[] arr = new int[ e.getValue().size() ];
+            for( int i = 0; i < arr.length; i++ )
+                arr[i] = e.getValue().get(i);
+            ret.put( e.getKey(), arr );
+        }
+        return ret;
+    }
+
+
+
+    /**
+     *  Walks one subtree, following links like FileUtils.listFiles() does.
+     */
+    private static class Walk extends SimpleFileVisitor<Path> {
+        final Path root;
+        final List<String> paths = new ArrayList();
+        final List<Boolean> dirs = new ArrayList();
+
+        Walk( Path root ) { this.root = root; }
+
+        Walk walk( Path dir ) throws IOException {
+            Files.walkFileTree( dir, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE, this );
+            return this;
+        }
+
+        @Override public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) {
+            // The subdir itself is listed by build().
+            if( ! dir.getParent().equals( this.root ) )
+                add( dir, true );
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) {
+            add( file, attrs.isDirectory() );
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override public FileVisitResult visitFileFailed( Path file, IOException ex ) {
+            if( ex instanceof FileSystemLoopException )
+                log.debug("    Not following a link loop: " + file);
+            else
+                log.warn("Can't read " + file + ": " + ex.getMessage());
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void add( Path path, boolean isDir ) {
+            this.paths.add( this.root.relativize( path ).toString().replace( File.separatorChar, '/' ) );
+            this.dirs.add( isDir );
+        }
+    }
+
+}// class
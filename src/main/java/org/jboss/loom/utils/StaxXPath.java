@@ -0,0 +1,229 @@
+package org.jboss.loom.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ *  The subset of XPath used to find the config beans, matched on a StAX stream,
+ *  so that the matching elements are unmarshalled right from the stream, without building a DOM.
+ *
+ *  Supported are absolute paths of child steps, each with a name or *, and any number of [@attr='value'] predicates:
+ *
+ *      /server/mbean[@code='org.jboss.mail.MailService']
+ *
+ *  Names are compared without namespaces, like JDK's XPath does on our non-namespace-aware DOMs.
+ *  The unmarshaller doesn't see the namespaces either, so that the beans mapped without a namespace
+ *  also read e.g. the AS 5 *-jboss-beans.xml, which have xmlns="urn:jboss:bean-deployer:2.0".
+ *  For anything else, compile() returns null and the caller uses DOM and XPath.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class StaxXPath {
+
+    private static final String NAME = "[\\w.-]+";
+    private static final String PREDICATE = "\\[\\s*@(" + NAME + ")\\s*=\\s*(?:'([^']*)'|\"([^\"]*)\")\\s*\\]";
+
+    private static final Pattern STEP_PATTERN = Pattern.compile( "/(" + NAME + "|\\*)((?:" + PREDICATE + ")*)" );
+    private static final Pattern PREDICATE_PATTERN = Pattern.compile( PREDICATE );
+
+
+    private final String xpath;
+    private final Step[] steps;
+
+
+    private StaxXPath( String xpath, Step[] steps ) {
+        this.xpath = xpath;
+        this.steps = steps;
+    }
+
+
+    /**
+     *  @returns  The compiled path, or null if the expression is not in the supported subset.
+     */
+    public static StaxXPath compile( String xpath ) {
+        xpath = xpath.trim();
+        List<Step> steps = new ArrayList();
+        Matcher m = STEP_PATTERN.matcher( xpath );
+        int pos = 0;
+        while( pos < xpath.length() ) {
+            m.region( pos, xpath.length() );
+            if( ! m.lookingAt() )
+                return null;
+
+            List<String> names = new ArrayList();
+            List<String> values = new ArrayList();
+            Matcher pm = PREDICATE_PATTERN.matcher( m.group(2) );
+            while( pm.find() ) {
+                names.add( pm.group(1) );
+                values.add( pm.group(2) != null ? pm.group(2) : pm.group(3) );
+            }
+            String name = "*".equals( m.group(1) ) ? null : m.group(1);
+            steps.add( new Step( name, names.toArray( new String[names.size()] ), values.toArray( new String[values.size()] ) ) );
+            pos = m.end();
+        }
+        if( steps.isEmpty() )
+            return null;
+        return new StaxXPath( xpath, steps.toArray( new Step[steps.size()] ) );
+    }
+
+
+    /**
+     *  Reads the stream to the end (or until it's clear nothing else can match),
+     *  and unmarshalls each matching element, in document order.
+     */
+    public <T> List<T> unmarshal( XMLStreamReader reader, Unmarshaller unmarshaller, Class<T> cls ) throws XMLStreamException, JAXBException {
+        List<T> beans = new ArrayList();
+        DepthTrackingReader r = new DepthTrackingReader( new NoNamespaceReader( reader ) );
+
+        // How many leading steps the currently open elements match.
+        int matched = 0;
+        int ev = r.getEventType();
+        while( true ) {
+            if( ev == XMLStreamReader.START_ELEMENT ){
+                int level = r.depth;
+                if( level == matched + 1 && this.steps[level - 1].matches( r ) ){
+                    if( level < this.steps.length )
+                        matched = level;
+                    else {
+                        long before = r.events;
+                        beans.add( (T) unmarshaller.unmarshal( r ) );
+                        if( r.events == before )
+                            throw new IllegalStateException("Unmarshaller didn't consume " + r.getLocalName() + " matching " + this.xpath);
+                        // The unmarshaller leaves the reader at the end tag or right after it - process that event.
+                        ev = r.getEventType();
+                        continue;
+                    }
+                }
+                // The root element doesn't match - nothing else will.
+                else if( level == 1 )
+                    break;
+            }
+            else if( ev == XMLStreamReader.END_ELEMENT )
+                matched = Math.min( matched, r.depth );
+            else if( ev == XMLStreamReader.END_DOCUMENT )
+                break;
+
+            if( ! r.hasNext() )
+                break;
+            ev = r.next();
+        }
+        return beans;
+    }
+
+
+    @Override public String toString() { return xpath; }
+
+
+
+    /**
+     *  One location step - element name (null = any) and the required attribute values.
+     */
+    private static class Step {
+        final String name;
+        final String[] attrNames;
+        final String[] attrValues;
+
+        Step( String name, String[] attrNames, String[] attrValues ) {
+            this.name = name;
+            this.attrNames = attrNames;
+            this.attrValues = attrValues;
+        }
+
+        boolean matches( XMLStreamReader r ) {
+            if( this.name != null && ! this.name.equals( r.getLocalName() ) )
+                return false;
+            for( int i = 0; i < this.attrNames.length; i++ ) {
+                if( ! this.attrValues[i].equals( getAttribute( r, this.attrNames[i] ) ) )
+                    return false;
+            }
+            return true;
+        }
+
+        private static String getAttribute( XMLStreamReader r, String localName ) {
+            for( int i = 0; i < r.getAttributeCount(); i++ ) {
+                if( localName.equals( r.getAttributeLocalName(i) ) )
+                    return r.getAttributeValue(i);
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     *  Hides the namespaces, to unmarshall the same as from a non-namespace-aware DOM.
+     */
+    private static class NoNamespaceReader extends StreamReaderDelegate {
+
+        NoNamespaceReader( XMLStreamReader reader ) {
+            super( reader );
+        }
+
+        @Override public String getNamespaceURI() { return null; }
+        @Override public String getNamespaceURI( String prefix ) { return null; }
+        @Override public String getPrefix() { return ""; }
+        @Override public QName getName() { return new QName( getLocalName() ); }
+
+        @Override public int getNamespaceCount() { return 0; }
+
+        @Override public String getAttributeNamespace( int index ) { return null; }
+        @Override public String getAttributePrefix( int index ) { return ""; }
+        @Override public QName getAttributeName( int index ) { return new QName( getAttributeLocalName( index ) ); }
+    }
+
+
+    /**
+     *  Counts the open elements, so we know where we are whatever the unmarshaller consumed.
+     *  nextTag() and getElementText() go through next() so that nothing passes uncounted.
+     */
+    private static class DepthTrackingReader extends StreamReaderDelegate {
+        int depth = 0;
+        long events = 0;
+
+        DepthTrackingReader( XMLStreamReader reader ) {
+            super( reader );
+        }
+
+        @Override public int next() throws XMLStreamException {
+            int ev = super.next();
+            this.events++;
+            if( ev == START_ELEMENT )
+                this.depth++;
+            else if( ev == END_ELEMENT )
+                this.depth--;
+            return ev;
+        }
+
+        @Override public int nextTag() throws XMLStreamException {
+            int ev = next();
+            while( ev == COMMENT || ev == PROCESSING_INSTRUCTION || ev == SPACE
+                    || ((ev == CHARACTERS || ev == CDATA) && isWhiteSpace()) )
+                ev = next();
+            if( ev != START_ELEMENT && ev != END_ELEMENT )
+                throw new XMLStreamException("Expected a start or end tag.", getLocation());
+            return ev;
+        }
+
+        @Override public String getElementText() throws XMLStreamException {
+            if( getEventType() != START_ELEMENT )
+                throw new XMLStreamException("Not at a start tag.", getLocation());
+            StringBuilder sb = new StringBuilder();
+            int ev;
+            while( (ev = next()) != END_ELEMENT ) {
+                if( ev == CHARACTERS || ev == CDATA || ev == SPACE || ev == ENTITY_REFERENCE )
+                    sb.append( getText() );
+                else if( ev == START_ELEMENT || ev == END_DOCUMENT )
+                    throw new XMLStreamException("Expected text only.", getLocation());
+            }
+            return sb.toString();
+        }
+    }
+
+}// class
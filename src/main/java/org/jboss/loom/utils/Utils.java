@@ -78,6 +78,35 @@ public class Utils {
         System.out.println("        Path to AS 7 config file.");
         System.out.println("        Default: \"standalone/configuration/standalone.xml\"");
         System.out.println();
+        System.out.println("    threads=<number>");
+        System.out.println("        How many threads to use for loading the source server config and other parallelizable work.");
+        System.out.println("        Default: 1 (everything runs serially)");
+        System.out.println();
+        System.out.println("    dest.offline");
+        System.out.println("        Don't use a running AS 7 server; apply the changes directly to the config file (dest.conf.file).");
+        System.out.println("        Supports the datasources, logging, security, web, resource-adapters subsystems and socket bindings.");
+        System.out.println("        The original file is kept as <file>.before-migration.");
+        System.out.println();
+        System.out.println("    cli.chunk=<number>");
+        System.out.println("        Send the CLI operations in composites of at most this many operations, reporting progress after each.");
+        System.out.println("        If a chunk fails, the previous chunks are undone (added resources removed), unless cli.chunk.commit is set.");
+        System.out.println("        Default: 0 (one composite for the whole batch)");
+        System.out.println();
+        System.out.println("    cli.chunk.commit");
+        System.out.println("        Keep the successfully executed chunks if a later one fails. Not available in offline mode.");
+        System.out.println();
+        System.out.println("    cache.dir=<path>");
+        System.out.println("        Where to keep the servers' class indexes and file hashes, reused by the next runs. Empty = don't keep them.");
+        System.out.println("        Default: ~/.jboss-migration/cache");
+        System.out.println();
+        System.out.println("    stock.migrate");
+        System.out.println("        Migrate also the logging and web server config files which are the same as in the source server distribution.");
+        System.out.println("        By default they are skipped, as the target server already has equivalent defaults.");
+        System.out.println();
+        System.out.println("    report.paged");
+        System.out.println("        Write the file comparison, config fragments and actions of the HTML report to separate files,");
+        System.out.println("        which the page loads as you scroll or filter. For big servers the report would be too heavy otherwise.");
+        System.out.println();
         System.out.println("    conf.<module>.<property>=<value> := Module-specific options.");
         System.out.println("        <module> := Name of one of modules. E.g. datasource, jaas, security, ...");
         System.out.println("        <property> := Name of the property to set. Specific per module. " +
@@ -148,6 +177,20 @@ public class Utils {
         return file;
     }
 
+    /**
+     *  A cache file name for the given set of dirs, so that the indexes of different dirs don't overwrite each other.
+     *  @returns  null if cacheDir is null.
+     */
+    public static File getCacheFile( String cacheDir, String prefix, File... dirs ) {
+        if( cacheDir == null )
+            return null;
+        StringBuilder key = new StringBuilder();
+        for( File dir : dirs )
+            key.append( dir.getAbsolutePath() ).append('|');
+        return new File( cacheDir, prefix + "-" + Integer.toHexString( key.toString().hashCode() ) + ".idx" );
+    }
+
+
     /**
      *  Missing from Commons IO's FileUtils...
      */
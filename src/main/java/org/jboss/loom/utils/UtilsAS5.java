@@ -24,18 +24,34 @@ public class UtilsAS5 {
      * @param profileAS5 name of AS5 profile
      * @return name of jar file which contains given class
      * @throws FileNotFoundException if the jar file is not found
-     *     <p/>
-     *     TODO: This would cause false positives - e.g. class = org.Foo triggered by org/Foo/Blah.class .
      */
     public static File findJarFileWithClass( String className, String dirAS5, String profileAS5 ) throws FileNotFoundException, IOException {
         
-        File jar = ClassUtils.lookForJarWithClass( className, 
-                Utils.createPath( dirAS5, "server", profileAS5, "lib" ),
-                Utils.createPath( dirAS5, "common/lib" ));
+        File jar = ClassUtils.lookForJarWithClass( className, getLibDirs( dirAS5, profileAS5 ) );
         if( jar != null )
             return jar;
         throw new FileNotFoundException( "Cannot find jar file which contains class: " + className );
     }
     
+    /**
+     * Same as above, using an index of the lib dirs - see MigrationContext.getAS5ClassIndex().
+     */
+    public static File findJarFileWithClass( String className, JarClassIndex index ) throws FileNotFoundException {
+        File jar = index.findJarWithClass( className );
+        if( jar != null )
+            return jar;
+        throw new FileNotFoundException( "Cannot find jar file which contains class: " + className );
+    }
+    
+    /**
+     * The dirs with the server's libraries, in the order of lookup.
+     */
+    public static File[] getLibDirs( String dirAS5, String profileAS5 ) {
+        return new File[]{
+            Utils.createPath( dirAS5, "server", profileAS5, "lib" ),
+            Utils.createPath( dirAS5, "common/lib" )
+        };
+    }
+    
 
 }// class
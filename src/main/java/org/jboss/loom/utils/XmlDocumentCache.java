@@ -0,0 +1,72 @@
+package org.jboss.loom.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ *  Source server XML files, each parsed at most once per run and shared by the migrators.
+ *
+ *  Thread-safe - the migrators may load concurrently; A file requested by two threads at once is parsed by one of them.
+ *  A DOM is not safe for concurrent reading (Xerces expands the nodes lazily), so the readers synchronize on the Document.
+ *  The documents are meant to be read only.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class XmlDocumentCache {
+    private static final Logger log = LoggerFactory.getLogger( XmlDocumentCache.class );
+
+    private final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap();
+
+
+    /**
+     *  Parses the file, or returns the Document parsed before. Failures are not cached.
+     */
+    public Document getDocument( File file ) throws SAXException, IOException {
+        File key = file.getAbsoluteFile();
+        Entry entry = this.entries.get( key );
+        if( entry == null ){
+            Entry prev = this.entries.putIfAbsent( key, entry = new Entry() );
+            if( prev != null )
+                entry = prev;
+        }
+        return entry.get( key );
+    }
+
+
+    /**
+     *  @returns  Whether the file was parsed, or is being parsed, already.
+     */
+    public boolean contains( File file ) {
+        return this.entries.containsKey( file.getAbsoluteFile() );
+    }
+
+
+    /**
+     *  Releases all documents.
+     */
+    public void clear() {
+        log.debug("    Releasing " + this.entries.size() + " cached XML documents.");
+        this.entries.clear();
+    }
+
+    public int size() { return this.entries.size(); }
+
+
+
+    private static class Entry {
+        private Document doc;
+
+        synchronized Document get( File file ) throws SAXException, IOException {
+            if( this.doc == null )
+                this.doc = XmlUtils.getDocumentBuilder().parse( file );
+            return this.doc;
+        }
+    }
+
+}// class
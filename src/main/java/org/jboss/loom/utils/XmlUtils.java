@@ -1,13 +1,23 @@
 package org.jboss.loom.utils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -15,26 +25,39 @@ import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import org.jboss.loom.ex.MigrationException;
+import org.jboss.loom.ex.MigrationExceptions;
 import org.jboss.loom.migrators.Origin;
 import org.jboss.loom.migrators.mail.MailServiceBean;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  *
@@ -43,22 +66,155 @@ import org.xml.sax.SAXException;
 public class XmlUtils {
     private static final org.slf4j.Logger log = LoggerFactory.getLogger( XmlUtils.class );
     
+    
+    // === Caches. JAXBContext is thread-safe; the rest is not, so it's kept per thread. === //
+    
+    /** Bean classes -> JAXBContext. Creating a context is one of the most expensive things this app does. */
+    private static final ConcurrentMap<List<Class>, JAXBContext> JAXB_CONTEXTS = new ConcurrentHashMap();
+    
+    /** Bean class -> this app's standard (MOXy) marshalling context. */
+    private static final ConcurrentMap<Class, JAXBContext> MARSHALLING_CONTEXTS = new ConcurrentHashMap();
+    
+    private static final ThreadLocal<Map<JAXBContext, Unmarshaller>> UNMARSHALLERS = new ThreadLocal<Map<JAXBContext, Unmarshaller>>(){
+        @Override protected Map<JAXBContext, Unmarshaller> initialValue() { return new HashMap(); }
+    };
+    
+    private static final ThreadLocal<DocumentBuilder> DOC_BUILDERS = new ThreadLocal<DocumentBuilder>(){
+        @Override protected DocumentBuilder initialValue() { return createXmlDocumentBuilder(); }
+    };
+    
+    /** XPath expression -> compiled. */
+    private static final ThreadLocal<Map<String, XPathExpression>> XPATHS = new ThreadLocal<Map<String, XPathExpression>>(){
+        @Override protected Map<String, XPathExpression> initialValue() { return new HashMap(); }
+    };
+    
+    private static final ThreadLocal<XPath> XPATH = new ThreadLocal<XPath>(){
+        @Override protected XPath initialValue() { return createXPathFactory().newXPath(); }
+    };
+    
+    /** StAX isn't guaranteed to be thread-safe either. */
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORIES = new ThreadLocal<XMLInputFactory>(){
+        @Override protected XMLInputFactory initialValue() {
+            XMLInputFactory xif = XMLInputFactory.newInstance();
+            xif.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+            xif.setXMLResolver( OfflineEntityResolver.INSTANCE );
+            return xif;
+        }
+    };
+    
+    /** For unmarshalling whole files - JAXB's own parser would fetch the DTDs. */
+    private static final ThreadLocal<XMLReader> XML_READERS = new ThreadLocal<XMLReader>(){
+        @Override protected XMLReader initialValue() { return createXmlReader(); }
+    };
+    
+    /** XSLT resource path -> compiled. Templates are thread-safe, unlike Transformers. */
+    private static final ConcurrentMap<String, Templates> TEMPLATES = new ConcurrentHashMap();
+    
+    /** Source documents parsed in this run; Set by the MigrationEngine while the migrators load. Null = parse each time. */
+    private static volatile XmlDocumentCache documentCache;
+    
+    public static XmlDocumentCache getDocumentCache() { return documentCache; }
+    public static void setDocumentCache( XmlDocumentCache cache ) { documentCache = cache; }
+    
+    
+    /**
+     *  The shared JAXBContext for the given bean classes. Honors jaxb.properties like JAXBContext.newInstance().
+     */
+    public static JAXBContext getJaxbContext( Class... classes ) throws JAXBException {
+        List<Class> key = Arrays.asList( classes );
+        JAXBContext ctx = JAXB_CONTEXTS.get( key );
+        if( ctx == null ){
+            ctx = JAXBContext.newInstance( classes );
+            JAXBContext prev = JAXB_CONTEXTS.putIfAbsent( key, ctx );
+            if( prev != null )
+                ctx = prev;
+        }
+        return ctx;
+    }
+    
+    /**
+     *  An Unmarshaller for the given bean classes, reused by the current thread.
+     *  Don't pass it to other threads and don't change its settings.
+     */
+    public static Unmarshaller getUnmarshaller( Class... classes ) throws JAXBException {
+        JAXBContext ctx = getJaxbContext( classes );
+        Map<JAXBContext, Unmarshaller> unmarshallers = UNMARSHALLERS.get();
+        Unmarshaller unmarshaller = unmarshallers.get( ctx );
+        if( unmarshaller == null ){
+            unmarshaller = ctx.createUnmarshaller();
+            unmarshallers.put( ctx, unmarshaller );
+        }
+        return unmarshaller;
+    }
+    
     /**
-     *  Creates this app's standard marshaller.
-     *  TODO: Use it in methods below.
+     *  Creates this app's standard marshaller. The context is created once per class.
      */
     public static Marshaller createMarshaller( Class cls ) throws JAXBException {
-        Map<String, Object> props = new HashMap();
-        props.put( Marshaller.JAXB_FORMATTED_OUTPUT, true );
-        props.put( Marshaller.JAXB_ENCODING, "UTF-8");
-        //marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "http://www.jboss.org/schema/swanloom.xsd swanloom.xsd");
-        JAXBContext jc = org.eclipse.persistence.jaxb.JAXBContextFactory.createContext(new Class[]{cls}, props);
+        JAXBContext jc = MARSHALLING_CONTEXTS.get( cls );
+        if( jc == null ){
+            Map<String, Object> props = new HashMap();
+            props.put( Marshaller.JAXB_FORMATTED_OUTPUT, true );
+            props.put( Marshaller.JAXB_ENCODING, "UTF-8");
+            //marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "http://www.jboss.org/schema/swanloom.xsd swanloom.xsd");
+            jc = org.eclipse.persistence.jaxb.JAXBContextFactory.createContext(new Class[]{cls}, props);
+            JAXBContext prev = MARSHALLING_CONTEXTS.putIfAbsent( cls, jc );
+            if( prev != null )
+                jc = prev;
+        }
         
         // JDK way: Marshaller mar = JAXBContext.newInstance(MigrationReportJaxbBean.class).createMarshaller();
         
         return jc.createMarshaller();
     }
     
+    /**
+     *  The current thread's document builder, as created by createXmlDocumentBuilder(). Reset before returned.
+     *  Don't pass it to other threads.
+     */
+    public static DocumentBuilder getDocumentBuilder() {
+        DocumentBuilder db = DOC_BUILDERS.get();
+        db.reset(); // Also resets the entity resolver.
+        db.setEntityResolver( OfflineEntityResolver.INSTANCE );
+        return db;
+    }
+    
+    /**
+     *  Unmarshalls the whole file, parsed without network access (see OfflineEntityResolver).
+     *  Use instead of Unmarshaller.unmarshal( File ).
+     */
+    public static Object unmarshal( Unmarshaller unmarshaller, File file ) throws JAXBException {
+        InputSource is = new InputSource( file.toURI().toString() );
+        return unmarshaller.unmarshal( new SAXSource( XML_READERS.get(), is ) );
+    }
+    
+    /**
+     *  Compiles the XPath, or returns the one the current thread compiled before.
+     *  Uses JDK's XPathFactoryImpl - see unmarshallBeans().
+     */
+    public static XPathExpression compileXPath( String xpath ) throws XPathExpressionException {
+        Map<String, XPathExpression> compiled = XPATHS.get();
+        XPathExpression expr = compiled.get( xpath );
+        if( expr == null ){
+            expr = XPATH.get().compile( xpath );
+            compiled.put( xpath, expr );
+        }
+        return expr;
+    }
+    
+    /**
+     *  We need Sun's XPath as it ignores namespaces if not specified.
+     */
+    private static XPathFactory createXPathFactory() {
+        //XPathFactory xpf = new net.sf.saxon.xpath.XPathFactoryImpl();
+        //XPathFactory xpf = new com.sun.org.apache.xpath.internal.jaxp.XPathFactoryImpl(); // Warning
+        try {
+            return (XPathFactory) Class.forName("com.sun.org.apache.xpath.internal.jaxp.XPathFactoryImpl").newInstance();
+        } catch( Exception ex ){ throw new IllegalStateException("Shouldn't happen: " + ex.getMessage(), ex ); }
+    }
+    
+    
+    
     /**
      *  Convenience - calls the override with must = true.
      */
@@ -86,52 +242,91 @@ public class XmlUtils {
      *  Read XML from the File, look for nodes by XPath, and unmarshall them into given Class.
      *  If Class is Origin.Wise, the origin is stored.
      * 
-     *  Caution: Uses JDK's XPathFactoryImpl - Saxon doesn't do well with namespaces.
+     *  Simple paths (see StaxXPath) are matched while streaming the file, without building a DOM -
+     *  unless the document cache has the document already.
+     *  Caution: Otherwise uses JDK's XPathFactoryImpl - Saxon doesn't do well with namespaces.
      */
     public static <T> List<T> unmarshallBeans( File docFile, String xpath, Class<T> cls ) throws MigrationException{
+        XmlDocumentCache cache = documentCache;
+        StaxXPath streamable = StaxXPath.compile( xpath );
+        if( streamable != null && (cache == null || ! cache.contains( docFile )) ){
+            try {
+                return unmarshallBeans( docFile, streamable, cls );
+            } catch( XMLStreamException ex ) {
+                // E.g. entities declared in a DTD, which StAX doesn't read. DOM will either cope or report it.
+                log.debug("    Can't stream " + docFile.getPath() + ", parsing to DOM: " + ex.getMessage());
+            }
+        }
+        
+        try {
+            Document doc = parseFileToXmlDoc( docFile );
+            synchronized( doc ){
+                return unmarshallBeans( doc, docFile, xpath, cls );
+            }
+        }
+        catch( SAXException | IOException ex ) {
+            throw new MigrationException("Failed parsing bean from a XML file " + docFile.getPath() + ":\n    " + ex.getMessage(), ex);
+        }
+    }
+    
+    /**
+     *  Like above, for an already parsed document. The caller synchronizes on it if it's shared.
+     *  @param docFile  The file the doc was parsed from, for the Origin.
+     */
+    public static <T> List<T> unmarshallBeans( Document doc, File docFile, String xpath, Class<T> cls ) throws MigrationException{
         
         List<T> beans = new LinkedList();
-        DocumentBuilder docBuilder = createXmlDocumentBuilder();
         try {
-            // Parse
-            Document doc = docBuilder.parse(docFile);
-
             // XPath
-            //XPathFactory xpf = XPath xp = XPathFactory.newInstance();
-            //XPathFactory xpf = new net.sf.saxon.xpath.XPathFactoryImpl();
-            // We need Sun's XPath as it ignores namespaces if not specified.
-            //XPathFactory xpf = new com.sun.org.apache.xpath.internal.jaxp.XPathFactoryImpl(); // Warning
-            XPathFactory xpf;
-            try {
-                xpf = (XPathFactory) Class.forName("com.sun.org.apache.xpath.internal.jaxp.XPathFactoryImpl").newInstance();
-            } catch( Exception ex ){ throw new IllegalStateException("Shouldn't happen: " + ex.getMessage(), ex ); }
-            
-            XPath xp = xpf.newXPath();
-            
-            NodeList nodes = (NodeList) xp.evaluate(xpath, doc, XPathConstants.NODESET);
-            
-            
+            NodeList nodes = (NodeList) compileXPath( xpath ).evaluate( doc, XPathConstants.NODESET );
             
             // Unmarshall
-            Unmarshaller unmarshaller = JAXBContext.newInstance(cls).createUnmarshaller();
+            Unmarshaller unmarshaller = getUnmarshaller( cls );
             for( int i = 0; i < nodes.getLength(); i++ ) {
                 Node node = nodes.item( i );
-                T bean = (T) unmarshaller.unmarshal(node);
-                beans.add( bean );
-                
-                // Origin - set File and XPath.
-                if( bean instanceof Origin.Wise ){
-                    final Origin orig = new Origin( docFile, xpath ).setOffset( i );
-                    ((Origin.Wise) bean).setOrigin( orig );
-                }
+                beans.add( (T) unmarshaller.unmarshal(node) );
             }
         }
-        catch( SAXException | IOException | XPathExpressionException | JAXBException ex ) {
+        catch( XPathExpressionException | JAXBException ex ) {
             throw new MigrationException("Failed parsing bean from a XML file " + docFile.getPath() + ":\n    " + ex.getMessage(), ex);
         }
+        setOrigins( beans, docFile, xpath );
         return beans;
     }
     
+    /**
+     *  Streams the file, unmarshalling the elements matching the path.
+     *  @throws XMLStreamException  if the file can't be streamed.
+     */
+    private static <T> List<T> unmarshallBeans( File docFile, StaxXPath path, Class<T> cls ) throws MigrationException, XMLStreamException {
+        try( InputStream is = new BufferedInputStream( new FileInputStream( docFile ) ) ) {
+            XMLStreamReader reader = XML_INPUT_FACTORIES.get().createXMLStreamReader( docFile.toURI().toString(), is );
+            try {
+                List<T> beans = path.unmarshal( reader, getUnmarshaller( cls ), cls );
+                setOrigins( beans, docFile, path.toString() );
+                return beans;
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch( IOException | JAXBException ex ) {
+            throw new MigrationException("Failed parsing bean from a XML file " + docFile.getPath() + ":\n    " + ex.getMessage(), ex);
+        }
+    }
+    
+    /**
+     *  Origin - set File and XPath, if the beans are Origin.Wise.
+     */
+    private static void setOrigins( List beans, File docFile, String xpath ) {
+        int i = 0;
+        for( Object bean : beans ) {
+            if( bean instanceof Origin.Wise )
+                ((Origin.Wise) bean).setOrigin( new Origin( docFile, xpath ).setOffset( i ) );
+            i++;
+        }
+    }
+    
     
     /**
      *  Convenience - calls the override with must = true.
@@ -181,25 +376,71 @@ public class XmlUtils {
     }
 
     public static <T> List<T> readXmlConfigFiles( File baseDir, String filesPattern, String xpath, Class<T> cls, String confAreaDesc ) throws MigrationException{
+        return readXmlConfigFiles( null, 1, baseDir, filesPattern, xpath, cls, confAreaDesc );
+    }
+    
+    /**
+     *  Reads all XML files matching the Ant-style pattern under baseDir, and all nodes matching given XPath in them.
+     *  The beans are in the order of the files, as listed, and of the nodes in them.
+     *  All files are read even if some fail; The failures are reported together.
+     * 
+     *  @param tree     If it covers baseDir, the files are looked up in it instead of scanning the dir. May be null.
+     *  @param threads  How many files to parse at once.
+     */
+    public static <T> List<T> readXmlConfigFiles( SourceTreeCatalog tree, int threads, final File baseDir, String filesPattern, 
+            final String xpath, final Class<T> cls, String confAreaDesc ) throws MigrationException
+    {
         if( ! baseDir.exists() )
             return Collections.EMPTY_LIST;
             
         List<File> files;
         try {
-            //files = new PatternDirWalker( filesPattern ).list( baseDir );
-            files = new DirScanner( filesPattern ).list( baseDir );
+            if( tree != null && tree.covers( baseDir ) )
+                files = tree.findByPattern( baseDir, filesPattern );
+            else
+                files = new DirScanner( filesPattern ).list( baseDir );
         } catch( IOException ex ) {
             throw new MigrationException("Failed finding files matching '"+filesPattern+"' in " + baseDir + ":\n  " + ex.getMessage(), ex);
         }
         
         List<T> res = new LinkedList();
-        for( File file : files ) {
+        List<Exception> problems = new LinkedList();
+        threads = Math.min( threads, files.size() );
+        
+        if( threads <= 1 ){
+            for( File file : files ) {
+                try {
+                    res.addAll( XmlUtils.unmarshallBeans( new File(baseDir, file.getPath()), xpath, cls ) );
+                } catch( Exception ex ) {
+                    problems.add( new MigrationException("Failed loading "+confAreaDesc+" config from "+file.getPath()+":\n    " + ex.getMessage(), ex) );
+                }
+            }
+        }
+        else {
+            ExecutorService pool = ParallelUtils.createPool( threads, "XmlConfigLoader" );
+            List<Future<List<T>>> futures = new ArrayList( files.size() );
             try {
-                res.addAll( XmlUtils.unmarshallBeans( new File(baseDir, file.getPath()), xpath, cls ) );
-            } catch( Exception ex ) {
-                throw new MigrationException("Failed loading "+confAreaDesc+" config from "+file.getPath()+":\n    " + ex.getMessage(), ex);
+                for( final File file : files ) {
+                    futures.add( pool.submit( new Callable<List<T>>() {
+                        @Override public List<T> call() throws MigrationException {
+                            return XmlUtils.unmarshallBeans( new File(baseDir, file.getPath()), xpath, cls );
+                        }
+                    }));
+                }
+            }
+            finally {
+                ParallelUtils.shutdown( pool );
+            }
+            for( int i = 0; i < futures.size(); i++ ) {
+                try {
+                    res.addAll( ParallelUtils.getUnwrapped( futures.get(i) ) );
+                } catch( Exception ex ) {
+                    problems.add( new MigrationException("Failed loading "+confAreaDesc+" config from "+files.get(i).getPath()+":\n    " + ex.getMessage(), ex) );
+                }
             }
         }
+        
+        MigrationExceptions.wrapExceptions( problems, "Failed loading " + confAreaDesc + " config: " );
         return res;
     }
 
@@ -217,10 +458,27 @@ public class XmlUtils {
 
     /**
      * Creates a new default document builder.
-     *
-     *
+     * For a short use on the current thread, prefer getDocumentBuilder().
      */
     public static DocumentBuilder createXmlDocumentBuilder() {
+        DocumentBuilderFactory dbf = DOC_BUILDER_FACTORY;
+        // The factory isn't guaranteed to be thread-safe.
+        synchronized( dbf ){
+            try {
+                DocumentBuilder db = dbf.newDocumentBuilder();
+                db.setEntityResolver( OfflineEntityResolver.INSTANCE );
+                return db;
+            } catch( ParserConfigurationException ex ) {
+                throw new RuntimeException( ex );
+            }
+        }
+    }
+    
+    private static final DocumentBuilderFactory DOC_BUILDER_FACTORY = createDocumentBuilderFactory();
+    
+    private static final SAXParserFactory SAX_PARSER_FACTORY = createSaxParserFactory();
+    
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         dbf.setNamespaceAware( false );
         String feat = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
@@ -229,11 +487,35 @@ public class XmlUtils {
         } catch( ParserConfigurationException ex ) {
             log.warn( "Couldn't set " + feat + " to false. The parser may attempt to load DTD." );
         }
+        return dbf;
+    }
+    
+    /**
+     *  Namespace-aware, as JAXB needs; Doesn't touch the network.
+     */
+    private static XMLReader createXmlReader() {
+        SAXParserFactory spf = SAX_PARSER_FACTORY;
+        synchronized( spf ){
+            try {
+                XMLReader reader = spf.newSAXParser().getXMLReader();
+                reader.setEntityResolver( OfflineEntityResolver.INSTANCE );
+                return reader;
+            } catch( ParserConfigurationException | SAXException ex ) {
+                throw new RuntimeException( ex );
+            }
+        }
+    }
+    
+    private static SAXParserFactory createSaxParserFactory() {
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware( true );
+        String feat = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
         try {
-            return dbf.newDocumentBuilder();
-        } catch( ParserConfigurationException ex ) {
-            throw new RuntimeException( ex );
+            spf.setFeature( feat, false );
+        } catch( ParserConfigurationException | SAXException ex ) {
+            log.warn( "Couldn't set " + feat + " to false. The parser may attempt to load DTD." );
         }
+        return spf;
     }
 
 
@@ -249,8 +531,7 @@ public class XmlUtils {
      * @param xsltIS may be null -> just saves.
      */
     public static File transformDocToFile( Document doc, File file, InputStream xsltIS ) throws TransformerException {
-        //final TransformerFactory tf = TransformerFactory.newInstance();
-        final TransformerFactory tf = new net.sf.saxon.TransformerFactoryImpl(); // XSLT 2.0
+        final TransformerFactory tf = createTransformerFactory();
         
         final Transformer transformer = xsltIS == null ? tf.newTransformer() : tf.newTransformer( new StreamSource( xsltIS ) );
         transformer.setOutputProperty( OutputKeys.INDENT, "yes");
@@ -259,6 +540,41 @@ public class XmlUtils {
         return file;
     }
     
+    /**
+     *  The compiled XSLT from the classpath resource; Compiled on the first call.
+     */
+    public static Templates getTemplates( String resourcePath ) throws TransformerException {
+        Templates templates = TEMPLATES.get( resourcePath );
+        if( templates == null ){
+            URL url = XmlUtils.class.getResource( resourcePath );
+            if( url == null )
+                throw new TransformerException("XSLT not found on classpath: " + resourcePath);
+            templates = createTransformerFactory().newTemplates( new StreamSource( url.toExternalForm() ) );
+            Templates prev = TEMPLATES.putIfAbsent( resourcePath, templates );
+            if( prev != null )
+                templates = prev;
+        }
+        return templates;
+    }
+    
+    /**
+     *  A SAX handler which transforms what it gets into the result, with the same output settings as transformDocToFile().
+     *  @param templates  null -> just saves.
+     */
+    public static TransformerHandler createTransformerHandler( Templates templates, Result result ) throws TransformerException {
+        SAXTransformerFactory tf = createTransformerFactory();
+        TransformerHandler handler = templates == null ? tf.newTransformerHandler() : tf.newTransformerHandler( templates );
+        handler.getTransformer().setOutputProperty( OutputKeys.INDENT, "yes");
+        handler.getTransformer().setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        handler.setResult( result );
+        return handler;
+    }
+    
+    private static SAXTransformerFactory createTransformerFactory() {
+        //return (SAXTransformerFactory) TransformerFactory.newInstance();
+        return new net.sf.saxon.TransformerFactoryImpl(); // XSLT 2.0
+    }
+    
     /**
      *  Calls transformDocToFile(), wraps exception to MigrationException.
      */
@@ -280,21 +596,19 @@ public class XmlUtils {
      * @throws ParserConfigurationException if creation of document fails
      */
     public static Document createDoc() throws ParserConfigurationException {
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        domFactory.setIgnoringComments( true );
-        DocumentBuilder builder = domFactory.newDocumentBuilder();
-        Document doc = builder.getDOMImplementation().createDocument( null, null, null );
-        return doc;
+        return getDocumentBuilder().getDOMImplementation().createDocument( null, null, null );
     }
 
 
     /**
-     * @deprecated TODO: useless?
+     *  Parses the file, or takes it from the document cache if set.
+     *  In that case the Document is shared - don't modify it, and synchronize on it while reading.
      */
     public static Document parseFileToXmlDoc( File file ) throws SAXException, IOException {
-        DocumentBuilder db = XmlUtils.createXmlDocumentBuilder();
-        Document doc = db.parse( file );
-        return doc;
+        XmlDocumentCache cache = documentCache;
+        if( cache != null )
+            return cache.getDocument( file );
+        return getDocumentBuilder().parse( file );
     }
 
 
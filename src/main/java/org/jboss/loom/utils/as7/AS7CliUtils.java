@@ -11,7 +11,6 @@ import org.jboss.loom.ex.CliBatchException;
 import org.jboss.loom.conf.AS7Config;
 import org.jboss.loom.ex.MigrationException;
 import org.jboss.as.controller.client.ModelControllerClient;
-import org.jboss.as.controller.client.OperationBuilder;
 import org.jboss.as.controller.client.helpers.ClientConstants;
 import org.jboss.dmr.ModelNode;
 
@@ -73,23 +72,12 @@ public class AS7CliUtils {
     
     
     /**
-     *  Executes CLI request.
+     *  Executes CLI request, using the shared client for the given server.
+     *  Connection problems are retried by the pool (some machines need to connect two times).
      */
     public static void executeRequest(ModelNode request, AS7Config as7config) throws IOException, CliBatchException {
-        ModelControllerClient client = null;
-        try {
-            client = ModelControllerClient.Factory.create(as7config.getHost(), as7config.getManagementPort());
-            final ModelNode response = client.execute(new OperationBuilder(request).build());
-            throwIfFailure(response);
-        }
-        catch (IOException ex) {
-            // Specific problem on Roman's PC. Need to connect two times.
-            final ModelNode response = client.execute(new OperationBuilder(request).build());
-            throwIfFailure( response );
-        }
-        finally {
-            safeClose(client);
-        }
+        final ModelNode response = AS7ClientPool.get( as7config ).execute( request );
+        throwIfFailure( response );
     }
     
     /**
@@ -106,7 +94,7 @@ public class AS7CliUtils {
     /**
      *  If the result is an error, throw an exception.
      */
-    private static void throwIfFailure(final ModelNode node) throws CliBatchException {
+    static void throwIfFailure(final ModelNode node) throws CliBatchException {
         if( wasSuccess( node ) )
             return;
         
@@ -128,6 +116,36 @@ public class AS7CliUtils {
     }
     
     
+    /**
+     *  Responses in the form AS 7 gives them - for the executors standing in for a server.
+     */
+    static ModelNode createSuccessResponse( ModelNode result ) {
+        ModelNode ret = new ModelNode();
+        ret.get(ClientConstants.OUTCOME).set(ClientConstants.SUCCESS);
+        if( result.isDefined() )
+            ret.get(ClientConstants.RESULT).set( result );
+        return ret;
+    }
+    
+    static ModelNode createFailureResponse( ModelNode description ) {
+        ModelNode ret = new ModelNode();
+        ret.get(ClientConstants.OUTCOME).set("failed");
+        ret.get(ClientConstants.FAILURE_DESCRIPTION).set( description );
+        ret.get("rolled-back").set( true );
+        return ret;
+    }
+    
+    /**
+     *  The failure of a composite as extractFailedOperationNode() expects it. The step is 1-based.
+     */
+    static ModelNode createCompositeFailureResponse( int step, String message ) {
+        ModelNode desc = new ModelNode();
+        desc.get("JBAS014653: Composite operation failed and was rolled back. Steps that failed:")
+            .get(OP_KEY_PREFIX + step).set( message );
+        return createFailureResponse( desc );
+    }
+    
+    
     
     /**
      *  Parses the index of operation which failed.
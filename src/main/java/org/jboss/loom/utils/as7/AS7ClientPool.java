@@ -0,0 +1,250 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import org.jboss.loom.conf.AS7Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  Holds a long-lived management client per AS 7 host and port, so the whole run
+ *  (validation, pre-validation, batch execution, post-validation) pays for the remoting handshake once.
+ *
+ *  ModelControllerClient is thread-safe and multiplexes requests over one connection,
+ *  so one client per target serves the concurrent callers too.
+ *
+ *  A client idle for a while is health-checked before it's handed out, and replaced if the check fails.
+ *  execute() retries on IOException a few times, with an exponential backoff, each time on a fresh client -
+ *  but only reads. A change may have been applied before the connection broke, and repeating it isn't safe;
+ *  For changes, only the connecting (the health check) is retried, and the operation is sent once.
+ *
+ *  Callers must not close the clients obtained from here; Use closeAll() at the end of the run.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class AS7ClientPool implements IOperationExecutor, Closeable {
+    private static final Logger log = LoggerFactory.getLogger( AS7ClientPool.class );
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_INITIAL_MS = 500;
+    private static final long HEALTH_CHECK_IDLE_MS = 30 * 1000;
+
+    /** Pools by "host:port". */
+    private static final Map<String, AS7ClientPool> POOLS = new HashMap();
+
+
+    /**
+     *  Returns the pool for the management interface given in the config, creating it if needed.
+     *  @throws UnknownHostException  if the host can't be resolved.
+     */
+    public static synchronized AS7ClientPool get( AS7Config as7Config ) throws UnknownHostException {
+        String key = as7Config.getHost() + ":" + as7Config.getManagementPort();
+        AS7ClientPool pool = POOLS.get( key );
+        if( pool == null ){
+            pool = new AS7ClientPool( InetAddress.getByName( as7Config.getHost() ), as7Config.getManagementPort() );
+            POOLS.put( key, pool );
+        }
+        return pool;
+    }
+
+    /**
+     *  Makes get() return the given client for the server in the config - e.g. an in-memory one for tests.
+     */
+    public static synchronized void register( AS7Config as7Config, ModelControllerClient client ) {
+        POOLS.put( as7Config.getHost() + ":" + as7Config.getManagementPort(), new AS7ClientPool( client ) );
+    }
+
+    /**
+     *  Closes all the pools; They can't be used anymore, get() creates new ones.
+     */
+    public static synchronized void closeAll() {
+        for( AS7ClientPool pool : POOLS.values() )
+            pool.close();
+        POOLS.clear();
+    }
+
+
+
+    // Null if the client was given and can't be re-created.
+    private final InetAddress address;
+    private final int port;
+
+    private ModelControllerClient client;
+    private long lastUsed;
+
+
+    private AS7ClientPool( InetAddress address, int port ) {
+        this.address = address;
+        this.port = port;
+    }
+
+    /**
+     *  Wraps an existing client, e.g. an in-memory one for tests. Can't reconnect, only retry.
+     */
+    public AS7ClientPool( ModelControllerClient client ) {
+        this.address = null;
+        this.port = -1;
+        this.client = client;
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+
+    /**
+     *  @returns  A live client. Don't close it.
+     */
+    public synchronized ModelControllerClient getClient() {
+        if( this.client == null ){
+            this.client = ModelControllerClient.Factory.create( this.address, this.port );
+            this.lastUsed = 0; // Not connected yet.
+        }
+        else if( needsHealthCheck() && ! isHealthy( this.client ) ){
+            log.debug("    Management connection to " + this + " is broken, reconnecting.");
+            discard( this.client );
+            return getClient();
+        }
+        return this.client;
+    }
+
+
+    /**
+     *  Executes the operation. Read-only operations are retried on IOException with a backoff;
+     *  Others are sent once, on a client which has just been seen working.
+     *  Failures of the operation itself are returned in the response, as with ModelControllerClient.
+     */
+    @Override
+    public ModelNode execute( ModelNode operation ) throws IOException {
+        boolean readOnly = isReadOnly( operation );
+        long backoff = BACKOFF_INITIAL_MS;
+        for( int attempt = 1; ; attempt++ ) {
+            ModelControllerClient cl = readOnly ? getClient() : connect();
+            try {
+                ModelNode res = cl.execute( operation );
+                touch();
+                return res;
+            }
+            catch( IOException ex ){
+                discard( cl );
+                if( ! readOnly || attempt >= MAX_ATTEMPTS )
+                    throw ex;
+                log.warn("Management request to " + this + " failed (attempt " + attempt + " of " + MAX_ATTEMPTS + "), retrying in " + backoff + " ms: " + ex.getMessage());
+                sleep( backoff, ex );
+                backoff *= 2;
+            }
+        }
+    }
+
+
+    /**
+     *  @returns  A client which answered a health check, unless it was used just now. Retries with a backoff.
+     */
+    private ModelControllerClient connect() throws IOException {
+        long backoff = BACKOFF_INITIAL_MS;
+        for( int attempt = 1; ; attempt++ ) {
+            ModelControllerClient cl = getClient();
+            if( ! needsHealthCheck() || isHealthy( cl ) )
+                return cl;
+            discard( cl );
+            IOException ex = new IOException("Can't connect to the management interface at " + this);
+            if( attempt >= MAX_ATTEMPTS )
+                throw ex;
+            log.warn("Connecting to " + this + " failed (attempt " + attempt + " of " + MAX_ATTEMPTS + "), retrying in " + backoff + " ms.");
+            sleep( backoff, ex );
+            backoff *= 2;
+        }
+    }
+
+
+    /**
+     *  @returns  Whether the operation only reads - read-* or a composite of those - and can be repeated safely.
+     */
+    static boolean isReadOnly( ModelNode operation ) {
+        String name = operation.get(ClientConstants.OP).asString();
+        if( ! ClientConstants.COMPOSITE.equals( name ) )
+            return name.startsWith("read-");
+        if( ! operation.hasDefined(ClientConstants.STEPS) )
+            return false;
+        for( ModelNode step : operation.get(ClientConstants.STEPS).asList() ) {
+            if( ! isReadOnly( step ) )
+                return false;
+        }
+        return true;
+    }
+
+
+    /**
+     *  Cheap read of the root's attribute.
+     */
+    private boolean isHealthy( ModelControllerClient cl ) {
+        ModelNode query = new ModelNode();
+        query.get(ClientConstants.OP).set(ClientConstants.READ_ATTRIBUTE_OPERATION);
+        query.get(ClientConstants.OP_ADDR).setEmptyList();
+        query.get("name").set("release-version");
+        try {
+            cl.execute( query );
+            touch();
+            return true;
+        } catch( IOException ex ){
+            return false;
+        }
+    }
+
+    /**
+     *  A new client (not connected yet) or one idle for a while. A given client is trusted.
+     */
+    private synchronized boolean needsHealthCheck() {
+        return this.address != null && System.currentTimeMillis() - this.lastUsed > HEALTH_CHECK_IDLE_MS;
+    }
+
+    private synchronized void touch() {
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     *  @throws IOException  the given one, if interrupted.
+     */
+    private static void sleep( long ms, IOException ex ) throws IOException {
+        try {
+            Thread.sleep( ms );
+        } catch( InterruptedException ex2 ){
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+    }
+
+    /**
+     *  Drops the client if it's still the current one. A given client is kept - there's nothing to replace it with.
+     */
+    private synchronized void discard( ModelControllerClient cl ) {
+        if( this.address == null || this.client != cl )
+            return;
+        AS7CliUtils.safeClose( cl );
+        this.client = null;
+    }
+
+
+    @Override
+    public synchronized void close() {
+        AS7CliUtils.safeClose( this.client );
+        this.client = null;
+    }
+
+    @Override
+    public String toString() {
+        return this.address == null ? "(given client)" : this.address.getHostName() + ":" + this.port;
+    }
+
+}// class
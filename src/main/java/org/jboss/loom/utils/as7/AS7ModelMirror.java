@@ -0,0 +1,170 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
+import org.jboss.loom.ex.CliBatchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  Local copy of the target server's management model.
+ *  Loaded lazily with a single recursive read-resource, then answers existence and attribute queries in memory,
+ *  instead of a read-resource round trip per query.
+ *
+ *  Only valid until the model is changed - call invalidate() after executing a batch.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class AS7ModelMirror {
+    private static final Logger log = LoggerFactory.getLogger( AS7ModelMirror.class );
+
+    private final IOperationExecutor executor;
+
+    /** Result of recursive read-resource of the root. Null if not loaded. */
+    private ModelNode root;
+
+    /** Resources found so far, by formatted address. Null value = doesn't exist. */
+    private final Map<String, ModelNode> byAddress = new HashMap();
+
+    /** Runtime attribute, not included in read-resource. Loaded on demand. */
+    private List<ModelNode> installedDrivers;
+
+
+    public AS7ModelMirror( IOperationExecutor executor ) {
+        this.executor = executor;
+    }
+
+
+    /**
+     *  Whether the resource at the address of given operation exists.
+     *  Drop-in replacement for AS7CliUtils.exists().
+     */
+    public boolean exists( ModelNode operation ) throws IOException, CliBatchException {
+        return null != getResource( operation.get(ClientConstants.OP_ADDR) );
+    }
+
+
+    /**
+     *  @returns  The resource at given address (attributes and children), or null if it doesn't exist.
+     *            Don't modify the returned node.
+     */
+    public synchronized ModelNode getResource( ModelNode address ) throws IOException, CliBatchException {
+        this.loadIfNeeded();
+
+        if( ! address.isDefined() || address.asList().isEmpty() )
+            return this.root;
+
+        String key = formatAddress( address );
+        if( this.byAddress.containsKey( key ) )
+            return this.byAddress.get( key );
+
+        ModelNode node = findResource( this.root, address.asList() );
+        this.byAddress.put( key, node );
+        return node;
+    }
+
+
+    /**
+     *  @returns  The attribute value, or null if the resource doesn't exist or the attribute is not defined.
+     */
+    public ModelNode getAttribute( ModelNode address, String name ) throws IOException, CliBatchException {
+        ModelNode res = getResource( address );
+        if( res == null || ! res.hasDefined( name ) )
+            return null;
+        return res.get( name );
+    }
+
+
+    /**
+     *  Returns the name of JDBC driver which uses given module, or null if there's none.
+     *  @see AS7CliUtils#findJdbcDriverUsingModule(String, org.jboss.as.controller.client.ModelControllerClient)
+     */
+    public synchronized String findJdbcDriverUsingModule( String driverModuleName ) throws IOException {
+        if( this.installedDrivers == null ){
+            ModelNode query = AS7CliUtils.parseCommand("/subsystem=datasources/:read-attribute(name=installed-drivers)");
+            ModelNode res = this.executor.execute( query );
+            ModelNode result = res.get( ClientConstants.RESULT );
+            this.installedDrivers = result.isDefined() ? result.asList() : new ArrayList<ModelNode>();
+        }
+        for( ModelNode driver : this.installedDrivers ) {
+            if( driver.get("driver-module-name").asString().equals( driverModuleName ) )
+                return driver.get("driver-name").asString();
+        }
+        return null;
+    }
+
+
+    /**
+     *  Drops everything loaded; The next query loads the model again.
+     */
+    public synchronized void invalidate() {
+        this.root = null;
+        this.byAddress.clear();
+        this.installedDrivers = null;
+    }
+
+
+    private void loadIfNeeded() throws IOException, CliBatchException {
+        if( this.root != null )
+            return;
+
+        ModelNode query = new ModelNode();
+        query.get(ClientConstants.OP).set(ClientConstants.READ_RESOURCE_OPERATION);
+        query.get(ClientConstants.OP_ADDR).setEmptyList();
+        query.get("recursive").set(true);
+
+        long start = System.currentTimeMillis();
+        ModelNode res = this.executor.execute( query );
+        AS7CliUtils.throwIfFailure( res );
+        this.root = res.get(ClientConstants.RESULT);
+        log.debug("    Loaded the target server model in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+
+    /**
+     *  Walks the read-resource result along the address.
+     *  Child types without children are undefined; Children without attributes may be undefined too.
+     */
+    private static ModelNode findResource( ModelNode root, List<ModelNode> address ) {
+        ModelNode node = root;
+        for( ModelNode segment : address ) {
+            Property prop = segment.asProperty();
+            if( ! node.hasDefined( prop.getName() ) )
+                return null;
+            ModelNode children = node.get( prop.getName() );
+            String name = prop.getValue().asString();
+            if( ! children.has( name ) )
+                return null;
+            node = children.get( name );
+        }
+        return node;
+    }
+
+
+    /**
+     *  "/subsystem=logging/logger=foo"
+     */
+    private static String formatAddress( ModelNode address ) {
+        StringBuilder sb = new StringBuilder();
+        for( ModelNode segment : address.asList() ) {
+            Property prop = segment.asProperty();
+            sb.append('/').append( AS7CliUtils.escapeAddressElement( prop.getName() ) )
+              .append('=').append( AS7CliUtils.escapeAddressElement( prop.getValue().asString() ) );
+        }
+        return sb.toString();
+    }
+
+}// class
@@ -0,0 +1,441 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.NameFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.jboss.loom.utils.JarClassIndex;
+import org.jboss.loom.utils.ParallelUtils;
+import org.jboss.loom.utils.OfflineEntityResolver;
+import org.jboss.loom.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  Index of the AS 7 modules repository, from the module.xml's:
+ *  module name and slot, resource roots, the exports filter, and the classes in the resource roots.
+ *
+ *  Answers "which module provides class X" by the module definitions rather than by the .jar's path.
+ *
+ *  The module.xml's are parsed in parallel. Both the parsed module.xml's and the .jar's classes
+ *  (see JarClassIndex) are kept in the cache dir, keyed by path, size and mtime,
+ *  so a changed module is re-read and an unchanged one is not.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class AS7ModuleIndex {
+    private static final Logger log = LoggerFactory.getLogger( AS7ModuleIndex.class );
+
+    private static final int CACHE_FORMAT = 0x4D49_0001; // "MI", version 1.
+
+
+    /** By "name:slot". */
+    private final Map<String, ModuleInfo> modules = new LinkedHashMap();
+
+    private final Map<File, ModuleInfo> modulesByJar = new HashMap();
+
+    private JarClassIndex classes;
+
+
+    private AS7ModuleIndex() {
+    }
+
+
+    /**
+     *  @returns  The module with the given name and the "main" slot, following aliases; Or null.
+     */
+    public ModuleInfo getModule( String name ) {
+        return getModule( name, "main" );
+    }
+
+    public ModuleInfo getModule( String name, String slot ) {
+        ModuleInfo mod = this.modules.get( name + ":" + slot );
+        // Aliases may chain; Limited in case of a cycle.
+        for( int i = 0; i < 10 && mod != null && mod.aliasTarget != null; i++ )
+            mod = this.modules.get( mod.aliasTarget );
+        return mod == null || mod.aliasTarget != null ? null : mod;
+    }
+
+    public Collection<ModuleInfo> getModules() {
+        return Collections.unmodifiableCollection( this.modules.values() );
+    }
+
+    /**
+     *  @returns  The module which has the given .jar as a resource root, or null.
+     */
+    public ModuleInfo findModuleByJar( File jar ) {
+        return this.modulesByJar.get( jar );
+    }
+
+    /**
+     *  @returns  The first module which has the class in its resource roots and exports its package; Or null.
+     */
+    public ModuleInfo findModuleWithClass( String className ) {
+        for( File jar : this.classes.findJarsWithClass( className ) ) {
+            ModuleInfo mod = this.modulesByJar.get( jar );
+            if( mod != null && mod.isExported( className ) )
+                return mod;
+        }
+        return null;
+    }
+
+
+
+    // === Building. === //
+
+    /**
+     *  @param cacheDir  Where the index is kept between runs. May be null - then it's not kept.
+     */
+    public static AS7ModuleIndex build( File modulesDir, String cacheDir, int threads ) throws IOException {
+        long start = System.currentTimeMillis();
+
+        List<File> moduleXmls = new ArrayList();
+        if( modulesDir.isDirectory() )
+            moduleXmls.addAll( FileUtils.listFiles( modulesDir, new NameFileFilter("module.xml"), TrueFileFilter.INSTANCE ) );
+        Collections.sort( moduleXmls );
+
+        File cacheFile = Utils.getCacheFile( cacheDir, "as7-modules", modulesDir );
+        Map<String, CachedModule> cache = cacheFile == null ? new HashMap<String, CachedModule>() : readCache( cacheFile );
+
+        // Parse the changed module.xml's in parallel.
+        List<ModuleInfo> parsed = new ArrayList();
+        Map<File, Future<ModuleInfo>> pending = new LinkedHashMap();
+        ExecutorService pool = null;
+        try {
+            for( final File xml : moduleXmls ) {
+                CachedModule cached = cache.get( xml.getPath() );
+                if( cached != null && cached.size == xml.length() && cached.mtime == xml.lastModified() ){
+                    parsed.add( cached.module );
+                    continue;
+                }
+                if( pool == null )
+                    pool = ParallelUtils.createPool( threads, "module-index" );
+                pending.put( xml, pool.submit( new Callable<ModuleInfo>() {
+                    @Override public ModuleInfo call() {
+                        return parseModuleXml( xml );
+                    }
+                }));
+            }
+            for( Map.Entry<File, Future<ModuleInfo>> e : pending.entrySet() ) {
+                try {
+                    ModuleInfo mod = ParallelUtils.getUnwrapped( e.getValue() );
+                    if( mod != null )
+                        parsed.add( mod );
+                } catch( RuntimeException ex ){
+                    throw ex;
+                } catch( Exception ex ){
+                    throw new IOException("Failed parsing " + e.getKey().getPath() + ": " + ex.getMessage(), ex);
+                }
+            }
+        }
+        finally {
+            if( pool != null )
+                ParallelUtils.shutdown( pool );
+        }
+
+        // Keep the order of the paths, as the first module with a class wins.
+        Collections.sort( parsed, new Comparator<ModuleInfo>() {
+            @Override public int compare( ModuleInfo a, ModuleInfo b ) {
+                return a.moduleXml.compareTo( b.moduleXml );
+            }
+        });
+
+        AS7ModuleIndex index = new AS7ModuleIndex();
+        List<File> jars = new ArrayList();
+        for( ModuleInfo mod : parsed ) {
+            // Layers and add-ons may override a module; The first one found wins.
+            if( ! index.modules.containsKey( mod.getId() ) )
+                index.modules.put( mod.getId(), mod );
+            for( File root : mod.resourceRoots ) {
+                if( ! root.isFile() || index.modulesByJar.containsKey( root ) )
+                    continue;
+                index.modulesByJar.put( root, mod );
+                jars.add( root );
+            }
+        }
+
+        if( cacheFile != null && ( ! pending.isEmpty() || cache.size() != parsed.size() ) )
+            writeCache( cacheFile, parsed );
+
+        index.classes = JarClassIndex.build( Utils.getCacheFile( cacheDir, "as7-module-classes", modulesDir ), threads, jars );
+
+        log.debug("    Indexed " + index.modules.size() + " modules (" + pending.size() + " module.xml's parsed) in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        return index;
+    }
+
+
+    /**
+     *  Reads only what the index needs; Unknown elements are skipped.
+     *  @returns  null if the file is not a module definition, or is broken - that's reported.
+     */
+    static ModuleInfo parseModuleXml( File xml ) {
+        InputStream is = null;
+        XMLStreamReader reader = null;
+        try {
+            is = new BufferedInputStream( new FileInputStream( xml ) );
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+            factory.setXMLResolver( OfflineEntityResolver.INSTANCE );
+            reader = factory.createXMLStreamReader( is );
+
+            ModuleInfo mod = null;
+            int depth = 0;
+            boolean inTopExports = false;
+            while( reader.hasNext() ) {
+                int event = reader.next();
+                if( event == XMLStreamReader.END_ELEMENT ){
+                    depth--;
+                    if( depth == 1 )
+                        inTopExports = false;
+                    continue;
+                }
+                if( event != XMLStreamReader.START_ELEMENT )
+                    continue;
+                depth++;
+                String el = reader.getLocalName();
+
+                if( depth == 1 ){
+                    if( ! el.equals("module") && ! el.equals("module-alias") )
+                        return null;
+                    String slot = reader.getAttributeValue( null, "slot" );
+                    mod = new ModuleInfo( xml, reader.getAttributeValue( null, "name" ), slot == null ? "main" : slot );
+                    if( el.equals("module-alias") ){
+                        String targetSlot = reader.getAttributeValue( null, "target-slot" );
+                        mod.aliasTarget = reader.getAttributeValue( null, "target-name" ) + ":" + (targetSlot == null ? "main" : targetSlot);
+                    }
+                }
+                else if( depth == 2 && el.equals("exports") )
+                    inTopExports = true;
+                else if( depth == 3 && el.equals("resource-root") ){
+                    String path = reader.getAttributeValue( null, "path" );
+                    if( path != null )
+                        mod.resourceRoots.add( new File( xml.getParentFile(), path ) );
+                }
+                else if( inTopExports && depth == 3 && (el.equals("include") || el.equals("exclude")) ){
+                    String path = reader.getAttributeValue( null, "path" );
+                    if( path != null )
+                        mod.exportFilters.add( new ExportFilter( el.equals("include"), path ) );
+                }
+            }
+            return mod;
+        }
+        catch( IOException | XMLStreamException ex ){
+            log.warn("Can't read " + xml.getPath() + ", skipping: " + ex.getMessage());
+            return null;
+        }
+        finally {
+            if( reader != null )
+                try { reader.close(); } catch( XMLStreamException ex ){ }
+            IOUtils.closeQuietly( is );
+        }
+    }
+
+
+
+    /**
+     *  A module from module.xml. Resource roots are absolute.
+     */
+    public static class ModuleInfo {
+        private final File moduleXml;
+        private final String name;
+        private final String slot;
+        private final List<File> resourceRoots = new ArrayList();
+        private final List<ExportFilter> exportFilters = new ArrayList();
+        /** "name:slot" if this is a module-alias. */
+        private String aliasTarget;
+
+        ModuleInfo( File moduleXml, String name, String slot ) {
+            this.moduleXml = moduleXml;
+            this.name = name;
+            this.slot = slot;
+        }
+
+        /**
+         *  Like the module's exports filter - the first matching include/exclude decides, default is include.
+         *  The filter applies to the package path, e.g. "org/h2/jdbcx".
+         */
+        public boolean isExported( String className ) {
+            int dot = className.lastIndexOf('.');
+            String pkgPath = dot < 0 ? "" : className.substring( 0, dot ).replace('.', '/');
+            for( ExportFilter filter : this.exportFilters ) {
+                if( filter.matches( pkgPath ) )
+                    return filter.include;
+            }
+            return true;
+        }
+
+        String getId() { return name + ":" + slot; }
+
+        public File getModuleXml() { return moduleXml; }
+        public String getName() { return name; }
+        public String getSlot() { return slot; }
+        public List<File> getResourceRoots() { return Collections.unmodifiableList( resourceRoots ); }
+        public String getAliasTarget() { return aliasTarget; }
+
+        @Override public String toString() { return getId(); }
+    }
+
+
+    /**
+     *  <include path="..."/> or <exclude path="..."/>. "*" matches within a path segment, "**" across segments.
+     */
+    private static class ExportFilter {
+        final boolean include;
+        final String path;
+        final Pattern pattern;
+
+        ExportFilter( boolean include, String path ) {
+            this.include = include;
+            this.path = path;
+            StringBuilder re = new StringBuilder();
+            for( int i = 0; i < path.length(); i++ ) {
+                char ch = path.charAt(i);
+                // "foo/**" covers "foo" too.
+                if( ch == '/' && path.substring(i).equals("/**") ){
+                    re.append("(?:/.*)?");
+                    break;
+                }
+                if( ch == '*' &&i + 1 < path.length() && path.charAt(i+1) == '*' ){
+                    re.append(".*");
+                    i++;
+                }
+                else if( ch == '*' )
+                    re.append("[^/]*");
+                else if( ch == '?' )
+                    re.append("[^/]");
+                else
+                    re.append( Pattern.quote( String.valueOf( ch ) ) );
+            }
+            this.pattern = Pattern.compile( re.toString() );
+        }
+
+        boolean matches( String pkgPath ) {
+            return this.pattern.matcher( pkgPath ).matches();
+        }
+    }
+
+
+
+    // === Cache file. === //
+
+    private static class CachedModule {
+        final long size;
+        final long mtime;
+        final ModuleInfo module;
+
+        CachedModule( long size, long mtime, ModuleInfo module ) {
+            this.size = size;
+            this.mtime = mtime;
+            this.module = module;
+        }
+    }
+
+
+    /**
+     *  A missing or unreadable cache is not an error - everything is parsed again.
+     */
+    private static Map<String, CachedModule> readCache( File cacheFile ) {
+        Map<String, CachedModule> ret = new HashMap();
+        if( ! cacheFile.isFile() )
+            return ret;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( cacheFile ) ) );
+            if( in.readInt() != CACHE_FORMAT )
+                return ret;
+            int count = in.readInt();
+            for( int i = 0; i < count; i++ ) {
+                File xml = new File( in.readUTF() );
+                long size = in.readLong();
+                long mtime = in.readLong();
+                ModuleInfo mod = new ModuleInfo( xml, in.readUTF(), in.readUTF() );
+                String alias = in.readUTF();
+                mod.aliasTarget = alias.isEmpty() ? null : alias;
+                int roots = in.readInt();
+                for( int j = 0; j < roots; j++ )
+                    mod.resourceRoots.add( new File( in.readUTF() ) );
+                int filters = in.readInt();
+                for( int j = 0; j < filters; j++ )
+                    mod.exportFilters.add( new ExportFilter( in.readBoolean(), in.readUTF() ) );
+                ret.put( xml.getPath(), new CachedModule( size, mtime, mod ) );
+            }
+            return ret;
+        }
+        catch( IOException ex ){
+            log.debug("    Ignoring unreadable module index cache " + cacheFile.getPath() + ": " + ex.getMessage());
+            return new HashMap();
+        }
+        finally {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+
+    private static void writeCache( File cacheFile, List<ModuleInfo> modules ) {
+        File tmp = new File( cacheFile.getPath() + ".tmp" );
+        try {
+            FileUtils.forceMkdir( cacheFile.getParentFile() );
+            try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ) {
+                out.writeInt( CACHE_FORMAT );
+                out.writeInt( modules.size() );
+                for( ModuleInfo mod : modules ) {
+                    out.writeUTF( mod.moduleXml.getPath() );
+                    out.writeLong( mod.moduleXml.length() );
+                    out.writeLong( mod.moduleXml.lastModified() );
+                    out.writeUTF( mod.name == null ? "" : mod.name );
+                    out.writeUTF( mod.slot );
+                    out.writeUTF( mod.aliasTarget == null ? "" : mod.aliasTarget );
+                    out.writeInt( mod.resourceRoots.size() );
+                    for( File root : mod.resourceRoots )
+                        out.writeUTF( root.getPath() );
+                    out.writeInt( mod.exportFilters.size() );
+                    for( ExportFilter filter : mod.exportFilters ) {
+                        out.writeBoolean( filter.include );
+                        out.writeUTF( filter.path );
+                    }
+                }
+            }
+            Files.move( tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch( IOException ex ){
+            log.warn("Failed writing the module index cache " + cacheFile.getPath() + ": " + ex.getMessage());
+            FileUtils.deleteQuietly( tmp );
+        }
+    }
+
+}// class
@@ -164,6 +164,7 @@ public class AS7ModuleUtils {
      *  should return "com.h2database.h2".
      * 
      *  The current implementation is naive, assuming that the .jar file is in the module's root dir, where module.xml is.
+     *  AS7ModuleIndex reads the module.xml's instead.
      * 
      *  This method behavior is likely to change with various versions of EAP.
      */
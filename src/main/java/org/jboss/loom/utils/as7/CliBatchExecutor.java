@@ -0,0 +1,195 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jboss.as.cli.batch.BatchedCommand;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import org.jboss.loom.ex.ActionException;
+import org.jboss.loom.ex.CliBatchException;
+import org.jboss.loom.ex.MigrationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  Executes the CLI batch as a sequence of composite operations ("chunks") of limited size.
+ *
+ *  The commands come in the order of the sorted actions, so a dependency is always in the same or an earlier chunk.
+ *  The remove and add of an overwritten resource are kept in the same chunk, so they succeed or fail together.
+ *  Each chunk is transactional on the server side. If a chunk fails, then either
+ *   - all-or-nothing (default): the chunks executed before are compensated - the added resources are removed, in reverse order;
+ *   - per-chunk commit: the chunks executed before are kept.
+ *
+ *  The failed operation is mapped back to its action in O(1) - through the chunk offset to the BatchedCommandWithAction.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class CliBatchExecutor {
+    private static final Logger log = LoggerFactory.getLogger( CliBatchExecutor.class );
+
+    private final IOperationExecutor executor;
+
+    /** Max operations per composite. 0 = all in one. */
+    private final int chunkSize;
+
+    /** Keep the chunks executed before a failure? */
+    private final boolean commitPerChunk;
+
+
+    public CliBatchExecutor( IOperationExecutor executor, int chunkSize, boolean commitPerChunk ) {
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.commitPerChunk = commitPerChunk;
+    }
+
+
+    /**
+     *  @throws ActionException  if an operation failed and it's known which action it came from.
+     */
+    public void execute( List<BatchedCommand> commandsList ) throws MigrationException {
+        // Random access for the failure lookup.
+        List<BatchedCommand> commands = new ArrayList( commandsList );
+        final int total = commands.size();
+        if( total == 0 )
+            return;
+
+        List<Integer> ends = splitToChunks( commands, this.chunkSize > 0 ? this.chunkSize : total );
+        int chunks = ends.size();
+
+        for( int chunk = 0; chunk < chunks; chunk++ ) {
+            int from = chunk == 0 ? 0 : ends.get( chunk - 1 );
+            int to = ends.get( chunk );
+
+            ModelNode response;
+            try {
+                response = this.executor.execute( toCompositeRequest( commands.subList( from, to ) ) );
+                AS7CliUtils.throwIfFailure( response );
+            }
+            catch( IOException ex ){
+                compensateIfNeeded( commands, from );
+                throw new MigrationException("Executing a CLI batch failed: " + ex, ex);
+            }
+            catch( CliBatchException ex ){
+                compensateIfNeeded( commands, from );
+                throw translateFailure( ex, commands, from );
+            }
+
+            if( chunks > 1 )
+                log.info("    CLI batch chunk " + (chunk+1) + " of " + chunks + " done; " + to + " of " + total + " operations executed.");
+        }
+    }
+
+
+    /**
+     *  Splits the batch into chunks of at most the given size - or one more, not to split an overwrite
+     *  (a remove followed by an add of the same resource).
+     *
+     *  @returns  The end index (exclusive) of each chunk.
+     */
+    static List<Integer> splitToChunks( List<BatchedCommand> commands, int size ) {
+        List<Integer> ends = new ArrayList();
+        int from = 0;
+        while( from < commands.size() ) {
+            int to = Math.min( from + size, commands.size() );
+            if( to < commands.size() && isOverwrite( commands, to - 1 ) )
+                to++;
+            ends.add( to );
+            from = to;
+        }
+        return ends;
+    }
+
+    /**
+     *  @returns  Whether the command at the index removes the resource which the next one adds.
+     */
+    private static boolean isOverwrite( List<BatchedCommand> commands, int index ) {
+        if( index < 0 || index + 1 >= commands.size() )
+            return false;
+        ModelNode remove = commands.get( index ).getRequest();
+        ModelNode add = commands.get( index + 1 ).getRequest();
+        return ClientConstants.REMOVE_OPERATION.equals( remove.get(ClientConstants.OP).asString() )
+            && ClientConstants.ADD.equals( add.get(ClientConstants.OP).asString() )
+            && remove.get(ClientConstants.OP_ADDR).equals( add.get(ClientConstants.OP_ADDR) );
+    }
+
+
+    /**
+     *  Same as DefaultBatch.toRequest(), for a part of the batch.
+     */
+    private static ModelNode toCompositeRequest( List<BatchedCommand> commands ) {
+        ModelNode composite = new ModelNode();
+        composite.get(ClientConstants.OP).set(ClientConstants.COMPOSITE);
+        composite.get(ClientConstants.OP_ADDR).setEmptyList();
+        ModelNode steps = composite.get(ClientConstants.STEPS);
+        for( BatchedCommand cmd : commands )
+            steps.add( cmd.getRequest() );
+        return composite;
+    }
+
+
+    /**
+     *  Finds the action which caused the failure. "Operation step-N" is 1-based, within the chunk.
+     */
+    private static MigrationException translateFailure( CliBatchException ex, List<BatchedCommand> commands, int chunkStart ) {
+        BatchFailure failure;
+        try {
+            failure = AS7CliUtils.extractFailedOperationNode( ex.getResponseNode() );
+        } catch( MigrationException ex2 ){
+            failure = null;
+        }
+        if( null == failure ){
+            log.warn("Unable to parse CLI batch operation index: " + ex.getResponseNode());
+            return new MigrationException("Executing a CLI batch failed: " + ex, ex);
+        }
+
+        int index = chunkStart + failure.getIndex() - 1;
+        BatchedCommand cmd = index < commands.size() ? commands.get( index ) : null;
+        if( cmd instanceof BatchedCommandWithAction )
+            return new ActionException( ((BatchedCommandWithAction) cmd).getAction(), "Executing a CLI batch failed: " + failure.getMessage());
+
+        return new MigrationException("Executing a CLI batch failed at operation " + (index+1) + ": " + failure.getMessage(), ex);
+    }
+
+
+    /**
+     *  Undoes the chunks before the given index, unless committing per chunk.
+     *  Only additions can be undone; Other operations are reported.
+     *  An overwritten resource is left in its new state - removing it wouldn't bring the original back.
+     *  Best effort - a failed removal is logged and the rest continues.
+     */
+    private void compensateIfNeeded( List<BatchedCommand> commands, int executedCount ) {
+        if( this.commitPerChunk || executedCount == 0 )
+            return;
+
+        log.info("    Undoing " + executedCount + " CLI operations of the previous chunks.");
+        for( int i = executedCount - 1; i >= 0; i-- ) {
+            ModelNode request = commands.get(i).getRequest();
+            String op = request.get(ClientConstants.OP).asString();
+            if( ! ClientConstants.ADD.equals( op ) ){
+                log.warn("Can't undo operation '" + op + "', needs to be reverted manually: " + commands.get(i).getCommand());
+                continue;
+            }
+            if( isOverwrite( commands, i - 1 ) ){
+                log.warn("Can't undo an overwrite, the original needs to be restored manually: " + commands.get(i).getCommand());
+                i--; // The remove.
+                continue;
+            }
+            try {
+                ModelNode res = this.executor.execute( AS7CliUtils.createRemoveCommandForResource( request ) );
+                AS7CliUtils.throwIfFailure( res );
+            }
+            catch( IOException | CliBatchException ex ){
+                log.warn("Failed undoing '" + commands.get(i).getCommand() + "': " + ex.getMessage());
+            }
+        }
+    }
+
+}// class
@@ -0,0 +1,23 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.io.IOException;
+import org.jboss.dmr.ModelNode;
+
+/**
+ *  Something which executes management operations - a running server, or its config file in offline mode.
+ *  Responses are the same as from ModelControllerClient - outcome, result, failure-description.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public interface IOperationExecutor {
+
+    ModelNode execute( ModelNode operation ) throws IOException;
+
+}// class
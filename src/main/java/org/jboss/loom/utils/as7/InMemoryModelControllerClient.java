@@ -0,0 +1,449 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.Operation;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
+import org.jboss.threads.AsyncFuture;
+import org.jboss.threads.AsyncFutureTask;
+
+/**
+ *  A management client without a server - keeps the resource tree in memory.
+ *  For tests and benchmarks of the migration which shouldn't need a running AS 7.
+ *
+ *  Supports read-resource, read-attribute, read-children-names, add, remove, write-attribute, undefine-attribute
+ *  and composite. A composite is applied to a copy of the tree, so a failed step leaves the tree untouched;
+ *  The failure-description is in the AS 7 format, which AS7CliUtils.extractFailedOperationNode() parses.
+ *
+ *  Records the latency of the operations per operation name, and can add a delay to each request,
+ *  to simulate a remote server. Use with AS7ClientPool.register() to make the migration use it.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class InMemoryModelControllerClient implements ModelControllerClient {
+
+    private Resource root = new Resource();
+
+    /** Delay added to each request, in ms. */
+    private volatile long delay = 0;
+
+    /** Delays by operation name - added to the one above. */
+    private final Map<String, Long> delaysByOp = Collections.synchronizedMap( new HashMap<String, Long>() );
+
+    private final Map<String, OperationStats> stats = new LinkedHashMap();
+
+    private volatile boolean closed = false;
+
+
+    /**
+     *  An empty server - only the root resource.
+     */
+    public InMemoryModelControllerClient() {
+    }
+
+
+    /**
+     *  Creates a client with the subsystems the migrators work with, as in a fresh standalone.xml,
+     *  including the H2 JDBC driver and the standard socket binding group.
+     */
+    public static InMemoryModelControllerClient createWithDefaultSubsystems() {
+        InMemoryModelControllerClient client = new InMemoryModelControllerClient();
+        Resource root = client.root;
+        root.attributes.get("release-version").set("7.2.0.Final");
+
+        Resource ds = root.addChild("subsystem", "datasources");
+        Resource h2 = ds.addChild("jdbc-driver", "h2");
+        h2.attributes.get("driver-name").set("h2");
+        h2.attributes.get("driver-module-name").set("com.h2database.h2");
+        h2.attributes.get("driver-xa-datasource-class-name").set("org.h2.jdbcx.JdbcDataSource");
+
+        root.addChild("subsystem", "logging");
+        root.addChild("subsystem", "security");
+        root.addChild("subsystem", "web");
+        root.addChild("subsystem", "resource-adapters");
+        Resource sockets = root.addChild("socket-binding-group", "standard-sockets");
+        sockets.attributes.get("default-interface").set("public");
+        return client;
+    }
+
+
+
+    // === Delays and stats. === //
+
+    public void setDelay( long millis ) { this.delay = millis; }
+
+    public void setDelay( String operationName, long millis ) { this.delaysByOp.put( operationName, millis ); }
+
+
+    /**
+     *  @returns  A copy of the stats, by operation name. A composite counts once, under "composite".
+     */
+    public Map<String, OperationStats> getStats() {
+        synchronized( this.stats ){
+            Map<String, OperationStats> ret = new LinkedHashMap();
+            for( Map.Entry<String, OperationStats> e : this.stats.entrySet() )
+                ret.put( e.getKey(), e.getValue().copy() );
+            return ret;
+        }
+    }
+
+    public void resetStats() {
+        synchronized( this.stats ){
+            this.stats.clear();
+        }
+    }
+
+    private void record( String opName, long nanos ) {
+        synchronized( this.stats ){
+            OperationStats st = this.stats.get( opName );
+            if( st == null )
+                this.stats.put( opName, st = new OperationStats() );
+            st.count++;
+            st.totalNanos += nanos;
+            st.maxNanos = Math.max( st.maxNanos, nanos );
+        }
+    }
+
+
+
+    // === ModelControllerClient. === //
+
+    @Override
+    public ModelNode execute( ModelNode operation ) throws IOException {
+        if( this.closed )
+            throw new IOException("Client is closed.");
+
+        long start = System.nanoTime();
+        String opName = operation.get(ClientConstants.OP).asString();
+
+        // The delay is out of the lock, so that concurrent requests wait in parallel, as with a server.
+        Long opDelay = this.delaysByOp.get( opName );
+        sleep( this.delay + (opDelay == null ? 0 : opDelay) );
+
+        ModelNode response;
+        synchronized( this ){
+            response = executeRequest( operation );
+        }
+        record( opName, System.nanoTime() - start );
+        return response;
+    }
+
+    @Override
+    public ModelNode execute( Operation operation ) throws IOException {
+        return execute( operation.getOperation() );
+    }
+
+    @Override
+    public ModelNode execute( ModelNode operation, OperationMessageHandler messageHandler ) throws IOException {
+        return execute( operation );
+    }
+
+    @Override
+    public ModelNode execute( Operation operation, OperationMessageHandler messageHandler ) throws IOException {
+        return execute( operation.getOperation() );
+    }
+
+    @Override
+    public AsyncFuture<ModelNode> executeAsync( ModelNode operation, OperationMessageHandler messageHandler ) {
+        CompletedFuture future = new CompletedFuture();
+        try {
+            future.complete( execute( operation ) );
+        } catch( IOException ex ){
+            future.fail( ex );
+        }
+        return future;
+    }
+
+    @Override
+    public AsyncFuture<ModelNode> executeAsync( Operation operation, OperationMessageHandler messageHandler ) {
+        return executeAsync( operation.getOperation(), messageHandler );
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+
+    private static void sleep( long millis ) throws IOException {
+        if( millis <= 0 )
+            return;
+        try {
+            Thread.sleep( millis );
+        } catch( InterruptedException ex ){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during the simulated delay.", ex);
+        }
+    }
+
+
+
+    // === Operations. === //
+
+    /**
+     *  A composite works on a copy of the tree, which replaces the tree only if all steps succeed.
+     */
+    private ModelNode executeRequest( ModelNode operation ) {
+        if( ! ClientConstants.COMPOSITE.equals( operation.get(ClientConstants.OP).asString() ) ){
+            try {
+                return AS7CliUtils.createSuccessResponse( executeStep( this.root, operation ) );
+            } catch( OperationFailedException ex ){
+                return AS7CliUtils.createFailureResponse( new ModelNode().set( ex.getMessage() ) );
+            }
+        }
+
+        Resource copy = this.root.copy();
+        ModelNode results = new ModelNode();
+        List<ModelNode> steps = operation.get(ClientConstants.STEPS).asList();
+        for( int i = 0; i < steps.size(); i++ ) {
+            try {
+                results.get("step-" + (i+1)).set( AS7CliUtils.createSuccessResponse( executeStep( copy, steps.get(i) ) ) );
+            } catch( OperationFailedException ex ){
+                return AS7CliUtils.createCompositeFailureResponse( i+1, ex.getMessage() );
+            }
+        }
+        this.root = copy;
+        return AS7CliUtils.createSuccessResponse( results );
+    }
+
+
+    private static ModelNode executeStep( Resource root, ModelNode op ) throws OperationFailedException {
+        String opName = op.get(ClientConstants.OP).asString();
+        List<Property> address = op.hasDefined(ClientConstants.OP_ADDR)
+                ? op.get(ClientConstants.OP_ADDR).asPropertyList() : Collections.<Property>emptyList();
+
+        switch( opName ){
+            case ClientConstants.ADD: {
+                if( address.isEmpty() )
+                    throw new OperationFailedException("Can't add the root resource.");
+                Resource parent = resolveExisting( root, address.subList( 0, address.size() - 1 ) );
+                Property last = address.get( address.size() - 1 );
+                if( parent.getChild( last.getName(), last.getValue().asString() ) != null )
+                    throw new OperationFailedException("JBAS014803: Duplicate resource " + formatAddress( address ));
+                Resource res = parent.addChild( last.getName(), last.getValue().asString() );
+                for( String key : op.keys() ) {
+                    if( key.equals(ClientConstants.OP) || key.equals(ClientConstants.OP_ADDR) || key.equals("operation-headers") )
+                        continue;
+                    if( op.get( key ).isDefined() )
+                        res.attributes.get( key ).set( op.get( key ) );
+                }
+                return new ModelNode();
+            }
+            case ClientConstants.REMOVE_OPERATION: {
+                if( address.isEmpty() )
+                    throw new OperationFailedException("Can't remove the root resource.");
+                Resource parent = resolveExisting( root, address.subList( 0, address.size() - 1 ) );
+                Property last = address.get( address.size() - 1 );
+                if( ! parent.removeChild( last.getName(), last.getValue().asString() ) )
+                    throw notFound( address );
+                return new ModelNode();
+            }
+            case ClientConstants.WRITE_ATTRIBUTE_OPERATION:
+            case "undefine-attribute": {
+                Resource res = resolveExisting( root, address );
+                String name = op.get("name").asString();
+                if( opName.equals("undefine-attribute") || ! op.get("value").isDefined() )
+                    res.attributes.remove( name );
+                else
+                    res.attributes.get( name ).set( op.get("value") );
+                return new ModelNode();
+            }
+            case ClientConstants.READ_ATTRIBUTE_OPERATION: {
+                Resource res = resolveExisting( root, address );
+                String name = op.get("name").asString();
+                if( "installed-drivers".equals( name ) && formatAddress( address ).equals("/subsystem=datasources") )
+                    return readInstalledDrivers( res );
+                return res.attributes.has( name ) ? res.attributes.get( name ) : new ModelNode();
+            }
+            case ClientConstants.READ_RESOURCE_OPERATION: {
+                Resource res = resolveExisting( root, address );
+                return res.read( op.get("recursive").isDefined() && op.get("recursive").asBoolean() );
+            }
+            case "read-children-names": {
+                Resource res = resolveExisting( root, address );
+                ModelNode ret = new ModelNode().setEmptyList();
+                Map<String, Resource> ofType = res.children.get( op.get("child-type").asString() );
+                if( ofType != null )
+                    for( String name : ofType.keySet() )
+                        ret.add( name );
+                return ret;
+            }
+            case ClientConstants.COMPOSITE: {
+                for( ModelNode step : op.get(ClientConstants.STEPS).asList() )
+                    executeStep( root, step );
+                return new ModelNode();
+            }
+            default:
+                throw new OperationFailedException("JBAS014884: No operation named '" + opName + "' exists at address " + formatAddress( address ));
+        }
+    }
+
+
+    /**
+     *  Derived from the jdbc-driver children, as AS 7 does for the registered drivers.
+     */
+    private static ModelNode readInstalledDrivers( Resource datasources ) {
+        ModelNode ret = new ModelNode().setEmptyList();
+        Map<String, Resource> drivers = datasources.children.get("jdbc-driver");
+        if( drivers == null )
+            return ret;
+        for( Map.Entry<String, Resource> e : drivers.entrySet() ) {
+            ModelNode driver = e.getValue().attributes.clone();
+            driver.get("driver-name").set( e.getKey() );
+            ret.add( driver );
+        }
+        return ret;
+    }
+
+
+    private static Resource resolveExisting( Resource root, List<Property> address ) throws OperationFailedException {
+        Resource cur = root;
+        for( Property seg : address ) {
+            cur = cur.getChild( seg.getName(), seg.getValue().asString() );
+            if( cur == null )
+                throw notFound( address );
+        }
+        return cur;
+    }
+
+    private static OperationFailedException notFound( List<Property> address ) {
+        return new OperationFailedException("JBAS014807: Management resource '" + formatAddress( address ) + "' not found");
+    }
+
+    private static String formatAddress( List<Property> address ) {
+        StringBuilder sb = new StringBuilder();
+        for( Property seg : address )
+            sb.append('/').append( seg.getName() ).append('=').append( seg.getValue().asString() );
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
+
+
+    /**
+     *  A node of the tree - attributes and children by type and name.
+     */
+    private static class Resource {
+        final ModelNode attributes = new ModelNode().setEmptyObject();
+        final Map<String, Map<String, Resource>> children = new LinkedHashMap();
+
+        Resource getChild( String type, String name ) {
+            Map<String, Resource> ofType = this.children.get( type );
+            return ofType == null ? null : ofType.get( name );
+        }
+
+        Resource addChild( String type, String name ) {
+            Map<String, Resource> ofType = this.children.get( type );
+            if( ofType == null )
+                this.children.put( type, ofType = new LinkedHashMap() );
+            Resource res = new Resource();
+            ofType.put( name, res );
+            return res;
+        }
+
+        boolean removeChild( String type, String name ) {
+            Map<String, Resource> ofType = this.children.get( type );
+            return ofType != null && ofType.remove( name ) != null;
+        }
+
+        /**
+         *  Like read-resource - children are listed by name; Their content only if recursive.
+         */
+        ModelNode read( boolean recursive ) {
+            ModelNode ret = this.attributes.clone();
+            for( Map.Entry<String, Map<String, Resource>> type : this.children.entrySet() ) {
+                ModelNode typeNode = ret.get( type.getKey() );
+                for( Map.Entry<String, Resource> child : type.getValue().entrySet() ) {
+                    if( recursive )
+                        typeNode.get( child.getKey() ).set( child.getValue().read( true ) );
+                    else
+                        typeNode.get( child.getKey() );
+                }
+            }
+            return ret;
+        }
+
+        Resource copy() {
+            Resource ret = new Resource();
+            ret.attributes.set( this.attributes.clone() );
+            for( Map.Entry<String, Map<String, Resource>> type : this.children.entrySet() ) {
+                Map<String, Resource> ofType = new LinkedHashMap();
+                for( Map.Entry<String, Resource> child : type.getValue().entrySet() )
+                    ofType.put( child.getKey(), child.getValue().copy() );
+                ret.children.put( type.getKey(), ofType );
+            }
+            return ret;
+        }
+    }
+
+
+    /**
+     *  Latency of one operation name.
+     */
+    public static class OperationStats {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        OperationStats copy() {
+            OperationStats ret = new OperationStats();
+            ret.count = this.count;
+            ret.totalNanos = this.totalNanos;
+            ret.maxNanos = this.maxNanos;
+            return ret;
+        }
+
+        public long getCount() { return count; }
+        public long getTotalNanos() { return totalNanos; }
+        public long getMaxNanos() { return maxNanos; }
+        public long getAverageNanos() { return count == 0 ? 0 : totalNanos / count; }
+
+        @Override
+        public String toString() {
+            return count + "x, avg " + getAverageNanos() / 1000 + " us, max " + maxNanos / 1000 + " us";
+        }
+    }
+
+
+    /**
+     *  The result is known when created - the operations are executed synchronously.
+     */
+    private static class CompletedFuture extends AsyncFutureTask<ModelNode> {
+        CompletedFuture() {
+            super( new Executor() {
+                @Override public void execute( Runnable command ) { command.run(); }
+            });
+        }
+
+        void complete( ModelNode result ) { setResult( result ); }
+
+        void fail( Throwable ex ) { setFailed( ex ); }
+
+        @Override
+        public void asyncCancel( boolean interruptionDesired ) {
+            setCancelled();
+        }
+    }
+
+
+    private static class OperationFailedException extends Exception {
+        OperationFailedException( String msg ) { super( msg ); }
+    }
+
+}// class
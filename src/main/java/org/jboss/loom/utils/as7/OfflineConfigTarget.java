@@ -0,0 +1,386 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang.StringUtils;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
+import org.jboss.loom.ex.MigrationException;
+import org.jboss.loom.utils.XmlUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSOutput;
+import org.w3c.dom.ls.LSSerializer;
+import org.xml.sax.SAXException;
+
+/**
+ *  Offline mode - applies the management operations directly to the target server's config file,
+ *  e.g. standalone.xml, without a running server.
+ *
+ *  Supports add, remove, write-attribute, undefine-attribute, read-attribute, read-resource and composite,
+ *  for the resource types in OfflineResourceMapping. Anything else fails, like an unknown operation would.
+ *  The responses, including the failures of composite steps, look like those of AS 7,
+ *  so the rest of the code (CliBatchExecutor, AS7ModelMirror) works the same.
+ *
+ *  The operations change the document in memory; save() writes it, after backing up the original file.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class OfflineConfigTarget implements IOperationExecutor {
+    private static final Logger log = LoggerFactory.getLogger( OfflineConfigTarget.class );
+
+    private static final String SUBSYSTEM_NS_PREFIX = "urn:jboss:domain:";
+    private static final String BACKUP_SUFFIX = ".before-migration";
+
+    private final File configFile;
+    private Document doc;
+    private boolean modified = false;
+    private File backupFile;
+    private boolean saved = false;
+
+
+    public OfflineConfigTarget( File configFile ) {
+        this.configFile = configFile;
+    }
+
+
+    public synchronized OfflineConfigTarget load() throws MigrationException {
+        try {
+            this.doc = XmlUtils.createXmlDocumentBuilder().parse( this.configFile );
+        }
+        catch( SAXException | IOException ex ) {
+            throw new MigrationException("Failed loading AS 7 config from " + this.configFile.getPath() + ": " + ex.getMessage(), ex );
+        }
+        this.modified = false;
+        return this;
+    }
+
+
+    /**
+     *  Executes the operation against the document in memory. A failed composite leaves the document unchanged.
+     */
+    @Override
+    public synchronized ModelNode execute( ModelNode operation ) {
+        if( ! ClientConstants.COMPOSITE.equals( operation.get(ClientConstants.OP).asString() ) ){
+            try {
+                return AS7CliUtils.createSuccessResponse( executeStep( operation ) );
+            } catch( OperationFailedException ex ){
+                return AS7CliUtils.createFailureResponse( new ModelNode().set( ex.getMessage() ) );
+            }
+        }
+
+        Document snapshot = (Document) this.doc.cloneNode( true );
+        boolean wasModified = this.modified;
+        List<ModelNode> steps = operation.get(ClientConstants.STEPS).asList();
+        ModelNode results = new ModelNode();
+        for( int i = 0; i < steps.size(); i++ ) {
+            try {
+                results.get("step-" + (i+1)).set( AS7CliUtils.createSuccessResponse( executeStep( steps.get(i) ) ) );
+            }
+            catch( OperationFailedException ex ){
+                this.doc = snapshot;
+                this.modified = wasModified;
+                return AS7CliUtils.createCompositeFailureResponse( i+1, ex.getMessage() );
+            }
+        }
+        return AS7CliUtils.createSuccessResponse( results );
+    }
+
+
+    private ModelNode executeStep( ModelNode op ) throws OperationFailedException {
+        String opName = op.get(ClientConstants.OP).asString();
+        List<Property> address = op.hasDefined(ClientConstants.OP_ADDR)
+                ? op.get(ClientConstants.OP_ADDR).asPropertyList() : Collections.<Property>emptyList();
+
+        switch( opName ){
+            case ClientConstants.ADD: {
+                if( address.isEmpty() )
+                    throw new OperationFailedException("Can't add the root resource.");
+                Resolved parent = resolve( address.subList( 0, address.size() - 1 ) );
+                if( parent == null )
+                    throw notFound( address.subList( 0, address.size() - 1 ) );
+                Property last = address.get( address.size() - 1 );
+                OfflineResourceMapping mapping = getMapping( parent, last.getName(), address );
+                if( mapping.find( parent.element, last.getValue().asString() ) != null )
+                    throw new OperationFailedException("JBAS014803: Duplicate resource " + formatAddress( address ));
+                Element el = mapping.create( parent.element, last.getValue().asString(), parent.childOrder );
+                for( String key : op.keys() ) {
+                    if( key.equals(ClientConstants.OP) || key.equals(ClientConstants.OP_ADDR) || key.equals("operation-headers") )
+                        continue;
+                    mapping.writeAttribute( el, key, op.get( key ) );
+                }
+                this.modified = true;
+                return new ModelNode();
+            }
+            case ClientConstants.REMOVE_OPERATION: {
+                Resolved res = resolveExisting( address );
+                if( res.mapping == null )
+                    throw new OperationFailedException("Removing " + formatAddress( address ) + " is not supported in offline mode.");
+                OfflineResourceMapping.removeElement( res.element );
+                this.modified = true;
+                return new ModelNode();
+            }
+            case ClientConstants.WRITE_ATTRIBUTE_OPERATION:
+            case "undefine-attribute": {
+                Resolved res = resolveExisting( address );
+                if( res.mapping == null )
+                    throw new OperationFailedException("Writing attributes of " + formatAddress( address ) + " is not supported in offline mode.");
+                ModelNode value = opName.equals("undefine-attribute") ? new ModelNode() : op.get("value");
+                res.mapping.writeAttribute( res.element, op.get("name").asString(), value );
+                this.modified = true;
+                return new ModelNode();
+            }
+            case ClientConstants.READ_ATTRIBUTE_OPERATION: {
+                Resolved res = resolveExisting( address );
+                String name = op.get("name").asString();
+                if( "installed-drivers".equals( name ) && "subsystem=datasources".equals( res.key ) )
+                    return readInstalledDrivers( res );
+                return res.mapping == null ? new ModelNode() : res.mapping.readAttribute( res.element, name );
+            }
+            case ClientConstants.READ_RESOURCE_OPERATION: {
+                Resolved res = resolveExisting( address );
+                return readResource( res, op.get("recursive").isDefined() && op.get("recursive").asBoolean() );
+            }
+            case ClientConstants.COMPOSITE: {
+                for( ModelNode step : op.get(ClientConstants.STEPS).asList() )
+                    executeStep( step );
+                return new ModelNode();
+            }
+            default:
+                throw new OperationFailedException("JBAS014884: No operation named '" + opName + "' exists at address " + formatAddress( address ) + " in offline mode.");
+        }
+    }
+
+
+
+    // === Address resolution. === //
+
+    /**
+     *  @returns  The resource at the address, or null if it doesn't exist.
+     *  @throws OperationFailedException  if some resource type on the way is not supported.
+     */
+    private Resolved resolve( List<Property> address ) throws OperationFailedException {
+        Resolved cur = new Resolved( this.doc.getDocumentElement(), "", null, null );
+        for( int i = 0; i < address.size() && cur != null; i++ ) {
+            Property seg = address.get(i);
+            String name = seg.getValue().asString();
+
+            if( cur.key.isEmpty() && "subsystem".equals( seg.getName() ) ){
+                Element sub = findSubsystem( name );
+                cur = sub == null ? null : new Resolved( sub, "subsystem=" + name, null, OfflineResourceMapping.getSubsystemChildOrder( name ) );
+                continue;
+            }
+            OfflineResourceMapping mapping = getMapping( cur, seg.getName(), address.subList( 0, i+1 ) );
+            Element el = mapping.find( cur.element, name );
+            cur = el == null ? null : new Resolved( el, mapping.key, mapping, mapping.getChildOrder() );
+        }
+        return cur;
+    }
+
+    private Resolved resolveExisting( List<Property> address ) throws OperationFailedException {
+        Resolved res = resolve( address );
+        if( res == null )
+            throw notFound( address );
+        return res;
+    }
+
+    private static OfflineResourceMapping getMapping( Resolved parent, String type, List<Property> address ) throws OperationFailedException {
+        String key = parent.key.isEmpty() ? type : parent.key + "/" + type;
+        OfflineResourceMapping mapping = OfflineResourceMapping.get( key );
+        if( mapping == null )
+            throw new OperationFailedException("Resource " + formatAddress( address ) + " is not supported in offline mode.");
+        return mapping;
+    }
+
+    /**
+     *  <subsystem xmlns="urn:jboss:domain:datasources:1.1"> under <profile>.
+     */
+    private Element findSubsystem( String name ) {
+        Element profile = OfflineResourceMapping.firstChild( this.doc.getDocumentElement(), "profile" );
+        if( profile == null )
+            return null;
+        for( Element sub : OfflineResourceMapping.childElements( profile, "subsystem" ) ) {
+            if( name.equals( getSubsystemName( sub ) ) )
+                return sub;
+        }
+        return null;
+    }
+
+    private static String getSubsystemName( Element subsystem ) {
+        String ns = subsystem.getAttribute("xmlns");
+        if( ! ns.startsWith( SUBSYSTEM_NS_PREFIX ) )
+            return null;
+        return StringUtils.substringBeforeLast( ns.substring( SUBSYSTEM_NS_PREFIX.length() ), ":" );
+    }
+
+
+
+    // === Reading. === //
+
+    private ModelNode readResource( Resolved res, boolean recursive ) {
+        ModelNode ret = res.mapping == null ? new ModelNode().setEmptyObject() : res.mapping.readAttributes( res.element );
+
+        // The root: subsystems and socket binding groups.
+        if( res.key.isEmpty() ){
+            Element profile = OfflineResourceMapping.firstChild( res.element, "profile" );
+            if( profile != null ){
+                for( Element sub : OfflineResourceMapping.childElements( profile, "subsystem" ) ) {
+                    String name = getSubsystemName( sub );
+                    if( name == null )  continue;
+                    Resolved child = new Resolved( sub, "subsystem=" + name, null, null );
+                    ret.get("subsystem").get( name ).set( recursive ? readResource( child, true ) : new ModelNode() );
+                }
+            }
+            OfflineResourceMapping sbg = OfflineResourceMapping.get("socket-binding-group");
+            addChildren( ret, res, sbg, recursive );
+            return ret;
+        }
+
+        for( OfflineResourceMapping mapping : OfflineResourceMapping.getChildren( res.key ) )
+            addChildren( ret, res, mapping, recursive );
+        return ret;
+    }
+
+    private void addChildren( ModelNode ret, Resolved parent, OfflineResourceMapping mapping, boolean recursive ) {
+        for( Element el : mapping.findAll( parent.element ) ) {
+            Resolved child = new Resolved( el, mapping.key, mapping, mapping.getChildOrder() );
+            ret.get( mapping.type ).get( mapping.getName( el ) ).set( recursive ? readResource( child, true ) : new ModelNode() );
+        }
+    }
+
+    /**
+     *  A runtime attribute on a real server; Here, derived from the configured drivers.
+     */
+    private static ModelNode readInstalledDrivers( Resolved datasources ) {
+        ModelNode ret = new ModelNode().setEmptyList();
+        OfflineResourceMapping drivers = OfflineResourceMapping.get("subsystem=datasources/jdbc-driver");
+        for( Element el : drivers.findAll( datasources.element ) ) {
+            ModelNode driver = new ModelNode();
+            driver.get("driver-name").set( el.getAttribute("name") );
+            driver.get("driver-module-name").set( el.getAttribute("module") );
+            ret.add( driver );
+        }
+        return ret;
+    }
+
+
+
+    // === Saving, backup, rollback. === //
+
+    /**
+     *  Writes the document to the config file, if changed. The original file is backed up first.
+     *  Written to a temp file and moved over the original, so the config is never half-written.
+     */
+    public synchronized void save() throws MigrationException {
+        if( ! this.modified )
+            return;
+
+        if( this.backupFile == null ){
+            File backup = new File( this.configFile.getPath() + BACKUP_SUFFIX );
+            try {
+                Files.copy( this.configFile.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            } catch( IOException ex ){
+                throw new MigrationException("Failed backing up " + this.configFile.getPath() + ": " + ex.getMessage(), ex );
+            }
+            this.backupFile = backup;
+        }
+
+        File tmp = new File( this.configFile.getPath() + ".tmp" );
+        try {
+            try( OutputStream os = new FileOutputStream( tmp ) ){
+                DOMImplementationLS ls = (DOMImplementationLS) this.doc.getImplementation();
+                LSSerializer ser = ls.createLSSerializer();
+                // The document is not namespace-aware; xmlns are plain attributes.
+                ser.getDomConfig().setParameter("namespaces", false);
+                LSOutput out = ls.createLSOutput();
+                out.setEncoding("UTF-8");
+                out.setByteStream( os );
+                ser.write( this.doc, out );
+            }
+            Files.move( tmp.toPath(), this.configFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch( IOException ex ){
+            tmp.delete();
+            throw new MigrationException("Failed writing " + this.configFile.getPath() + ": " + ex.getMessage(), ex );
+        }
+        this.modified = false;
+        this.saved = true;
+        log.info("Saved the migrated config to " + this.configFile.getPath() + ", the original is in " + this.backupFile.getPath());
+    }
+
+
+    /**
+     *  Restores the original config file, if it was overwritten.
+     */
+    public synchronized void rollback() throws MigrationException {
+        if( ! this.saved )
+            return;
+        try {
+            Files.copy( this.backupFile.toPath(), this.configFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        } catch( IOException ex ){
+            throw new MigrationException("Failed restoring " + this.configFile.getPath() + " from " + this.backupFile.getPath() + ": " + ex.getMessage(), ex );
+        }
+        this.saved = false;
+        load();
+    }
+
+
+    public File getConfigFile() { return configFile; }
+
+
+
+    // === Helpers. === //
+
+    private static OperationFailedException notFound( List<Property> address ) {
+        return new OperationFailedException("JBAS014807: Management resource '" + formatAddress( address ) + "' not found");
+    }
+
+    private static String formatAddress( List<Property> address ) {
+        StringBuilder sb = new StringBuilder();
+        for( Property seg : address )
+            sb.append('/').append( seg.getName() ).append('=').append( seg.getValue().asString() );
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
+
+    /**
+     *  A resource found in the document.
+     */
+    private static class Resolved {
+        final Element element;
+        /** Mapping key - see OfflineResourceMapping. "" for the root. */
+        final String key;
+        /** Null for the root and subsystems. */
+        final OfflineResourceMapping mapping;
+        final List<String> childOrder;
+
+        Resolved( Element element, String key, OfflineResourceMapping mapping, List<String> childOrder ) {
+            this.element = element;
+            this.key = key;
+            this.mapping = mapping;
+            this.childOrder = childOrder;
+        }
+    }
+
+    private static class OperationFailedException extends Exception {
+        OperationFailedException( String msg ) { super( msg ); }
+    }
+
+}// class
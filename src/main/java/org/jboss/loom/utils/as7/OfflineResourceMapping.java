@@ -0,0 +1,603 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 .
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package org.jboss.loom.utils.as7;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.StringUtils;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ *  How a management resource type is stored in standalone.xml - used by the offline mode.
+ *
+ *  Covers the resource types the built-in migrators create:
+ *  datasources, logging, security, web, resource-adapters and socket-binding-group.
+ *
+ *  Attribute specs, i.e. where a DMR attribute goes, relative to the resource's element:
+ *    "@x"      XML attribute x.
+ *    "a/b"     Text of the nested element(s). Missing elements are created.
+ *    "a/b@x"   Attribute x of the nested element.
+ *    "."       Text of the resource element itself.
+ *    "a/b*"    OBJECT value as name/value pairs: <b name="key" value="val"/> for each key.
+ *  For LIST values, the last element is repeated for each item.
+ *  OBJECT values (or LIST items) become attributes of the element; Nested OBJECTs become name/value pairs,
+ *  e.g. module-options => <module-option name=".." value=".."/>.
+ *  Attributes not listed go to a child element of the same name, or to an XML attribute if attrsByDefault.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+class OfflineResourceMapping {
+
+    /** By key - "subsystem=<name>/<type>/<type>..." or "socket-binding-group/<type>...". */
+    private static final Map<String, OfflineResourceMapping> MAPPINGS = new LinkedHashMap();
+
+    /** Order of the children of subsystem elements, where it matters. */
+    private static final Map<String, List<String>> SUBSYSTEM_CHILD_ORDER = new HashMap();
+
+    /** Order of the children of container elements, e.g. <datasources>, where it matters. */
+    private static final Map<String, List<String>> CONTAINER_CHILD_ORDER = new HashMap();
+
+
+    final String key;
+    final String type;
+    /** Wrapper element(s) between the parent and the resource element, e.g. "datasources/drivers". */
+    final String container;
+    final String element;
+    /** Attribute with the name of the resource. Null for singletons like authentication=classic. */
+    final String nameAttr;
+    final boolean attrsByDefault;
+    /** The name singletons are addressed by, e.g. "classic". */
+    private String singletonName;
+
+    /** DMR attribute -> spec. */
+    private final Map<String, String> attrs = new LinkedHashMap();
+    /** Order of the child elements. */
+    private final List<String> childOrder = new ArrayList();
+
+
+    private OfflineResourceMapping( String key, String container, String element, String nameAttr, boolean attrsByDefault ) {
+        this.key = key;
+        this.type = StringUtils.substringAfterLast( "/" + key, "/" );
+        this.container = container;
+        this.element = element;
+        this.nameAttr = nameAttr;
+        this.attrsByDefault = attrsByDefault;
+    }
+
+
+    static OfflineResourceMapping get( String key ) {
+        return MAPPINGS.get( key );
+    }
+
+    /**
+     *  Mappings of the resource types directly under the given key.
+     */
+    static List<OfflineResourceMapping> getChildren( String parentKey ) {
+        List<OfflineResourceMapping> ret = new ArrayList();
+        for( OfflineResourceMapping mapping : MAPPINGS.values() ) {
+            if( parentKey.equals( StringUtils.substringBeforeLast( mapping.key, "/" ) ) && ! parentKey.equals( mapping.key ) )
+                ret.add( mapping );
+        }
+        return ret;
+    }
+
+    static List<String> getSubsystemChildOrder( String subsystem ) {
+        return SUBSYSTEM_CHILD_ORDER.get( subsystem );
+    }
+
+    List<String> getChildOrder() {
+        return childOrder;
+    }
+
+
+
+    // === Finding and creating the resource elements. === //
+
+    /**
+     *  @returns  The element of the resource of this type with the given name under the parent, or null.
+     */
+    Element find( Element parent, String name ) {
+        Element cont = this.container == null ? parent : descend( parent, this.container );
+        if( cont == null )
+            return null;
+        for( Element el : childElements( cont, this.element ) ) {
+            if( this.nameAttr == null || name.equals( el.getAttribute( this.nameAttr ) ) )
+                return el;
+        }
+        return null;
+    }
+
+    /**
+     *  @returns  All elements of the resources of this type under the parent.
+     */
+    List<Element> findAll( Element parent ) {
+        Element cont = this.container == null ? parent : descend( parent, this.container );
+        if( cont == null )
+            return new ArrayList();
+        return childElements( cont, this.element );
+    }
+
+    /**
+     *  @returns  The resource name stored in the element.
+     */
+    String getName( Element el ) {
+        return this.nameAttr == null ? this.singletonName : el.getAttribute( this.nameAttr );
+    }
+
+    /**
+     *  Creates the element for a new resource, including the container if missing.
+     */
+    Element create( Element parent, String name, List<String> parentChildOrder ) {
+        Element cont = parent;
+        if( this.container != null ){
+            for( String step : StringUtils.split( this.container, '/' ) )
+                cont = getOrCreateChild( cont, step, cont == parent ? parentChildOrder : CONTAINER_CHILD_ORDER.get( cont.getNodeName() ) );
+        }
+        Element el = insertChild( cont, this.element, cont == parent ? parentChildOrder : CONTAINER_CHILD_ORDER.get( cont.getNodeName() ) );
+        if( this.nameAttr != null )
+            el.setAttribute( this.nameAttr, name );
+        return el;
+    }
+
+
+
+    // === Attributes. === //
+
+    private String specFor( String attr ) {
+        String spec = this.attrs.get( attr );
+        if( spec != null )
+            return spec;
+        return this.attrsByDefault ? "@" + attr : attr;
+    }
+
+    /**
+     *  Writes the attribute value into the resource element. An undefined value removes the attribute.
+     */
+    void writeAttribute( Element el, String attr, ModelNode value ) {
+        String spec = specFor( attr );
+
+        if( ".".equals( spec ) ){
+            el.setTextContent( value.isDefined() ? value.asString() : "" );
+            return;
+        }
+
+        String path = StringUtils.substringBefore( spec, "@" );
+        String xmlAttr = spec.contains("@") ? StringUtils.substringAfter( spec, "@" ) : null;
+
+        // XML attribute of the element itself.
+        if( path.isEmpty() ){
+            if( value.isDefined() )
+                el.setAttribute( xmlAttr, value.asString() );
+            else
+                el.removeAttribute( xmlAttr );
+            return;
+        }
+
+        boolean pairs = path.endsWith("*");
+        String[] steps = StringUtils.split( StringUtils.removeEnd( path, "*" ), '/' );
+        String last = steps[steps.length-1];
+
+        // Remove the previous value, and the wrappers left empty.
+        Element parent = el;
+        for( int i = 0; i < steps.length - 1 && parent != null; i++ )
+            parent = firstChild( parent, steps[i] );
+        if( parent != null ){
+            for( Element old : childElements( parent, last ) )
+                removeElement( old );
+            while( parent != el && childElements( parent, null ).isEmpty() && parent.getAttributes().getLength() == 0 ){
+                Element up = (Element) parent.getParentNode();
+                removeElement( parent );
+                parent = up;
+            }
+        }
+        if( ! value.isDefined() )
+            return;
+
+        // Write the new one.
+        parent = el;
+        for( int i = 0; i < steps.length - 1; i++ )
+            parent = getOrCreateChild( parent, steps[i], parent == el ? this.childOrder : null );
+        List<String> order = parent == el ? this.childOrder : null;
+
+        if( pairs ){
+            for( String key : value.keys() ){
+                Element pair = insertChild( parent, last, order );
+                pair.setAttribute( "name", key );
+                pair.setAttribute( "value", value.get( key ).asString() );
+            }
+        }
+        else if( value.getType() == ModelType.LIST ){
+            for( ModelNode item : value.asList() )
+                fillElement( insertChild( parent, last, order ), item, xmlAttr );
+        }
+        else
+            fillElement( insertChild( parent, last, order ), value, xmlAttr );
+    }
+
+
+    private static void fillElement( Element el, ModelNode value, String xmlAttr ) {
+        if( value.getType() == ModelType.OBJECT ){
+            for( String key : value.keys() ){
+                ModelNode sub = value.get( key );
+                if( sub.getType() == ModelType.OBJECT ){
+                    // module-options => <module-option name="..." value="..."/>
+                    String pairName = StringUtils.removeEnd( key, "s" );
+                    for( String subKey : sub.keys() ){
+                        Element pair = insertChild( el, pairName, null );
+                        pair.setAttribute( "name", subKey );
+                        pair.setAttribute( "value", sub.get( subKey ).asString() );
+                    }
+                }
+                else if( sub.isDefined() )
+                    el.setAttribute( key, sub.asString() );
+            }
+        }
+        else if( xmlAttr != null )
+            el.setAttribute( xmlAttr, value.asString() );
+        else
+            el.setTextContent( value.asString() );
+    }
+
+
+    /**
+     *  Reads the attribute value from the resource element. Values are read as strings, OBJECTs from name/value pairs;
+     *  Repeated elements are read as a LIST.
+     *  @returns  Undefined node if not present.
+     */
+    ModelNode readAttribute( Element el, String attr ) {
+        String spec = specFor( attr );
+        ModelNode ret = new ModelNode();
+
+        if( ".".equals( spec ) ){
+            ret.set( el.getTextContent().trim() );
+            return ret;
+        }
+
+        String path = StringUtils.substringBefore( spec, "@" );
+        String xmlAttr = spec.contains("@") ? StringUtils.substringAfter( spec, "@" ) : null;
+        if( path.isEmpty() ){
+            if( el.hasAttribute( xmlAttr ) )
+                ret.set( el.getAttribute( xmlAttr ) );
+            return ret;
+        }
+
+        boolean pairs = path.endsWith("*");
+        String[] steps = StringUtils.split( StringUtils.removeEnd( path, "*" ), '/' );
+        Element parent = el;
+        for( int i = 0; i < steps.length - 1 && parent != null; i++ )
+            parent = firstChild( parent, steps[i] );
+        if( parent == null )
+            return ret;
+
+        List<Element> found = childElements( parent, steps[steps.length-1] );
+        if( found.isEmpty() )
+            return ret;
+        if( pairs ){
+            for( Element pair : found )
+                ret.get( pair.getAttribute("name") ).set( pair.getAttribute("value") );
+            return ret;
+        }
+        if( found.size() == 1 ){
+            String val = xmlAttr != null ? found.get(0).getAttribute( xmlAttr ) : found.get(0).getTextContent().trim();
+            return ret.set( val );
+        }
+        for( Element item : found )
+            ret.add( xmlAttr != null ? item.getAttribute( xmlAttr ) : item.getTextContent().trim() );
+        return ret;
+    }
+
+    /**
+     *  Reads all the mapped attributes, and the XML attributes if attrsByDefault.
+     */
+    ModelNode readAttributes( Element el ) {
+        ModelNode ret = new ModelNode();
+        ret.setEmptyObject();
+        for( String attr : this.attrs.keySet() ) {
+            ModelNode val = readAttribute( el, attr );
+            if( val.isDefined() )
+                ret.get( attr ).set( val );
+        }
+        if( this.attrsByDefault ){
+            for( int i = 0; i < el.getAttributes().getLength(); i++ ) {
+                Node xmlAttr = el.getAttributes().item(i);
+                String name = xmlAttr.getNodeName();
+                if( ! name.equals( this.nameAttr ) && ! name.startsWith("xmlns") && ! ret.has( name ) )
+                    ret.get( name ).set( xmlAttr.getNodeValue() );
+            }
+        }
+        return ret;
+    }
+
+
+
+    // === DOM helpers. Non-namespace-aware DOM, as created by XmlUtils.createXmlDocumentBuilder(). === //
+
+    /**
+     *  @param name  null for all child elements.
+     */
+    static List<Element> childElements( Element parent, String name ) {
+        List<Element> ret = new ArrayList();
+        NodeList nodes = parent.getChildNodes();
+        for( int i = 0; i < nodes.getLength(); i++ ) {
+            Node node = nodes.item(i);
+            if( node.getNodeType() == Node.ELEMENT_NODE && (name == null || name.equals( node.getNodeName() )) )
+                ret.add( (Element) node );
+        }
+        return ret;
+    }
+
+    static Element firstChild( Element parent, String name ) {
+        List<Element> children = childElements( parent, name );
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    private static Element descend( Element el, String path ) {
+        for( String step : StringUtils.split( path, '/' ) ) {
+            el = firstChild( el, step );
+            if( el == null )  return null;
+        }
+        return el;
+    }
+
+    private static Element getOrCreateChild( Element parent, String name, List<String> order ) {
+        Element child = firstChild( parent, name );
+        return child != null ? child : insertChild( parent, name, order );
+    }
+
+
+    /**
+     *  Creates a child element - after the last one with the same name, or per the given order, or at the end.
+     *  Keeps the indentation of the file.
+     */
+    static Element insertChild( Element parent, String name, List<String> order ) {
+        Document doc = parent.getOwnerDocument();
+        Element child = doc.createElement( name );
+
+        List<Element> siblings = childElements( parent, null );
+        Node ref = null;
+        boolean found = false;
+        for( int i = siblings.size() - 1; i >= 0 && ! found; i-- ) {
+            if( siblings.get(i).getNodeName().equals( name ) ){
+                ref = siblings.get(i).getNextSibling();
+                found = true;
+            }
+        }
+        if( ! found && order != null && order.contains( name ) ){
+            int rank = order.indexOf( name );
+            for( Element sibling : siblings ) {
+                int siblingRank = order.indexOf( sibling.getNodeName() );
+                if( siblingRank > rank ){
+                    ref = sibling;
+                    found = true;
+                    break;
+                }
+            }
+        }
+
+        String parentIndent = indentOf( parent );
+        String indent = parentIndent + "    ";
+
+        if( ! parent.hasChildNodes() ){
+            parent.appendChild( doc.createTextNode( "\n" + indent ) );
+            parent.appendChild( child );
+            parent.appendChild( doc.createTextNode( "\n" + parentIndent ) );
+            return child;
+        }
+
+        if( found && ref != null && ref.getNodeType() == Node.ELEMENT_NODE ){
+            // Before an element: the whitespace before it stays in front of the new one.
+            parent.insertBefore( child, ref );
+            parent.insertBefore( doc.createTextNode( "\n" + indent ), ref );
+            return child;
+        }
+
+        // After the last of the same name, or at the end - before the trailing whitespace.
+        if( ref == null && isWhitespace( parent.getLastChild() ) )
+            ref = parent.getLastChild();
+        parent.insertBefore( doc.createTextNode( "\n" + indent ), ref );
+        parent.insertBefore( child, ref );
+        return child;
+    }
+
+    /**
+     *  Removes the element, and the whitespace in front of it.
+     */
+    static void removeElement( Element el ) {
+        Node parent = el.getParentNode();
+        Node prev = el.getPreviousSibling();
+        if( isWhitespace( prev ) )
+            parent.removeChild( prev );
+        parent.removeChild( el );
+    }
+
+    private static String indentOf( Element el ) {
+        Node prev = el.getPreviousSibling();
+        if( ! isWhitespace( prev ) )
+            return "";
+        return StringUtils.substringAfterLast( prev.getNodeValue(), "\n" );
+    }
+
+    private static boolean isWhitespace( Node node ) {
+        return node != null && node.getNodeType() == Node.TEXT_NODE && node.getNodeValue().trim().isEmpty();
+    }
+
+
+
+    // === The mapping table. === //
+
+    private static OfflineResourceMapping define( String key, String container, String element, String nameAttr, boolean attrsByDefault ) {
+        OfflineResourceMapping mapping = new OfflineResourceMapping( key, container, element, nameAttr, attrsByDefault );
+        MAPPINGS.put( key, mapping );
+        return mapping;
+    }
+
+    /**
+     *  @param specs  "dmr-attribute spec" pairs; See the class doc.
+     */
+    private OfflineResourceMapping attrs( String... specs ) {
+        for( String spec : specs ) {
+            String attr = StringUtils.substringBefore( spec, " " );
+            String where = StringUtils.substringAfter( spec, " " );
+            this.attrs.put( attr, where );
+            String first = StringUtils.substringBefore( StringUtils.substringBefore( StringUtils.removeEnd( where, "*" ), "@" ), "/" );
+            if( ! first.isEmpty() && ! ".".equals( first ) && ! this.childOrder.contains( first ) )
+                this.childOrder.add( first );
+        }
+        return this;
+    }
+
+    private OfflineResourceMapping singleton( String name ) {
+        this.singletonName = name;
+        return this;
+    }
+
+    /**
+     *  Child elements which go before the attribute elements, e.g. xa-datasource-property.
+     */
+    private OfflineResourceMapping first( String... elements ) {
+        this.childOrder.addAll( 0, Arrays.asList( elements ) );
+        return this;
+    }
+
+
+    private static final String[] DS_COMMON = {
+        "jndi-name @jndi-name", "enabled @enabled", "use-java-context @use-java-context", "spy @spy", "use-ccm @use-ccm",
+        "url-delimeter url-delimiter", "url-selector-strategy-class-name url-selector-strategy-class-name",
+        "new-connection-sql new-connection-sql", "transaction-isolation transaction-isolation",
+        "user-name security/user-name", "password security/password", "security-domain security/security-domain",
+        "valid-connection-checker-class-name validation/valid-connection-checker@class-name",
+        "check-valid-connection-sql validation/check-valid-connection-sql",
+        "validate-on-match validation/validate-on-match",
+        "background-validation validation/background-validation",
+        "background-validation-millis validation/background-validation-millis",
+        "background-validation-minutes validation/background-validation-minutes",
+        "use-fast-fail validation/use-fast-fail",
+        "stale-connection-checker-class-name validation/stale-connection-checker@class-name",
+        "exception-sorter-class-name validation/exception-sorter@class-name",
+        "blocking-timeout-millis timeout/blocking-timeout-millis",
+        "idle-timeout-minutes timeout/idle-timeout-minutes",
+        "set-tx-query-timeout timeout/set-tx-query-timeout",
+        "query-timeout timeout/query-timeout",
+        "use-try-lock timeout/use-try-lock",
+        "allocation-retry timeout/allocation-retry",
+        "allocation-retry-wait-millis timeout/allocation-retry-wait-millis",
+        "xa-resource-timeout timeout/xa-resource-timeout",
+        "track-statements statement/track-statements",
+        "prepared-statement-cache-size statement/prepared-statement-cache-size",
+        "share-prepared-statements statement/share-prepared-statements",
+    };
+
+    private static final String[] LOG_HANDLER_COMMON = {
+        "autoflush @autoflush", "level level@name", "encoding encoding@value", "filter filter@value",
+        "formatter formatter/pattern-formatter@pattern",
+    };
+
+    private static final String[] RA_CONN_DEF = {
+        "jndi-name @jndi-name", "pool-name @pool-name", "enabled @enabled", "use-java-context @use-java-context",
+        "class-name @class-name", "use-ccm @use-ccm",
+        "min-pool-size pool/min-pool-size", "max-pool-size pool/max-pool-size", "prefill pool/prefill",
+        "use-strict-min pool/use-strict-min", "flush-strategy pool/flush-strategy",
+        "security-domain security/security-domain",
+        "security-domain-and-application security/security-domain-and-application",
+        "application-managed-security security/application",
+        "blocking-timeout-millis timeout/blocking-timeout-millis",
+        "idle-timeout-minutes timeout/idle-timeout-minutes",
+        "allocation-retry timeout/allocation-retry",
+        "allocation-retry-wait-millis timeout/allocation-retry-wait-millis",
+        "xa-resource-timeout timeout/xa-resource-timeout",
+        "background-validation validation/background-validation",
+        "background-validation-millis validation/background-validation-millis",
+        "use-fast-fail validation/use-fast-fail",
+    };
+
+    static {
+        // Datasources
+        CONTAINER_CHILD_ORDER.put("datasources", Arrays.asList( "datasource", "xa-datasource", "drivers" ));
+        define("subsystem=datasources/data-source", "datasources", "datasource", "pool-name", false)
+            .attrs( "connection-url connection-url", "driver-class driver-class", "datasource-class datasource-class", "driver-name driver" )
+            .attrs( DS_COMMON )
+            .attrs( "jta @jta",
+                "min-pool-size pool/min-pool-size", "max-pool-size pool/max-pool-size", "prefill pool/prefill",
+                "use-strict-min pool/use-strict-min", "flush-strategy pool/flush-strategy" );
+        define("subsystem=datasources/xa-data-source", "datasources", "xa-datasource", "pool-name", false)
+            .attrs( "xa-datasource-class xa-datasource-class", "driver-name driver" )
+            .attrs( DS_COMMON )
+            .attrs( "min-pool-size xa-pool/min-pool-size", "max-pool-size xa-pool/max-pool-size", "prefill xa-pool/prefill",
+                "use-strict-min xa-pool/use-strict-min", "flush-strategy xa-pool/flush-strategy",
+                "is-same-rm-override xa-pool/is-same-rm-override", "interleaving xa-pool/interleaving",
+                "no-tx-separate-pool xa-pool/no-tx-separate-pools", "pad-xid xa-pool/pad-xid", "wrap-xa-resource xa-pool/wrap-xa-resource" )
+            .first( "xa-datasource-property" );
+        define("subsystem=datasources/xa-data-source/xa-datasource-properties", null, "xa-datasource-property", "name", false)
+            .attrs( "value ." );
+        define("subsystem=datasources/jdbc-driver", "datasources/drivers", "driver", "name", false)
+            .attrs( "driver-name @name", "driver-module-name @module",
+                "driver-major-version @major-version", "driver-minor-version @minor-version",
+                "driver-class-name driver-class", "driver-datasource-class-name datasource-class",
+                "driver-xa-datasource-class-name xa-datasource-class" );
+
+        // Logging
+        SUBSYSTEM_CHILD_ORDER.put("logging", Arrays.asList( "console-handler", "file-handler",
+                "periodic-rotating-file-handler", "size-rotating-file-handler", "async-handler", "custom-handler",
+                "logger", "root-logger" ));
+        define("subsystem=logging/console-handler", null, "console-handler", "name", false)
+            .attrs( LOG_HANDLER_COMMON ).attrs( "target target@name" );
+        define("subsystem=logging/file-handler", null, "file-handler", "name", false)
+            .attrs( LOG_HANDLER_COMMON ).attrs( "file file", "append append@value" );
+        define("subsystem=logging/periodic-rotating-file-handler", null, "periodic-rotating-file-handler", "name", false)
+            .attrs( LOG_HANDLER_COMMON ).attrs( "file file", "suffix suffix@value", "append append@value" );
+        define("subsystem=logging/size-rotating-file-handler", null, "size-rotating-file-handler", "name", false)
+            .attrs( LOG_HANDLER_COMMON ).attrs( "file file", "rotate-size rotate-size@value",
+                "max-backup-index max-backup-index@value", "append append@value" );
+        define("subsystem=logging/async-handler", null, "async-handler", "name", false)
+            .attrs( LOG_HANDLER_COMMON ).attrs( "queue-length queue-length@value",
+                "overflow-action overflow-action@value", "handlers subhandlers/handler@name" );
+        define("subsystem=logging/custom-handler", null, "custom-handler", "name", false)
+            .attrs( "class @class", "module @module" )
+            .attrs( LOG_HANDLER_COMMON ).attrs( "properties properties/property*" );
+        define("subsystem=logging/logger", null, "logger", "category", false)
+            .attrs( "category @category", "use-parent-handlers @use-parent-handlers",
+                "level level@name", "filter filter@value", "handlers handlers/handler@name" );
+        define("subsystem=logging/root-logger", null, "root-logger", null, false).singleton("ROOT")
+            .attrs( "level level@name", "filter filter@value", "handlers handlers/handler@name" );
+
+        // Security
+        define("subsystem=security/security-domain", "security-domains", "security-domain", "name", false)
+            .attrs( "cache-type @cache-type" );
+        define("subsystem=security/security-domain/authentication", null, "authentication", null, false).singleton("classic")
+            .attrs( "login-modules login-module" );
+
+        // Web
+        define("subsystem=web/connector", null, "connector", "name", true);
+        define("subsystem=web/connector/ssl", null, "ssl", null, true).singleton("configuration");
+        define("subsystem=web/virtual-server", null, "virtual-server", "name", true)
+            .attrs( "alias alias@name" );
+
+        // Resource adapters
+        define("subsystem=resource-adapters/resource-adapter", "resource-adapters", "resource-adapter", "id", false)
+            .attrs( "archive archive", "transaction-support transaction-support" );
+        define("subsystem=resource-adapters/resource-adapter/connection-definitions", "connection-definitions", "connection-definition", "pool-name", false)
+            .attrs( RA_CONN_DEF )
+            .first( "config-property" );
+        define("subsystem=resource-adapters/resource-adapter/connection-definitions/config-properties", null, "config-property", "name", false)
+            .attrs( "value ." );
+
+        // Socket bindings
+        define("socket-binding-group", null, "socket-binding-group", "name", true);
+        define("socket-binding-group/socket-binding", null, "socket-binding", "name", true);
+    }
+
+}// class
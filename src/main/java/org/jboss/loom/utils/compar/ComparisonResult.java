@@ -3,9 +3,18 @@ package org.jboss.loom.utils.compar;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -16,83 +25,165 @@ import javax.xml.bind.annotation.XmlType;
 import org.eclipse.persistence.oxm.annotations.XmlReadOnly;
 
 /**
+ *  Results of comparing a dir against hashes.
+ *
+ *  Kept compact, as it lives for the whole migration: the relative paths (sorted; shared with the HashDatabase
+ *  when created from it) and a status byte per path. Counts per status are computed once.
+ *  The Path's of the getMatches() view are only created while iterating it.
  *
  *  @author Ondrej Zizka, ozizka at redhat.com
  */
 @XmlRootElement(name="comparisonResult")
 @XmlAccessorType( XmlAccessType.NONE )
 public class ComparisonResult {
-    
+
+    private static final FileHashComparer.MatchResult[] RESULTS = FileHashComparer.MatchResult.values();
+
     public final File dir;
     public File hashesFile;
-    
-    //@XmlElementWrapper(name = "matches")
-    //@XmlJavaTypeAdapter(ComparisonResultsMapAdapter.class)
-    Map<Path, FileHashComparer.MatchResult> matches;
-    
-    // Counts
-    private int countMatches;
-    private int countMismatches;
-    private int countMisses;
-    private int countEmpty;
-    private boolean recount = true;
+
+    /** Relative to dir, separated by '/'; Sorted. */
+    private String[] paths;
+
+    /** MatchResult ordinal for each of the paths. */
+    private byte[] statuses;
+
+    /** Indexes of the paths which are not MATCH. */
+    private int[] nonMatches;
+
+    /** Count of each MatchResult, by ordinal. */
+    private final int[] counts = new int[ RESULTS.length ];
 
 
     // Const
-    
+
     ComparisonResult(){ dir = null; } // For JAXB.
-    
+
     public ComparisonResult( File dir ) {
         this.dir = dir;
     }
 
-    public Map<Path, FileHashComparer.MatchResult> getMatches() { return matches; }
+    /**
+     *  @param paths     Relative to dir, separated by '/', sorted. Not copied.
+     *  @param statuses  MatchResult ordinals. Not copied.
+     */
+    ComparisonResult( File dir, String[] paths, byte[] statuses ) {
+        this.dir = dir;
+        this.setResults( paths, statuses );
+    }
+
+    private void setResults( String[] paths, byte[] statuses ) {
+        this.paths = paths;
+        this.statuses = statuses;
+        Arrays.fill( this.counts, 0 );
+        for( byte status : statuses )
+            this.counts[status]++;
+
+        this.nonMatches = new int[ statuses.length - this.counts[ FileHashComparer.MatchResult.MATCH.ordinal() ] ];
+        int j = 0;
+        for( int i = 0; i < statuses.length; i++ ) {
+            if( statuses[i] != FileHashComparer.MatchResult.MATCH.ordinal() )
+                this.nonMatches[j++] = i;
+        }
+    }
+
+
+    /**
+     *  A read-only view with the paths under dir as keys. Prefer getNonMatches() or getResult() where possible.
+     */
+    public Map<Path, FileHashComparer.MatchResult> getMatches() {
+        if( this.paths == null )
+            return null;
+        return new MatchesView();
+    }
+
+    /**
+     *  Converts the map to the compact form; The map is not kept.
+     */
     public ComparisonResult setMatches( Map<Path, FileHashComparer.MatchResult> matches ) {
-        this.matches = matches; recount = true; return this; 
+        String[] relPaths = new String[ matches.size() ];
+        Map<String, FileHashComparer.MatchResult> byRelPath = new HashMap( matches.size() );
+        int i = 0;
+        for( Map.Entry<Path, FileHashComparer.MatchResult> entry : matches.entrySet() ) {
+            String rel = relativize( entry.getKey() );
+            relPaths[i++] = rel;
+            byRelPath.put( rel, entry.getValue() );
+        }
+        Arrays.sort( relPaths );
+        byte[] sts = new byte[ relPaths.length ];
+        for( i = 0; i < relPaths.length; i++ )
+            sts[i] = (byte) byRelPath.get( relPaths[i] ).ordinal();
+        this.setResults( relPaths, sts );
+        return this;
     }
 
     @XmlAttribute(name = "hashesFile")
     public File getHashesFile() { return hashesFile; }
     public ComparisonResult setHashes( File hashes ) {
-        this.hashesFile = hashes; return this; 
+        this.hashesFile = hashes; return this;
+    }
+
+
+    /**
+     *  @param file  Under the compared dir, given the same way as the dir (i.e. both relative or both absolute).
+     *  @returns  The result for that file, or null if it was not compared.
+     */
+    public FileHashComparer.MatchResult getResult( File file ) {
+        if( this.paths == null )
+            return null;
+        return getResult( file.toPath() );
+    }
+
+    private FileHashComparer.MatchResult getResult( Path path ) {
+        int index = Arrays.binarySearch( this.paths, relativize( path ) );
+        return index < 0 ? null : RESULTS[ this.statuses[index] ];
+    }
+
+
+    /**
+     *  The entries which are not MATCH - typically a small fraction of all.
+     */
+    public Iterable<Map.Entry<Path, FileHashComparer.MatchResult>> getNonMatches() {
+        if( this.paths == null )
+            return Collections.emptyList();
+        return new Iterable<Map.Entry<Path, FileHashComparer.MatchResult>>() {
+            @Override public Iterator<Map.Entry<Path, FileHashComparer.MatchResult>> iterator() {
+                return new EntryIterator( nonMatches );
+            }
+        };
     }
-    
+
 
 
     public int getCountTotal() {
-        return this.matches.size();
+        this.checkSet();
+        return this.paths.length;
     }
 
     public int getCountMatches() {
-        this.doCountIfNeeded();
-        return countMatches;
+        return getCount( FileHashComparer.MatchResult.MATCH );
     }
 
     public int getCountMismatches() {
-        this.doCountIfNeeded();
-        return countMismatches;
+        return getCount( FileHashComparer.MatchResult.MISMATCH );
     }
 
     public int getCountMisses() {
-        this.doCountIfNeeded();
-        return countMisses;
+        return getCount( FileHashComparer.MatchResult.MISSING );
     }
 
-    private void doCountIfNeeded() {
-        if( ! this.recount ) return;
-        if( this.matches == null )
-            throw new IllegalStateException("Nothing to count - matches were not set yet.");
+    public int getCountEmpty() {
+        return getCount( FileHashComparer.MatchResult.EMPTY );
+    }
 
-        this.countMatches = this.countMismatches = this.countMisses = 0;
+    public int getCount( FileHashComparer.MatchResult result ) {
+        this.checkSet();
+        return this.counts[ result.ordinal() ];
+    }
 
-        for( FileHashComparer.MatchResult res : this.matches.values()) {
-            switch( res ) {
-                case MATCH:    this.countMatches++; break;
-                case MISMATCH: this.countMismatches++; break;
-                case MISSING:  this.countMisses++; break;
-                case EMPTY:    this.countEmpty++; break;
-            }
-        }
+    private void checkSet() {
+        if( this.paths == null )
+            throw new IllegalStateException("Nothing to count - matches were not set yet.");
     }
 
     public String toString() {
@@ -106,38 +197,114 @@ public class ComparisonResult {
 
     public String formatStats() {
         StringBuilder sb = new StringBuilder();
-        if( this.matches == null )
+        if( this.paths == null )
             return sb.append("Matches were not set yet.").toString();
-        
-        this.doCountIfNeeded();
+
         return sb
-            .append(this.countMatches).append(" match, ")
-            .append(this.countMismatches).append(" mism, ")
-            .append(this.countMisses).append(" miss, ")
-            .append(this.countEmpty).append(" empty")
+            .append(this.getCountMatches()).append(" match, ")
+            .append(this.getCountMismatches()).append(" mism, ")
+            .append(this.getCountMisses()).append(" miss, ")
+            .append(this.getCountEmpty()).append(" empty")
             .toString();
     }
 
-    
-    
+
+
+    // ========== Paths ==========
+
+    /**
+     *  The path as stored - relative to dir, with '/'.
+     */
+    private String relativize( Path path ) {
+        Path base = this.dir.toPath().normalize();
+        path = path.normalize();
+        String rel;
+        try {
+            rel = base.toString().isEmpty() ? path.toString() : base.relativize( path ).toString();
+        } catch( IllegalArgumentException ex ){
+            // One is absolute, the other not.
+            rel = base.toAbsolutePath().relativize( path.toAbsolutePath() ).toString();
+        }
+        return rel.replace( File.separatorChar, '/' );
+    }
+
+    private Path toPath( int index ) {
+        return new File( this.dir, this.paths[index] ).toPath().normalize();
+    }
+
+
+    private class Entry extends AbstractMap.SimpleImmutableEntry<Path, FileHashComparer.MatchResult> {
+        Entry( int index ) {
+            super( toPath( index ), RESULTS[ statuses[index] ] );
+        }
+    }
+
+    /** Iterates over the given indexes, or all if null. */
+    private class EntryIterator implements Iterator<Map.Entry<Path, FileHashComparer.MatchResult>> {
+        private final int[] indexes;
+        private int pos = 0;
+
+        EntryIterator( int[] indexes ) { this.indexes = indexes; }
+
+        @Override public boolean hasNext() {
+            return pos < (indexes == null ? paths.length : indexes.length);
+        }
+        @Override public Map.Entry<Path, FileHashComparer.MatchResult> next() {
+            if( ! hasNext() )
+                throw new NoSuchElementException();
+            int index = indexes == null ? pos : indexes[pos];
+            pos++;
+            return new Entry( index );
+        }
+        @Override public void remove() {
+            throw new UnsupportedOperationException("Read-only.");
+        }
+    }
+
+    private class MatchesView extends AbstractMap<Path, FileHashComparer.MatchResult> {
+        @Override public int size() { return paths.length; }
+
+        @Override public FileHashComparer.MatchResult get( Object key ) {
+            return key instanceof Path ? getResult( (Path) key ) : null;
+        }
+
+        @Override public boolean containsKey( Object key ) {
+            return get( key ) != null;
+        }
+
+        @Override public Set<Map.Entry<Path, FileHashComparer.MatchResult>> entrySet() {
+            return new AbstractSet<Map.Entry<Path, FileHashComparer.MatchResult>>() {
+                @Override public int size() { return paths.length; }
+                @Override public Iterator<Map.Entry<Path, FileHashComparer.MatchResult>> iterator() {
+                    return new EntryIterator( null );
+                }
+            };
+        }
+    }
+
+
 
     // ========== JAXB ==========
-    
+
     @XmlAttribute(name="serverDir")  @XmlReadOnly private String getServerDir(){ return dir.getPath(); }
     @XmlAttribute(name="hashesFile") @XmlReadOnly private String getHashesPath(){ return hashesFile == null ? "" : hashesFile.getPath(); }
-    
+
     @XmlElementWrapper(name = "matches")
     @XmlElement(name="match")
     private List<Match> getMatchesAsList(){
-        final LinkedList<Match> matchesList = new LinkedList();
-        for( Map.Entry<Path, FileHashComparer.MatchResult> entry : matches.entrySet() ) {
-            matchesList.add( new Match( entry.getKey().toString(),  entry.getValue().name() ) );
-        }
-        return matchesList;
+        if( this.paths == null )
+            return new ArrayList();
+        // Created as the marshaller goes.
+        return new AbstractList<Match>() {
+            @Override public int size() { return paths.length; }
+            @Override public Match get( int i ) {
+                return new Match( toPath(i).toString(), RESULTS[ statuses[i] ].name() );
+            }
+        };
     }
     @XmlType(propOrder = {"result", "path"})
     public static class Match {
-        @XmlAttribute String path; 
+        @XmlAttribute String path;
         @XmlAttribute String result;
         public Match() { }
         public Match( String path, String match ) {
@@ -145,5 +312,5 @@ public class ComparisonResult {
             this.result = match;
         }
     }
-    
+
 }// class
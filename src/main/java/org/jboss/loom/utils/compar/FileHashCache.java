@@ -0,0 +1,141 @@
+package org.jboss.loom.utils.compar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  CRC32's of files computed in the previous runs, by path. An entry is valid while the file's size and mtime are the same.
+ *
+ *  Thread-safe, as the hashes are computed in parallel.
+ *  save() writes a temp file and moves it over the old one, so a concurrent run reads either the old or the new cache.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class FileHashCache {
+    private static final Logger log = LoggerFactory.getLogger( FileHashCache.class );
+
+    private static final int CACHE_FORMAT = 0x4648_0001; // "FH", version 1.
+
+
+    private final File cacheFile;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap();
+
+    private volatile boolean modified = false;
+
+
+    private FileHashCache( File cacheFile ) {
+        this.cacheFile = cacheFile;
+    }
+
+
+    /**
+     *  Loads the cache from the file. A missing or unreadable file gives an empty cache.
+     */
+    public static FileHashCache load( File cacheFile ) {
+        FileHashCache cache = new FileHashCache( cacheFile );
+        if( ! cacheFile.isFile() )
+            return cache;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( cacheFile ) ) );
+            if( in.readInt() != CACHE_FORMAT )
+                return cache;
+            int count = in.readInt();
+            for( int i = 0; i < count; i++ ) {
+                String path = in.readUTF();
+                cache.entries.put( path, new Entry( in.readLong(), in.readLong(), in.readInt() & 0xFFFFFFFFL ) );
+            }
+        }
+        catch( IOException ex ){
+            log.debug("    Ignoring unreadable file hash cache " + cacheFile.getPath() + ": " + ex.getMessage());
+            cache.entries.clear();
+        }
+        finally {
+            IOUtils.closeQuietly( in );
+        }
+        return cache;
+    }
+
+
+    /**
+     *  @returns  The cached CRC32, or null if not cached or the file changed since.
+     */
+    public Long get( File file ) {
+        Entry entry = this.entries.get( file.getAbsolutePath() );
+        if( entry == null || entry.size != file.length() || entry.mtime != file.lastModified() )
+            return null;
+        return entry.crc;
+    }
+
+    public void put( File file, long crc ) {
+        this.entries.put( file.getAbsolutePath(), new Entry( file.length(), file.lastModified(), crc ) );
+        this.modified = true;
+    }
+
+
+    /**
+     *  Writes the cache if anything was added. Failing to write it only costs time in the next run, so it's just logged.
+     */
+    public synchronized void save() {
+        if( ! this.modified )
+            return;
+
+        File tmp = new File( this.cacheFile.getPath() + ".tmp" );
+        try {
+            FileUtils.forceMkdir( this.cacheFile.getParentFile() );
+            try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ) {
+                // Copy, as the map may change meanwhile.
+                Map<String, Entry> copy = new HashMap( this.entries );
+                out.writeInt( CACHE_FORMAT );
+                out.writeInt( copy.size() );
+                for( Map.Entry<String, Entry> e : copy.entrySet() ) {
+                    out.writeUTF( e.getKey() );
+                    out.writeLong( e.getValue().size );
+                    out.writeLong( e.getValue().mtime );
+                    out.writeInt( (int) e.getValue().crc );
+                }
+            }
+            Files.move( tmp.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            this.modified = false;
+        }
+        catch( IOException ex ){
+            log.warn("Failed writing the file hash cache " + this.cacheFile.getPath() + ": " + ex.getMessage());
+            FileUtils.deleteQuietly( tmp );
+        }
+    }
+
+
+    public int size() { return this.entries.size(); }
+
+
+
+    private static class Entry {
+        final long size;
+        final long mtime;
+        final long crc;
+
+        Entry( long size, long mtime, long crc ) {
+            this.size = size;
+            this.mtime = mtime;
+            this.crc = crc;
+        }
+    }
+
+}// class
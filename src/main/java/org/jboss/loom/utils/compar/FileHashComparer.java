@@ -7,12 +7,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
-import net.lingala.zip4j.exception.ZipException;
-import net.lingala.zip4j.util.CRCUtil;
 import org.apache.commons.io.filefilter.IOFileFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +26,9 @@ import org.slf4j.LoggerFactory;
  */
 public class FileHashComparer {
     private static final Logger log = LoggerFactory.getLogger( FileHashComparer.class );
+    
+    /** Serial by default, like the rest; The migration sets one per the threads option. */
+    private static volatile FileHasher hasher = new FileHasher( 1 );
 
 
     public static enum MatchResult {
@@ -52,33 +57,157 @@ public class FileHashComparer {
         return new ComparisonResult( dir ).setMatches( results );
     }
     
+    public static ComparisonResult compareHashesAndDir( HashDatabase db, int dist, File dir, IOFileFilter filter ) throws IOException{
+        return compareHashesAndDir( db, new int[]{ dist }, dir, filter ).get(0);
+    }
+    
     public static Map<Path, MatchResult> compareHashesAndDir( Map<String, Long> hashes, File dir, IOFileFilter filter ) throws IOException {
-        Map<Path, MatchResult> matches = new HashMap();
+        return compareHashesAndDir( Collections.singletonList( hashes ), dir, filter ).get(0);
+    }
+    
+    
+    /**
+     *  Compares the dir against several hash sets at once - each file is checked and hashed only once,
+     *  even if it's in all the sets.
+     * 
+     *  @returns  The results for each of the hash sets, in the same order.
+     */
+    public static List<Map<Path, MatchResult>> compareHashesAndDir( List<Map<String, Long>> hashSets, File dir, IOFileFilter filter ) throws IOException {
+        
+        // Union of the paths.
+        Map<String, Integer> indexes = new HashMap();
+        List<String> paths = new ArrayList();
+        for( Map<String, Long> hashes : hashSets ) {
+            for( String path : hashes.keySet() ) {
+                if( indexes.containsKey( path ) )
+                    continue;
+                // Apply the filter.
+                if( filter != null && ! filter.accept( new File(path) ) )
+                    continue;
+                indexes.put( path, paths.size() );
+                paths.add( path );
+            }
+        }
         
-        // Iterate through hashes and compare with files.
-        for( Map.Entry<String, Long> entry : hashes.entrySet() ) {
-            String path = entry.getKey();
-            
-            // Apply the filter.
-            if( filter != null && ! filter.accept( new File(path) ) )
+        long[] hashesReal = new long[ paths.size() ];
+        MatchResult[] statuses = checkFiles( dir, paths, hashesReal );
+        
+        // Compare against each set.
+        List<Map<Path, MatchResult>> ret = new ArrayList( hashSets.size() );
+        for( Map<String, Long> hashes : hashSets ) {
+            Map<Path, MatchResult> matches = new HashMap();
+            for( Map.Entry<String, Long> entry : hashes.entrySet() ) {
+                Integer index = indexes.get( entry.getKey() );
+                if( index == null )  // Filtered out.
+                    continue;
+                MatchResult status = statuses[index];
+                if( status == null )
+                    status = entry.getValue() == hashesReal[index] ? MatchResult.MATCH : MatchResult.MISMATCH;
+                matches.put( new File( dir, paths.get(index) ).toPath().normalize(), status );
+            }
+            ret.add( matches );
+        }
+        return ret;
+    }
+    
+    
+    /**
+     *  Compares the dir against the given distributions of the hash database, hashing each file once.
+     * 
+     *  @returns  The results for each of the distributions, in the same order.
+     */
+    public static List<ComparisonResult> compareHashesAndDir( HashDatabase db, int[] dists, File dir, IOFileFilter filter ) throws IOException {
+        
+        // Paths in any of the distributions.
+        List<Integer> dbIndexes = new ArrayList();
+        for( int i = 0; i < db.getPathCount(); i++ ) {
+            boolean inAny = false;
+            for( int d : dists )
+                inAny |= db.has( d, i );
+            if( ! inAny )
                 continue;
-            
-            File file = new File(dir, path);
-            Path pathNorm = file.toPath().normalize();
-            
-            if( ! file.exists() ){
-                matches.put( pathNorm, MatchResult.MISSING );
+            if( filter != null && ! filter.accept( new File( db.getPath(i) ) ) )
                 continue;
+            dbIndexes.add( i );
+        }
+        
+        int[] pathIndexes = new int[ dbIndexes.size() ];
+        for( int j = 0; j < pathIndexes.length; j++ )
+            pathIndexes[j] = dbIndexes.get(j);
+        return compareHashesAndDir( db, dists, pathIndexes, dir );
+    }
+    
+    
+    /**
+     *  Compares only the given paths of the hash database - e.g. those which tell the distributions apart.
+     *  A path is only in the result for a distribution if that distribution has it.
+     *  The results share the path strings with the database.
+     * 
+     *  @param pathIndexes  Indexes of the paths in the database.
+     */
+    public static List<ComparisonResult> compareHashesAndDir( HashDatabase db, int[] dists, int[] pathIndexes, File dir ) throws IOException {
+        
+        // In the order of the database, which is sorted.
+        pathIndexes = pathIndexes.clone();
+        Arrays.sort( pathIndexes );
+        
+        List<String> paths = new ArrayList( pathIndexes.length );
+        for( int i : pathIndexes )
+            paths.add( db.getPath(i) );
+        
+        long[] hashesReal = new long[ paths.size() ];
+        MatchResult[] statuses = checkFiles( dir, paths, hashesReal );
+        
+        List<ComparisonResult> ret = new ArrayList( dists.length );
+        for( int d : dists ) {
+            int count = 0;
+            for( int i : pathIndexes ) {
+                if( db.has( d, i ) )
+                    count++;
             }
-            if( file.length() == 0 ){
-                matches.put( pathNorm, MatchResult.EMPTY );
-                continue;
+            String[] distPaths = new String[ count ];
+            byte[] distStatuses = new byte[ count ];
+            int k = 0;
+            for( int j = 0; j < pathIndexes.length; j++ ) {
+                int i = pathIndexes[j];
+                if( ! db.has( d, i ) )
+                    continue;
+                MatchResult status = statuses[j];
+                if( status == null )
+                    status = db.getCrc( d, i ) == hashesReal[j] ? MatchResult.MATCH : MatchResult.MISMATCH;
+                distPaths[k] = paths.get(j);
+                distStatuses[k] = (byte) status.ordinal();
+                k++;
             }
-            long hashReal = computeCrc32(file);
-            Long hash     = entry.getValue();
-            matches.put( pathNorm, hash == hashReal ? MatchResult.MATCH : MatchResult.MISMATCH );
+            ret.add( new ComparisonResult( dir, distPaths, distStatuses ) );
         }
-        return matches;
+        return ret;
+    }
+    
+    
+    /**
+     *  Checks the files at the given relative paths; The present ones are hashed at once.
+     *  @returns  MISSING or EMPTY for such files, null for the rest - their CRC32 is put to crcs at the same index.
+     */
+    private static MatchResult[] checkFiles( File dir, List<String> paths, long[] crcs ) throws IOException {
+        MatchResult[] statuses = new MatchResult[ paths.size() ];
+        List<File> toHash = new ArrayList();
+        List<Integer> toHashIndexes = new ArrayList();
+        for( int i = 0; i < statuses.length; i++ ) {
+            File file = new File( dir, paths.get(i) );
+            if( ! file.exists() )
+                statuses[i] = MatchResult.MISSING;
+            else if( file.length() == 0 )
+                statuses[i] = MatchResult.EMPTY;
+            else {
+                toHash.add( file );
+                toHashIndexes.add( i );
+            }
+        }
+        long[] computed = hasher.computeCrc32s( toHash );
+        for( int i = 0; i < computed.length; i++ )
+            crcs[ toHashIndexes.get(i) ] = computed[i];
+        return statuses;
     }
 
     
@@ -117,14 +246,16 @@ public class FileHashComparer {
     
     /**
      *  Computes CRC32 checksum of given file.
-     *  Uses net.lingala.zip4j.util and wraps their exception.
      */
     public static long computeCrc32( File file ) throws IOException {
-        try {
-            return CRCUtil.computeFileCRC(file.getPath());
-        } catch( ZipException ex ) {
-            throw new IOException("Can't compute CRC32 of " + file.getPath() + ": " + ex.getMessage(), ex);
-        }
+        return hasher.computeCrc32( file );
     }
+    
+    
+    /**
+     *  Sets what computes the hashes - e.g. with a different number of threads.
+     */
+    public static void setHasher( FileHasher hasher ) { FileHashComparer.hasher = hasher; }
+    public static FileHasher getHasher() { return hasher; }
         
 }// class
@@ -0,0 +1,184 @@
+package org.jboss.loom.utils.compar;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import org.jboss.loom.utils.ParallelUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *  Computes CRC32 of files, on a bounded pool of threads.
+ *
+ *  Uses the JDK's CRC32. Big files are memory-mapped; If the JDK has CRC32.update(ByteBuffer) (Java 8+),
+ *  the mapped buffer is passed directly, otherwise it's copied through a reusable per-thread array.
+ *  Small files are read into that array.
+ *
+ *  With a FileHashCache, a file which didn't change since it was hashed in a previous run is not read.
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class FileHasher {
+    private static final Logger log = LoggerFactory.getLogger( FileHasher.class );
+
+    /** Files of this size and bigger are memory-mapped. */
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    /** Max size of one mapped region. */
+    private static final long MAP_CHUNK = 64 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override protected byte[] initialValue() { return new byte[BUFFER_SIZE]; }
+    };
+
+    /** CRC32.update(ByteBuffer), if available. */
+    private static final Method UPDATE_BYTEBUFFER;
+    static {
+        Method m = null;
+        try {
+            m = CRC32.class.getMethod( "update", ByteBuffer.class );
+        } catch( NoSuchMethodException ex ){ }
+        UPDATE_BYTEBUFFER = m;
+    }
+
+
+    private final int threads;
+
+    private final FileHashCache cache;
+
+
+    /**
+     *  @param threads  How many files to hash at once. Hashing is mostly I/O bound, so more than the number of cores rarely helps.
+     */
+    public FileHasher( int threads ) {
+        this( threads, null );
+    }
+
+    /**
+     *  @param cache  May be null.
+     */
+    public FileHasher( int threads, FileHashCache cache ) {
+        this.threads = Math.max( 1, threads );
+        this.cache = cache;
+    }
+
+    public int getThreads() { return threads; }
+    public FileHashCache getCache() { return cache; }
+
+
+    /**
+     *  CRC32 of one file, on the calling thread.
+     */
+    public long computeCrc32( File file ) throws IOException {
+        if( this.cache == null )
+            return crc32( file );
+
+        Long cached = this.cache.get( file );
+        if( cached != null )
+            return cached;
+        long crc = crc32( file );
+        this.cache.put( file, crc );
+        return crc;
+    }
+
+
+    /**
+     *  CRC32 of each of the files, in the same order.
+     */
+    public long[] computeCrc32s( final List<File> files ) throws IOException {
+        long[] ret = new long[ files.size() ];
+        if( this.threads == 1 || files.size() < 2 ){
+            for( int i = 0; i < ret.length; i++ )
+                ret[i] = computeCrc32( files.get(i) );
+            return ret;
+        }
+
+        ExecutorService pool = ParallelUtils.createPool( Math.min( this.threads, files.size() ), "crc32" );
+        try {
+            List<Future<Long>> futures = new ArrayList( files.size() );
+            for( final File file : files ) {
+                futures.add( pool.submit( new Callable<Long>() {
+                    @Override public Long call() throws IOException {
+                        return computeCrc32( file );
+                    }
+                }));
+            }
+            for( int i = 0; i < ret.length; i++ ) {
+                try {
+                    ret[i] = ParallelUtils.getUnwrapped( futures.get(i) );
+                } catch( IOException | RuntimeException ex ){
+                    throw ex;
+                } catch( Exception ex ){
+                    throw new IOException("Can't compute CRC32 of " + files.get(i).getPath() + ": " + ex.getMessage(), ex);
+                }
+            }
+            return ret;
+        }
+        finally {
+            pool.shutdownNow();
+            ParallelUtils.shutdown( pool );
+        }
+    }
+
+
+    /**
+     *  The computation itself.
+     */
+    static long crc32( File file ) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = BUFFERS.get();
+        try( FileChannel ch = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            long size = ch.size();
+            if( size < MAP_THRESHOLD ){
+                ByteBuffer bb = ByteBuffer.wrap( buf );
+                int n;
+                while( (n = ch.read( bb )) >= 0 ) {
+                    crc.update( buf, 0, n );
+                    bb.clear();
+                }
+                return crc.getValue();
+            }
+
+            for( long pos = 0; pos < size; pos += MAP_CHUNK ) {
+                MappedByteBuffer mb = ch.map( FileChannel.MapMode.READ_ONLY, pos, Math.min( MAP_CHUNK, size - pos ) );
+                if( UPDATE_BYTEBUFFER != null ){
+                    update( crc, mb );
+                    continue;
+                }
+                while( mb.hasRemaining() ) {
+                    int n = Math.min( buf.length, mb.remaining() );
+                    mb.get( buf, 0, n );
+                    crc.update( buf, 0, n );
+                }
+            }
+            return crc.getValue();
+        }
+        catch( IOException ex ){
+            throw new IOException("Can't compute CRC32 of " + file.getPath() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static void update( CRC32 crc, ByteBuffer bb ) throws IOException {
+        try {
+            UPDATE_BYTEBUFFER.invoke( crc, bb );
+        } catch( IllegalAccessException ex ){
+            throw new IllegalStateException( ex );
+        } catch( InvocationTargetException ex ){
+            throw new IOException( ex.getCause() );
+        }
+    }
+
+}// class
@@ -0,0 +1,368 @@
+package org.jboss.loom.utils.compar;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.IOFileFilter;
+
+/**
+ *  File hashes of several distributions, in a compact binary form.
+ *
+ *  All distributions share one sorted path table, stored with front coding (each path stores only what differs
+ *  from the previous one). Each distribution has a bitset of the paths it contains and the CRC32's of those paths.
+ *  Loaded with a single read into primitive arrays - no per-entry objects besides the path strings.
+ *
+ *  The .bin is generated from the text hash files (see FileHashComparer.readHashes()) by main():
+ *
+ *      java -cp ... org.jboss.loom.utils.compar.HashDatabase src/main/resources/fileHashes/as5/hashes.bin \
+ *          src/main/resources/fileHashes/as5/jboss-eap-5.0.0-crc32.txt=5.0.0 ...
+ *
+ *  @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class HashDatabase {
+
+    private static final int MAGIC = 0x46484442; // "FHDB"
+    private static final int FORMAT = 1;
+
+
+    private final List<Distribution> distributions;
+
+    /** Sorted; Separated by '/', normalized, relative. */
+    private final String[] paths;
+
+    /** Per distribution: which paths it has. */
+    private final long[][] present;
+
+    /** Per distribution: CRC32 by path index; 0 for the paths not present. */
+    private final int[][] crcs;
+
+
+    private HashDatabase( List<Distribution> distributions, String[] paths, long[][] present, int[][] crcs ) {
+        this.distributions = distributions;
+        this.paths = paths;
+        this.present = present;
+        this.crcs = crcs;
+    }
+
+
+    public List<Distribution> getDistributions() { return distributions; }
+
+    public int getPathCount() { return paths.length; }
+
+    public String getPath( int index ) { return paths[index]; }
+
+    public boolean has( int dist, int index ) {
+        return (this.present[dist][index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     *  @returns  The CRC32 of the path in the distribution. Only valid if has() is true.
+     */
+    public long getCrc( int dist, int index ) {
+        return this.crcs[dist][index] & 0xFFFFFFFFL;
+    }
+
+    /**
+     *  @returns  The index of the path, or a negative number if not in the table.
+     */
+    public int indexOf( String path ) {
+        return Arrays.binarySearch( this.paths, path );
+    }
+
+    /**
+     *  @returns  The index of the first distribution with that version, or -1.
+     */
+    public int indexOfVersion( String version ) {
+        for( int i = 0; i < this.distributions.size(); i++ ) {
+            if( this.distributions.get(i).version.equals( version ) )
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     *  The hashes of one distribution in the form FileHashComparer.readHashes() returns.
+     */
+    public Map<String, Long> toMap( int dist ) {
+        Map<String, Long> ret = new HashMap();
+        for( int i = 0; i < this.paths.length; i++ ) {
+            if( has( dist, i ) )
+                ret.put( this.paths[i], getCrc( dist, i ) );
+        }
+        return ret;
+    }
+
+
+
+    /**
+     *  CRC32 of the path -> version. Only the CRC32's found in distributions of a single version are included.
+     */
+    public Map<Long, String> getVersionsByCrc( String path ) {
+        Map<Long, String> ret = new HashMap();
+        int index = indexOf( path );
+        if( index < 0 )
+            return ret;
+
+        Set<Long> ambiguous = new HashSet();
+        for( int d = 0; d < this.distributions.size(); d++ ) {
+            if( ! has( d, index ) )
+                continue;
+            Long crc = getCrc( d, index );
+            String version = this.distributions.get(d).version;
+            String prev = ret.put( crc, version );
+            if( prev != null && ! prev.equals( version ) )
+                ambiguous.add( crc );
+        }
+        ret.keySet().removeAll( ambiguous );
+        return ret;
+    }
+
+
+    /**
+     *  A small set of paths which tells apart any two distributions of different versions:
+     *  For each such pair, at least one of the paths is only in one of them, or has a different CRC32 in each.
+     *  Greedy set cover - the path telling apart the most remaining pairs is taken first.
+     *  That's not always the smallest set, but close, and it takes milliseconds.
+     *
+     *  @param filter  Which paths may be used, applied to the path like in FileHashComparer; null = any.
+     *  @returns  Indexes of the paths. Pairs which no allowed path tells apart are left uncovered.
+     */
+    public int[] findDiscriminatingPaths( IOFileFilter filter ) {
+        List<int[]> pairs = new LinkedList();
+        for( int a = 0; a < this.distributions.size(); a++ ) {
+            for( int b = a + 1; b < this.distributions.size(); b++ ) {
+                if( ! this.distributions.get(a).version.equals( this.distributions.get(b).version ) )
+                    pairs.add( new int[]{ a, b } );
+            }
+        }
+
+        List<Integer> candidates = new ArrayList();
+        for( int i = 0; i < this.paths.length; i++ ) {
+            if( filter == null || filter.accept( new File( this.paths[i] ) ) )
+                candidates.add( i );
+        }
+
+        List<Integer> chosen = new ArrayList();
+        while( ! pairs.isEmpty() ) {
+            int bestPath = -1;
+            int bestCount = 0;
+            for( int i : candidates ) {
+                int count = 0;
+                for( int[] pair : pairs ) {
+                    if( differs( pair[0], pair[1], i ) )
+                        count++;
+                }
+                if( count > bestCount ){
+                    bestCount = count;
+                    bestPath = i;
+                }
+            }
+            if( bestPath == -1 )
+                break;
+            chosen.add( bestPath );
+            for( Iterator<int[]> it = pairs.iterator(); it.hasNext(); ) {
+                int[] pair = it.next();
+                if( differs( pair[0], pair[1], bestPath ) )
+                    it.remove();
+            }
+        }
+
+        int[] ret = new int[ chosen.size() ];
+        for( int i = 0; i < ret.length; i++ )
+            ret[i] = chosen.get(i);
+        return ret;
+    }
+
+    private boolean differs( int distA, int distB, int index ) {
+        boolean hasA = has( distA, index );
+        if( hasA != has( distB, index ) )
+            return true;
+        return hasA && this.crcs[distA][index] != this.crcs[distB][index];
+    }
+
+
+    // === Reading. === //
+
+    public static HashDatabase load( InputStream is ) throws IOException {
+        if( is == null )
+            throw new IOException("Hash database not found.");
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray( is );
+        } finally {
+            is.close();
+        }
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+
+        if( in.readInt() != MAGIC )
+            throw new IOException("Not a hash database.");
+        int format = in.readInt();
+        if( format != FORMAT )
+            throw new IOException("Unsupported hash database format: " + format);
+
+        int distCount = in.readInt();
+        List<Distribution> dists = new ArrayList( distCount );
+        for( int i = 0; i < distCount; i++ )
+            dists.add( new Distribution( in.readUTF(), in.readUTF() ) );
+
+        int pathCount = in.readInt();
+        String[] paths = new String[ pathCount ];
+        String prev = "";
+        for( int i = 0; i < pathCount; i++ ) {
+            int shared = in.readUnsignedShort();
+            paths[i] = prev.substring( 0, shared ) + in.readUTF();
+            prev = paths[i];
+        }
+
+        int words = (pathCount + 63) >>> 6;
+        long[][] present = new long[ distCount ][ words ];
+        int[][] crcs = new int[ distCount ][ pathCount ];
+        for( int d = 0; d < distCount; d++ ) {
+            for( int w = 0; w < words; w++ )
+                present[d][w] = in.readLong();
+            // Only the present paths' CRC's are stored.
+            for( int i = 0; i < pathCount; i++ ) {
+                if( (present[d][i >>> 6] & (1L << i)) != 0 )
+                    crcs[d][i] = in.readInt();
+            }
+        }
+        return new HashDatabase( dists, paths, present, crcs );
+    }
+
+
+
+    // === Writing. === //
+
+    /**
+     *  Builds the database from the text hash files.
+     */
+    public static HashDatabase fromHashFiles( List<File> hashFiles, List<String> versions ) throws IOException {
+        List<Map<String, Long>> sets = new ArrayList();
+        TreeSet<String> allPaths = new TreeSet();
+        for( File file : hashFiles ) {
+            Map<String, Long> set = new HashMap();
+            try( InputStream is = new FileInputStream( file ) ) {
+                for( Map.Entry<String, Long> e : FileHashComparer.readHashes( is ).entrySet() )
+                    set.put( normalize( e.getKey() ), e.getValue() );
+            }
+            sets.add( set );
+            allPaths.addAll( set.keySet() );
+        }
+
+        String[] paths = allPaths.toArray( new String[ allPaths.size() ] );
+        int words = (paths.length + 63) >>> 6;
+        List<Distribution> dists = new ArrayList();
+        long[][] present = new long[ sets.size() ][ words ];
+        int[][] crcs = new int[ sets.size() ][ paths.length ];
+        for( int d = 0; d < sets.size(); d++ ) {
+            dists.add( new Distribution( hashFiles.get(d).getName(), versions.get(d) ) );
+            for( int i = 0; i < paths.length; i++ ) {
+                Long crc = sets.get(d).get( paths[i] );
+                if( crc == null )
+                    continue;
+                present[d][i >>> 6] |= 1L << i;
+                crcs[d][i] = (int) crc.longValue();
+            }
+        }
+        return new HashDatabase( dists, paths, present, crcs );
+    }
+
+
+    public void write( File file ) throws IOException {
+        try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT );
+            out.writeInt( this.distributions.size() );
+            for( Distribution dist : this.distributions ) {
+                out.writeUTF( dist.name );
+                out.writeUTF( dist.version );
+            }
+            out.writeInt( this.paths.length );
+            String prev = "";
+            for( String path : this.paths ) {
+                int shared = 0;
+                int max = Math.min( Math.min( prev.length(), path.length() ), 0xFFFF );
+                while( shared < max && prev.charAt( shared ) == path.charAt( shared ) )
+                    shared++;
+                out.writeShort( shared );
+                out.writeUTF( path.substring( shared ) );
+                prev = path;
+            }
+            for( int d = 0; d < this.distributions.size(); d++ ) {
+                for( long word : this.present[d] )
+                    out.writeLong( word );
+                for( int i = 0; i < this.paths.length; i++ ) {
+                    if( has( d, i ) )
+                        out.writeInt( this.crcs[d][i] );
+                }
+            }
+        }
+    }
+
+
+    /**
+     *  Relative, normalized, with '/' on any OS. I.e. ./foo/../bar/a results in bar/a .
+     */
+    static String normalize( String path ) {
+        return Paths.get( path.trim() ).normalize().toString().replace( File.separatorChar, '/' );
+    }
+
+
+    /**
+     *  Converts text hash files to the binary database.
+     *  Usage: HashDatabase <output.bin> <hashFile>=<version> ...
+     */
+    public static void main( String[] args ) throws IOException {
+        if( args.length < 2 ){
+            System.out.println("Usage: HashDatabase <output.bin> <hashFile>=<version> ...");
+            System.exit(1);
+        }
+        List<File> files = new ArrayList();
+        List<String> versions = new ArrayList();
+        for( int i = 1; i < args.length; i++ ) {
+            int eq = args[i].lastIndexOf('=');
+            files.add( new File( args[i].substring( 0, eq ) ) );
+            versions.add( args[i].substring( eq + 1 ) );
+        }
+        HashDatabase db = fromHashFiles( files, versions );
+        db.write( new File( args[0] ) );
+        System.out.println("Written " + db.getPathCount() + " paths of " + db.getDistributions().size() + " distributions to " + args[0]);
+    }
+
+
+
+    /**
+     *  A distribution the hashes were taken from.
+     */
+    public static class Distribution {
+        /** The hash file it was created from. */
+        public final String name;
+        public final String version;
+
+        public Distribution( String name, String version ) {
+            this.name = name;
+            this.version = version;
+        }
+
+        @Override public String toString() { return name + " (" + version + ")"; }
+    }
+
+}// class
@@ -0,0 +1,93 @@
+package org.jboss.loom.actions;
+
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class ActionDependencySorterTest {
+
+    /**
+     *  Dependencies are placed right before the action, even ahead of independent b.
+     */
+    @Test
+    public void testSort() throws Exception {
+        System.out.println( "sort" );
+
+        NamedAction a = new NamedAction("a");
+        NamedAction b = new NamedAction("b");
+        NamedAction c = new NamedAction("c");
+        NamedAction d = new NamedAction("d");
+        a.addDependency( c );
+        c.addDependency( d );
+
+        List<NamedAction> sorted = ActionDependencySorter.sort( Arrays.asList( a, b, c, d ) );
+
+        assertEquals( Arrays.asList( d, c, a, b ), sorted );
+    }
+
+
+    @Test
+    public void testSortCycle() throws Exception {
+        System.out.println( "sortCycle" );
+
+        NamedAction a = new NamedAction("a");
+        NamedAction b = new NamedAction("b");
+        NamedAction c = new NamedAction("c");
+        a.addDependency( b );
+        b.addDependency( c );
+        c.addDependency( a );
+
+        try {
+            ActionDependencySorter.sort( Arrays.asList( a, b, c ) );
+            fail("Cycle not detected.");
+        }
+        catch( AbstractStatefulAction.CircularDependencyException ex ){
+            String msg = ex.getMessage();
+            assertTrue( msg, msg.contains("Named a") && msg.contains("Named b") && msg.contains("Named c") );
+        }
+    }
+
+
+    @Test
+    public void testDependsOn() throws Exception {
+        System.out.println( "dependsOn" );
+
+        NamedAction a = new NamedAction("a");
+        NamedAction b = new NamedAction("b");
+        NamedAction c = new NamedAction("c");
+        a.addDependency( b );
+
+        assertEquals( 1, a.dependsOn( b ) );
+        assertEquals( -1, a.dependsOn( c ) );
+        assertEquals( -1, b.dependsOn( a ) );
+
+        // The cached distances must reflect new dependencies.
+        b.addDependency( c );
+        assertEquals( 2, a.dependsOn( c ) );
+
+        // A change deeper in the graph too.
+        NamedAction d = new NamedAction("d");
+        assertEquals( -1, a.dependsOn( d ) );
+        c.addDependency( d );
+        assertEquals( 3, a.dependsOn( d ) );
+        assertEquals( 1, c.dependsOn( d ) );
+
+        // Unrelated actions don't affect it.
+        new NamedAction("x").addDependency( new NamedAction("y") );
+        assertEquals( 3, a.dependsOn( d ) );
+    }
+
+
+    private static class NamedAction extends ManualAction {
+        private final String name;
+        NamedAction( String name ) { this.name = name; }
+        @Override public String toDescription() { return "Named " + name; }
+        @Override public String toString() { return name; }
+    }
+
+}// class
@@ -0,0 +1,135 @@
+package org.jboss.loom.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class SourceTreeCatalogTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File root;
+    private SourceTreeCatalog catalog;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.root = tmp.newFolder("server");
+        // "dir-x", "dir.x" and "dir0" sort right before and after the entries under "dir/".
+        for( String path : new String[]{ "dir/a.xml", "dir/b/c-ds.xml", "dir/b/d.txt", "dir-x/e.xml", "dir.x/f.xml", "dir0/g.xml",
+                                         "README", "conf/x-service.xml", "conf/UP.XML", "conf/props/h.properties" } )
+            FileUtils.write( new File( root, path ), path );
+        this.catalog = SourceTreeCatalog.build( root, 3 );
+    }
+
+
+    @Test
+    public void testFindByPattern() throws Exception {
+        System.out.println( "findByPattern" );
+
+        assertEquals( "[conf/x-service.xml, dir-x/e.xml, dir.x/f.xml, dir/a.xml, dir/b/c-ds.xml, dir0/g.xml]",
+                relative( catalog.findByPattern( root, "**/*.xml" ) ) );
+        assertEquals( "[dir/a.xml, dir/b/c-ds.xml, dir/b/d.txt]", relative( catalog.findByPattern( root, "dir/" ) ) );
+        assertEquals( "[dir/a.xml, dir/b/c-ds.xml, dir/b/d.txt]", relative( catalog.findByPattern( root, "/dir/**" ) ) );
+        assertEquals( "[dir/a.xml]", relative( catalog.findByPattern( root, "dir/*.xml" ) ) );
+        assertEquals( "[dir/a.xml]", relative( catalog.findByPattern( root, "dir/?.xml" ) ) );
+        assertEquals( "[]", relative( catalog.findByPattern( root, "dir/??.xml" ) ) );
+        assertEquals( "[dir/b/c-ds.xml, dir/b/d.txt]", relative( catalog.findByPattern( root, "**/b/*" ) ) );
+        assertEquals( "[dir/b/d.txt]", relative( catalog.findByPattern( root, "dir/**/*.txt" ) ) );
+        // The dot is literal.
+        assertEquals( "[dir.x/f.xml]", relative( catalog.findByPattern( root, "dir.x/*" ) ) );
+        assertEquals( "[dir-x/e.xml, dir.x/f.xml]", relative( catalog.findByPattern( root, "dir?x/*" ) ) );
+        assertEquals( "[README]", relative( catalog.findByPattern( root, "*" ) ) );
+
+        // Relative to the base dir.
+        assertEquals( "[a.xml, b/c-ds.xml]", relative( catalog.findByPattern( new File( root, "dir" ), "**/*.xml" ) ) );
+        assertEquals( "[a.xml, b/c-ds.xml, b/d.txt]", relative( catalog.findByPattern( new File( root, "dir" ), "**" ) ) );
+    }
+
+
+    @Test
+    public void testFindByName() throws Exception {
+        System.out.println( "findByName" );
+
+        assertEquals( "[dir/b]", relative( catalog.findByName( "b", root, true ) ) );
+        assertEquals( "[]", relative( catalog.findByName( "b", root, false ) ) );
+        assertEquals( "[dir-x/e.xml]", relative( catalog.findByName( "e.xml", root, false ) ) );
+        assertEquals( "[]", relative( catalog.findByName( "e.xml", new File( root, "dir" ), false ) ) );
+        assertEquals( "[dir/a.xml]", relative( catalog.findByName( "a.xml", new File( root, "dir" ), false ) ) );
+    }
+
+
+    @Test
+    public void testFindBySuffix() throws Exception {
+        System.out.println( "findBySuffix" );
+
+        // With a dot - through the extension index.
+        assertEquals( "[dir/b/c-ds.xml]", relative( catalog.findBySuffix( "-ds.xml", root ) ) );
+        assertEquals( "[dir/a.xml, dir/b/c-ds.xml]", relative( catalog.findBySuffix( ".xml", new File( root, "dir" ) ) ) );
+        assertEquals( "[conf/UP.XML]", relative( catalog.findBySuffix( ".XML", root ) ) );
+        assertEquals( "[conf/x-service.xml]", relative( catalog.findBySuffix( "-service.xml", new File( root, "conf" ) ) ) );
+
+        // Without a dot - through the range under the dir.
+        assertEquals( "[README]", relative( catalog.findBySuffix( "ME", root ) ) );
+        assertEquals( "[dir/a.xml, dir/b/c-ds.xml]", relative( catalog.findBySuffix( "xml", new File( root, "dir" ) ) ) );
+        assertEquals( "[dir/b/d.txt]", relative( catalog.findBySuffix( "txt", new File( root, "dir/b" ) ) ) );
+        assertEquals( "[]", relative( catalog.findBySuffix( "txt", new File( root, "dir-x" ) ) ) );
+    }
+
+
+    @Test
+    public void testCoversAndExists() throws Exception {
+        System.out.println( "coversAndExists" );
+
+        assertTrue( catalog.covers( root ) );
+        assertTrue( catalog.covers( new File( root, "dir/b" ) ) );
+        assertTrue( catalog.covers( new File( root, "dir/../conf" ) ) );
+        assertTrue( catalog.covers( new File( root, "nonexistent" ) ) );
+        assertFalse( catalog.covers( root.getParentFile() ) );
+        assertFalse( catalog.covers( new File( root, "../other" ) ) );
+        // Same prefix, but a different dir.
+        assertFalse( catalog.covers( new File( root.getPath() + "-x" ) ) );
+
+        assertTrue( catalog.exists( root ) );
+        assertTrue( catalog.exists( new File( root, "dir/b/d.txt" ) ) );
+        assertTrue( catalog.exists( new File( root, "dir.x" ) ) );
+        assertFalse( catalog.exists( new File( root, "dir/b/e.xml" ) ) );
+        assertFalse( catalog.exists( new File( root.getParentFile(), "server-x/dir/a.xml" ) ) );
+
+        assertEquals( 17, catalog.size() );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testQueryOutsideRoot() throws Exception {
+        System.out.println( "queryOutsideRoot" );
+        catalog.findBySuffix( ".xml", root.getParentFile() );
+    }
+
+
+
+    /**
+     *  @returns  Sorted paths relative to root, or as they are if already relative.
+     */
+    private String relative( List<File> files ) {
+        List<String> ret = new ArrayList();
+        for( File file : files ) {
+            String path = file.isAbsolute() ? root.toPath().relativize( file.toPath() ).toString() : file.getPath();
+            ret.add( path.replace( File.separatorChar, '/' ) );
+        }
+        Collections.sort( ret );
+        return ret.toString();
+    }
+
+}// class
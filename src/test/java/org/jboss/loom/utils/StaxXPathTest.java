@@ -0,0 +1,85 @@
+package org.jboss.loom.utils;
+
+import java.io.File;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class StaxXPathTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+
+    @Test
+    public void testCompile() {
+        System.out.println( "compile" );
+
+        assertNotNull( StaxXPath.compile("/server/mbean[@code='org.jboss.mail.MailService']") );
+        assertNotNull( StaxXPath.compile("/jboss/invoker-proxy-bindings/invoker-proxy-binding") );
+        assertNotNull( StaxXPath.compile("/*/bean[@class=\"a.B\"][@name='x']") );
+
+        assertNull( StaxXPath.compile("//mbean") );
+        assertNull( StaxXPath.compile("/server/mbean[1]") );
+        assertNull( StaxXPath.compile("/server/mbean[@code='a' or @code='b']") );
+        assertNull( StaxXPath.compile("server/mbean") );
+    }
+
+
+    @Test
+    public void testUnmarshallStreaming() throws Exception {
+        System.out.println( "unmarshallStreaming" );
+
+        File file = tmp.newFile("mail-service.xml");
+        FileUtils.write( file, "<?xml version='1.0'?>\n"
+            + "<!DOCTYPE server PUBLIC \"-//JBoss//DTD MBean Service 5.0//EN\" \"http://www.jboss.org/j2ee/dtd/jboss-service_5_0.dtd\">\n"
+            + "<server>\n"
+            + "  <mbean code='org.jboss.mail.MailService' name='a'><nested><mbean code='org.jboss.mail.MailService' name='nested'/></nested></mbean>\n"
+            + "  <mbean code='org.jboss.Other' name='b'/>\n"
+            + "  <mbean code='org.jboss.mail.MailService' name='c'/>\n"
+            + "</server>" );
+
+        List<MBean> beans = XmlUtils.unmarshallBeans( file, "/server/mbean[@code='org.jboss.mail.MailService']", MBean.class );
+        assertEquals( 2, beans.size() );
+        assertEquals( "a", beans.get(0).name );
+        assertEquals( "c", beans.get(1).name );
+    }
+
+
+    @Test
+    public void testUnmarshallStreamingDefaultNamespace() throws Exception {
+        System.out.println( "unmarshallStreamingDefaultNamespace" );
+
+        // Like remoting-jboss-beans.xml - the beans are mapped without a namespace.
+        File file = tmp.newFile("remoting-jboss-beans.xml");
+        FileUtils.write( file, "<?xml version='1.0'?>\n"
+            + "<deployment xmlns='urn:jboss:bean-deployer:2.0'>\n"
+            + "  <mbean code='org.jboss.remoting.ServerConfiguration' name='a'/>\n"
+            + "  <mbean code='org.jboss.Other' name='b'/>\n"
+            + "</deployment>" );
+
+        List<MBean> beans = XmlUtils.unmarshallBeans( file, "/deployment/mbean[@code='org.jboss.remoting.ServerConfiguration']", MBean.class );
+        assertEquals( 1, beans.size() );
+        assertEquals( "a", beans.get(0).name );
+        assertEquals( "org.jboss.remoting.ServerConfiguration", beans.get(0).code );
+    }
+
+
+    @XmlRootElement(name = "mbean")
+    @XmlAccessorType( XmlAccessType.FIELD )
+    public static class MBean {
+        @XmlAttribute String code;
+        @XmlAttribute String name;
+    }
+
+}// class
@@ -0,0 +1,118 @@
+package org.jboss.loom.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+import org.apache.commons.io.FileUtils;
+import org.jboss.loom.ex.MigrationException;
+import org.jboss.loom.ex.MigrationExceptions;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class XmlUtilsTest {
+
+    private static final String XPATH = "/server/mbean[@code='org.jboss.mail.MailService']";
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File deploy;
+    private SourceTreeCatalog tree;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.deploy = tmp.newFolder("deploy");
+        // Enough files for all the threads; The earlier ones are bigger, so they tend to finish later.
+        for( int i = 0; i < 20; i++ ) {
+            StringBuilder sb = new StringBuilder("<server>\n");
+            for( int j = 0; j < 20 - i; j++ )
+                sb.append("  <mbean code='org.jboss.Other' name='x'/>\n");
+            sb.append("  <mbean code='org.jboss.mail.MailService' name='").append( i ).append("a'/>\n");
+            sb.append("  <mbean code='org.jboss.mail.MailService' name='").append( i ).append("b'/>\n");
+            sb.append("</server>");
+            FileUtils.write( new File( deploy, String.format("%s/mail%02d-service.xml", i % 2 == 0 ? "even" : "odd", i) ), sb.toString() );
+        }
+        FileUtils.write( new File( deploy, "bad1-service.xml" ), "<server><mbean code='org.jboss.mail.MailService'" );
+        FileUtils.write( new File( deploy, "odd/bad2-service.xml" ), "<server></mbean></server>" );
+        this.tree = SourceTreeCatalog.build( tmp.getRoot(), 2 );
+    }
+
+
+    @Test
+    public void testReadXmlConfigFilesOrder() throws Exception {
+        System.out.println( "readXmlConfigFilesOrder" );
+
+        List<String> expected = new ArrayList();
+        for( String dir : new String[]{ "even", "odd" } ) {
+            for( int i = dir.equals("even") ? 0 : 1; i < 20; i += 2 ) {
+                expected.add( i + "a" );
+                expected.add( i + "b" );
+            }
+        }
+
+        List<MBean> beans = XmlUtils.readXmlConfigFiles( tree, 4, deploy, "**/mail*-service.xml", XPATH, MBean.class, "Mail service" );
+        assertEquals( expected, names( beans ) );
+
+        // The same as single-threaded.
+        beans = XmlUtils.readXmlConfigFiles( tree, 1, deploy, "**/mail*-service.xml", XPATH, MBean.class, "Mail service" );
+        assertEquals( expected, names( beans ) );
+    }
+
+
+    @Test
+    public void testReadXmlConfigFilesFailures() throws Exception {
+        System.out.println( "readXmlConfigFilesFailures" );
+
+        for( SourceTreeCatalog catalog : new SourceTreeCatalog[]{ tree, null } ) {
+            try {
+                XmlUtils.readXmlConfigFiles( catalog, 4, deploy, "**/*-service.xml", XPATH, MBean.class, "Mail service" );
+                fail("The malformed files should have failed.");
+            }
+            catch( MigrationExceptions ex ){
+                // Both failures, though the files are parsed in parallel with the good ones.
+                assertEquals( ex.getMessage(), 2, ex.getExs().size() );
+                assertTrue( ex.getMessage(), ex.getMessage().contains("bad1-service.xml") );
+                assertTrue( ex.getMessage(), ex.getMessage().contains("bad2-service.xml") );
+            }
+        }
+
+        // A single failure is not wrapped in MigrationExceptions.
+        try {
+            XmlUtils.readXmlConfigFiles( tree, 4, deploy, "*-service.xml", XPATH, MBean.class, "Mail service" );
+            fail("The malformed file should have failed.");
+        }
+        catch( MigrationException ex ){
+            assertFalse( ex instanceof MigrationExceptions );
+            assertTrue( ex.getMessage(), ex.getMessage().contains("bad1-service.xml") );
+        }
+    }
+
+
+
+    private static List<String> names( List<MBean> beans ) {
+        List<String> names = new ArrayList();
+        for( MBean bean : beans )
+            names.add( bean.name );
+        return names;
+    }
+
+
+    @XmlRootElement(name = "mbean")
+    @XmlAccessorType( XmlAccessType.FIELD )
+    public static class MBean {
+        @XmlAttribute String code;
+        @XmlAttribute String name;
+    }
+
+}// class
@@ -0,0 +1,101 @@
+package org.jboss.loom.utils.as7;
+
+import java.io.IOException;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class AS7ClientPoolTest {
+
+
+    /**
+     *  The connection breaks after the server applied the operation - it must not be sent again.
+     */
+    @Test
+    public void testChangeNotRetried() throws Exception {
+        System.out.println( "changeNotRetried" );
+
+        FlakyClient client = new FlakyClient( 1 );
+        AS7ClientPool pool = new AS7ClientPool( client );
+        try {
+            pool.execute( loggerOp( ClientConstants.ADD, "foo" ) );
+            fail("The IOException should have been rethrown.");
+        }
+        catch( IOException ex ){ }
+        assertEquals( 1, client.getStats().get("add").getCount() );
+
+        ModelNode res = pool.execute( loggerOp( ClientConstants.READ_RESOURCE_OPERATION, "foo" ) );
+        assertEquals( ClientConstants.SUCCESS, res.get(ClientConstants.OUTCOME).asString() );
+    }
+
+
+    @Test
+    public void testReadRetried() throws Exception {
+        System.out.println( "readRetried" );
+
+        FlakyClient client = new FlakyClient( 2 );
+        ModelNode read = new ModelNode();
+        read.get(ClientConstants.OP).set(ClientConstants.READ_RESOURCE_OPERATION);
+        read.get(ClientConstants.OP_ADDR).setEmptyList();
+        ModelNode res = new AS7ClientPool( client ).execute( read );
+        assertEquals( ClientConstants.SUCCESS, res.get(ClientConstants.OUTCOME).asString() );
+        assertEquals( 3, client.getStats().get("read-resource").getCount() );
+    }
+
+
+    @Test
+    public void testIsReadOnly() throws Exception {
+        System.out.println( "isReadOnly" );
+
+        assertTrue( AS7ClientPool.isReadOnly( loggerOp( ClientConstants.READ_ATTRIBUTE_OPERATION, "foo" ) ) );
+        assertFalse( AS7ClientPool.isReadOnly( loggerOp( ClientConstants.WRITE_ATTRIBUTE_OPERATION, "foo" ) ) );
+
+        ModelNode composite = new ModelNode();
+        composite.get(ClientConstants.OP).set(ClientConstants.COMPOSITE);
+        composite.get(ClientConstants.OP_ADDR).setEmptyList();
+        composite.get(ClientConstants.STEPS).add( loggerOp( ClientConstants.READ_RESOURCE_OPERATION, "foo" ) );
+        assertTrue( AS7ClientPool.isReadOnly( composite ) );
+        composite.get(ClientConstants.STEPS).add( loggerOp( ClientConstants.REMOVE_OPERATION, "foo" ) );
+        assertFalse( AS7ClientPool.isReadOnly( composite ) );
+    }
+
+
+
+    private static ModelNode loggerOp( String opName, String category ) {
+        ModelNode op = new ModelNode();
+        op.get(ClientConstants.OP).set( opName );
+        op.get(ClientConstants.OP_ADDR).add("subsystem", "logging").add("logger", category);
+        return op;
+    }
+
+
+    /**
+     *  Executes the operation, but throws IOException instead of the response the given number of times.
+     */
+    private static class FlakyClient extends InMemoryModelControllerClient {
+        private int failures;
+
+        FlakyClient( int failures ) throws IOException {
+            ModelNode add = new ModelNode();
+            add.get(ClientConstants.OP).set(ClientConstants.ADD);
+            add.get(ClientConstants.OP_ADDR).add("subsystem", "logging");
+            super.execute( add );
+            resetStats();
+            this.failures = failures;
+        }
+
+        @Override
+        public ModelNode execute( ModelNode operation ) throws IOException {
+            ModelNode res = super.execute( operation );
+            if( this.failures-- > 0 )
+                throw new IOException("Connection reset");
+            return res;
+        }
+    }
+
+}// class
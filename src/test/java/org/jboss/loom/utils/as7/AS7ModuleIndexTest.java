@@ -0,0 +1,44 @@
+package org.jboss.loom.utils.as7;
+
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class AS7ModuleIndexTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+
+    @Test
+    public void testModuleXmlParsing() throws Exception {
+        System.out.println( "moduleXmlParsing" );
+
+        File modules = tmp.newFolder("modules");
+        FileUtils.write( new File( modules, "com/h2database/h2/main/module.xml" ),
+            "<module xmlns=\"urn:jboss:module:1.1\" name=\"com.h2database.h2\">\n"
+          + "  <resources><resource-root path=\"h2-1.3.168.jar\"/></resources>\n"
+          + "  <exports><exclude path=\"org/h2/server/**\"/></exports>\n"
+          + "  <dependencies><module name=\"javax.api\"><exports><exclude path=\"**\"/></exports></module></dependencies>\n"
+          + "</module>" );
+        FileUtils.write( new File( modules, "org/h2/main/module.xml" ),
+            "<module-alias xmlns=\"urn:jboss:module:1.1\" name=\"org.h2\" target-name=\"com.h2database.h2\"/>" );
+
+        AS7ModuleIndex index = AS7ModuleIndex.build( modules, null, 2 );
+        AS7ModuleIndex.ModuleInfo h2 = index.getModule("com.h2database.h2");
+        assertNotNull( h2 );
+        assertEquals( "main", h2.getSlot() );
+        assertEquals( "h2-1.3.168.jar", h2.getResourceRoots().get(0).getName() );
+        assertSame( h2, index.getModule("org.h2") );
+
+        assertTrue( h2.isExported("org.h2.Driver") );
+        assertFalse( h2.isExported("org.h2.server.web.WebServer") );
+    }
+
+}// class
@@ -0,0 +1,173 @@
+package org.jboss.loom.utils.as7;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jboss.as.cli.batch.BatchedCommand;
+import org.jboss.as.cli.batch.impl.DefaultBatchedCommand;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import org.jboss.loom.ex.MigrationException;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class CliBatchExecutorTest {
+
+    private InMemoryModelControllerClient client;
+    private IOperationExecutor executor;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.client = InMemoryModelControllerClient.createWithDefaultSubsystems();
+        this.executor = new IOperationExecutor() {
+            @Override public ModelNode execute( ModelNode operation ) throws IOException {
+                return client.execute( operation );
+            }
+        };
+        // To be overwritten.
+        ModelNode res = client.execute( addLogger("org.x", "INFO").getRequest() );
+        assertEquals( ClientConstants.SUCCESS, res.get(ClientConstants.OUTCOME).asString() );
+    }
+
+
+    @Test
+    public void testSplitToChunks() {
+        System.out.println( "splitToChunks" );
+
+        List<BatchedCommand> cmds = Arrays.asList( addLogger("a", null), addLogger("b", null), addLogger("c", null), addLogger("d", null), addLogger("e", null) );
+        assertEquals( Arrays.asList( 2, 4, 5 ), CliBatchExecutor.splitToChunks( cmds, 2 ) );
+        assertEquals( Arrays.asList( 5 ), CliBatchExecutor.splitToChunks( cmds, 5 ) );
+
+        // The overwrite of org.x is not split.
+        cmds = Arrays.asList( addLogger("a", null), removeLogger("org.x"), addLogger("org.x", null), addLogger("b", null) );
+        assertEquals( Arrays.asList( 3, 4 ), CliBatchExecutor.splitToChunks( cmds, 2 ) );
+    }
+
+
+    /**
+     *  All-or-nothing: the first chunk is undone.
+     */
+    @Test
+    public void testFailureInSecondChunk() throws Exception {
+        System.out.println( "failureInSecondChunk" );
+
+        try {
+            new CliBatchExecutor( executor, 2, false ).execute( batchFailingAt4th() );
+            fail("The duplicate driver should have failed.");
+        }
+        catch( MigrationException ex ){
+            assertTrue( ex.getMessage(), ex.getMessage().contains("at operation 4") );
+        }
+        assertFalse( loggerExists("a") );
+        assertFalse( loggerExists("b") );
+        assertFalse( loggerExists("c") );
+    }
+
+
+    /**
+     *  cli.chunk.commit: the first chunk stays.
+     */
+    @Test
+    public void testFailureInSecondChunkCommitted() throws Exception {
+        System.out.println( "failureInSecondChunkCommitted" );
+
+        try {
+            new CliBatchExecutor( executor, 2, true ).execute( batchFailingAt4th() );
+            fail("The duplicate driver should have failed.");
+        }
+        catch( MigrationException ex ){
+            assertTrue( ex.getMessage(), ex.getMessage().contains("at operation 4") );
+        }
+        assertTrue( loggerExists("a") );
+        assertTrue( loggerExists("b") );
+        assertFalse( loggerExists("c") );
+    }
+
+
+    /**
+     *  Split after the remove, the chunk with the add would fail and the original would be gone.
+     */
+    @Test
+    public void testOverwriteNotSplitCommitted() throws Exception {
+        System.out.println( "overwriteNotSplitCommitted" );
+
+        executeFailingOverwrite( true );
+        assertTrue( loggerExists("a") );
+        assertEquals( "DEBUG", readLoggerLevel("org.x") );
+    }
+
+
+    /**
+     *  The overwrite can't be undone, but the resource must not be removed either.
+     */
+    @Test
+    public void testOverwriteNotSplit() throws Exception {
+        System.out.println( "overwriteNotSplit" );
+
+        executeFailingOverwrite( false );
+        assertFalse( loggerExists("a") );
+        assertEquals( "DEBUG", readLoggerLevel("org.x") );
+    }
+
+    private void executeFailingOverwrite( boolean commitPerChunk ) {
+        List<BatchedCommand> cmds = Arrays.asList( addLogger("a", null), removeLogger("org.x"), addLogger("org.x", "DEBUG"), addDuplicateDriver() );
+        try {
+            new CliBatchExecutor( executor, 2, commitPerChunk ).execute( cmds );
+            fail("The duplicate driver should have failed.");
+        }
+        catch( MigrationException ex ){
+            assertTrue( ex.getMessage(), ex.getMessage().contains("at operation 4") );
+        }
+    }
+
+
+
+    private static List<BatchedCommand> batchFailingAt4th() {
+        return new ArrayList( Arrays.asList( addLogger("a", null), addLogger("b", null), addLogger("c", null), addDuplicateDriver() ) );
+    }
+
+    private static BatchedCommand addLogger( String category, String level ) {
+        ModelNode op = loggerOp( ClientConstants.ADD, category );
+        if( level != null )
+            op.get("level").set( level );
+        return new DefaultBatchedCommand( "/subsystem=logging/logger=" + category + ":add", op );
+    }
+
+    private static BatchedCommand removeLogger( String category ) {
+        return new DefaultBatchedCommand( "/subsystem=logging/logger=" + category + ":remove", loggerOp( ClientConstants.REMOVE_OPERATION, category ) );
+    }
+
+    private static BatchedCommand addDuplicateDriver() {
+        ModelNode op = new ModelNode();
+        op.get(ClientConstants.OP).set(ClientConstants.ADD);
+        op.get(ClientConstants.OP_ADDR).add("subsystem", "datasources").add("jdbc-driver", "h2");
+        op.get("driver-module-name").set("com.h2database.h2");
+        return new DefaultBatchedCommand( "/subsystem=datasources/jdbc-driver=h2:add", op );
+    }
+
+    private static ModelNode loggerOp( String opName, String category ) {
+        ModelNode op = new ModelNode();
+        op.get(ClientConstants.OP).set( opName );
+        op.get(ClientConstants.OP_ADDR).add("subsystem", "logging").add("logger", category);
+        return op;
+    }
+
+    private boolean loggerExists( String category ) throws IOException {
+        ModelNode res = client.execute( loggerOp( ClientConstants.READ_RESOURCE_OPERATION, category ) );
+        return ClientConstants.SUCCESS.equals( res.get(ClientConstants.OUTCOME).asString() );
+    }
+
+    private String readLoggerLevel( String category ) throws IOException {
+        ModelNode read = loggerOp( ClientConstants.READ_ATTRIBUTE_OPERATION, category );
+        read.get("name").set("level");
+        return client.execute( read ).get(ClientConstants.RESULT).asString();
+    }
+
+}// class
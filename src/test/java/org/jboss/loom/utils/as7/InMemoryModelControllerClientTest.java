@@ -0,0 +1,62 @@
+package org.jboss.loom.utils.as7;
+
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class InMemoryModelControllerClientTest {
+
+
+    @Test
+    public void testAddAndRead() throws Exception {
+        System.out.println( "addAndRead" );
+
+        InMemoryModelControllerClient client = InMemoryModelControllerClient.createWithDefaultSubsystems();
+        ModelNode res = client.execute( AS7CliUtils.parseCommand("/subsystem=logging/logger=foo:add(level=DEBUG)") );
+        assertEquals( ClientConstants.SUCCESS, res.get(ClientConstants.OUTCOME).asString() );
+
+        res = client.execute( AS7CliUtils.parseCommand("/subsystem=logging/logger=foo:read-attribute(name=level)") );
+        assertEquals( "DEBUG", res.get(ClientConstants.RESULT).asString() );
+
+        res = client.execute( AS7CliUtils.parseCommand("/subsystem=logging/logger=foo:add(level=INFO)") );
+        assertEquals( "failed", res.get(ClientConstants.OUTCOME).asString() );
+        // A single operation's failure-description is a plain string, as in AS 7; Only composites have the steps.
+        assertEquals( "JBAS014803: Duplicate resource /subsystem=logging/logger=foo", res.get(ClientConstants.FAILURE_DESCRIPTION).asString() );
+        assertNull( AS7CliUtils.extractFailedOperationNode( res ) );
+
+        assertEquals( 2, client.getStats().get("add").getCount() );
+        assertEquals( 1, client.getStats().get("read-attribute").getCount() );
+    }
+
+
+    @Test
+    public void testCompositeRollback() throws Exception {
+        System.out.println( "compositeRollback" );
+
+        InMemoryModelControllerClient client = InMemoryModelControllerClient.createWithDefaultSubsystems();
+        ModelNode composite = new ModelNode();
+        composite.get(ClientConstants.OP).set(ClientConstants.COMPOSITE);
+        composite.get(ClientConstants.OP_ADDR).setEmptyList();
+        ModelNode steps = composite.get(ClientConstants.STEPS);
+        steps.add( AS7CliUtils.parseCommand("/subsystem=logging/logger=foo:add(level=DEBUG)") );
+        steps.add( AS7CliUtils.parseCommand("/subsystem=datasources/jdbc-driver=h2:add(driver-module-name=com.h2database.h2)") );
+
+        ModelNode res = client.execute( composite );
+        BatchFailure failure = AS7CliUtils.extractFailedOperationNode( res );
+        assertNotNull( failure );
+        assertEquals( Integer.valueOf(2), failure.getIndex() );
+        assertTrue( failure.getMessage(), failure.getMessage().contains("JBAS014803: Duplicate resource /subsystem=datasources/jdbc-driver=h2") );
+        assertEquals( "JBAS014653: Composite operation failed and was rolled back. Steps that failed:",
+                res.get(ClientConstants.FAILURE_DESCRIPTION).keys().iterator().next() );
+
+        // The first step was rolled back.
+        res = client.execute( AS7CliUtils.parseCommand("/subsystem=logging/logger=foo:read-resource") );
+        assertEquals( "failed", res.get(ClientConstants.OUTCOME).asString() );
+    }
+
+}// class
@@ -0,0 +1,195 @@
+package org.jboss.loom.utils.as7;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.apache.commons.io.FileUtils;
+import org.jboss.as.controller.client.helpers.ClientConstants;
+import org.jboss.dmr.ModelNode;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+
+/**
+ *
+ * @author Ondrej Zizka, ozizka at redhat.com
+ */
+public class OfflineConfigTargetTest {
+
+    private static final File ORIG_CONFIG = new File("testdata/as7configs/standalone.xml");
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File configFile;
+    private OfflineConfigTarget target;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.configFile = new File( tmp.getRoot(), "standalone.xml");
+        FileUtils.copyFile( ORIG_CONFIG, this.configFile );
+        this.target = new OfflineConfigTarget( this.configFile ).load();
+    }
+
+
+    @Test
+    public void testAddWriteAndRemove() throws Exception {
+        System.out.println( "addWriteAndRemove" );
+
+        ModelNode add = op( ClientConstants.ADD, "subsystem=logging/logger=org.foo" );
+        add.get("level").set("DEBUG");
+        assertSuccess( target.execute( add ) );
+        assertFailure( target.execute( add ) ); // Duplicate.
+
+        ModelNode read = op( ClientConstants.READ_ATTRIBUTE_OPERATION, "subsystem=logging/logger=org.foo" );
+        read.get("name").set("level");
+        assertEquals( "DEBUG", assertSuccess( target.execute( read ) ).asString() );
+
+        ModelNode write = op( ClientConstants.WRITE_ATTRIBUTE_OPERATION, "subsystem=datasources/data-source=ExampleDS" );
+        write.get("name").set("min-pool-size");
+        write.get("value").set("5");
+        assertSuccess( target.execute( write ) );
+        read = op( ClientConstants.READ_ATTRIBUTE_OPERATION, "subsystem=datasources/data-source=ExampleDS" );
+        read.get("name").set("min-pool-size");
+        assertEquals( "5", assertSuccess( target.execute( read ) ).asString() );
+
+        assertSuccess( target.execute( op( ClientConstants.REMOVE_OPERATION, "subsystem=logging/logger=org.foo" ) ) );
+        assertFailure( target.execute( op( ClientConstants.READ_RESOURCE_OPERATION, "subsystem=logging/logger=org.foo" ) ) );
+        assertFailure( target.execute( op( ClientConstants.REMOVE_OPERATION, "subsystem=logging/logger=org.foo" ) ) );
+
+        target.save();
+        Element ds = child( child( getSubsystem("datasources"), "datasources" ), "datasource" );
+        assertEquals( "5", child( child( ds, "pool" ), "min-pool-size" ).getTextContent() );
+        assertFalse( FileUtils.readFileToString( configFile ).contains("org.foo") );
+    }
+
+
+    /**
+     *  The datasources schema requires datasource*, xa-datasource*, drivers.
+     */
+    @Test
+    public void testDatasourcesOrder() throws Exception {
+        System.out.println( "datasourcesOrder" );
+
+        // No <datasource> left, and there's no <xa-datasource> in the stock file.
+        assertSuccess( target.execute( op( ClientConstants.REMOVE_OPERATION, "subsystem=datasources/data-source=ExampleDS" ) ) );
+
+        ModelNode xa = op( ClientConstants.ADD, "subsystem=datasources/xa-data-source=FooXA" );
+        xa.get("jndi-name").set("java:jboss/datasources/FooXA");
+        xa.get("driver-name").set("h2");
+        assertSuccess( target.execute( xa ) );
+
+        ModelNode ds = op( ClientConstants.ADD, "subsystem=datasources/data-source=Foo" );
+        ds.get("jndi-name").set("java:jboss/datasources/Foo");
+        ds.get("connection-url").set("jdbc:h2:mem:foo");
+        ds.get("driver-name").set("h2");
+        assertSuccess( target.execute( ds ) );
+
+        ModelNode driver = op( ClientConstants.ADD, "subsystem=datasources/jdbc-driver=mysql" );
+        driver.get("driver-module-name").set("com.mysql");
+        assertSuccess( target.execute( driver ) );
+
+        target.save();
+        Element datasources = child( getSubsystem("datasources"), "datasources" );
+        assertEquals( "[datasource, xa-datasource, drivers]", childNames( datasources ).toString() );
+        assertEquals( "[driver, driver]", childNames( child( datasources, "drivers" ) ).toString() );
+    }
+
+
+    @Test
+    public void testCompositeRollback() throws Exception {
+        System.out.println( "compositeRollback" );
+
+        ModelNode composite = new ModelNode();
+        composite.get(ClientConstants.OP).set(ClientConstants.COMPOSITE);
+        composite.get(ClientConstants.OP_ADDR).setEmptyList();
+        ModelNode steps = composite.get(ClientConstants.STEPS);
+        steps.add( op( ClientConstants.ADD, "subsystem=logging/logger=org.foo" ) );
+        ModelNode driver = op( ClientConstants.ADD, "subsystem=datasources/jdbc-driver=h2" ); // Duplicate.
+        driver.get("driver-module-name").set("com.h2database.h2");
+        steps.add( driver );
+
+        BatchFailure failure = AS7CliUtils.extractFailedOperationNode( target.execute( composite ) );
+        assertNotNull( failure );
+        assertEquals( Integer.valueOf(2), failure.getIndex() );
+
+        // The first step was rolled back, and there's nothing to save.
+        assertFailure( target.execute( op( ClientConstants.READ_RESOURCE_OPERATION, "subsystem=logging/logger=org.foo" ) ) );
+        target.save();
+        assertFalse( new File( configFile.getPath() + ".before-migration" ).exists() );
+    }
+
+
+    @Test
+    public void testSaveAndRollback() throws Exception {
+        System.out.println( "saveAndRollback" );
+
+        String orig = FileUtils.readFileToString( configFile );
+        assertSuccess( target.execute( op( ClientConstants.ADD, "subsystem=logging/logger=org.foo" ) ) );
+        target.save();
+
+        File backup = new File( configFile.getPath() + ".before-migration" );
+        assertEquals( orig, FileUtils.readFileToString( backup ) );
+        assertTrue( FileUtils.readFileToString( configFile ).contains("org.foo") );
+
+        target.rollback();
+        assertEquals( orig, FileUtils.readFileToString( configFile ) );
+        // Reloaded from the restored file.
+        assertFailure( target.execute( op( ClientConstants.READ_RESOURCE_OPERATION, "subsystem=logging/logger=org.foo" ) ) );
+    }
+
+
+
+    private static ModelNode op( String name, String address ) {
+        ModelNode op = new ModelNode();
+        op.get(ClientConstants.OP).set( name );
+        ModelNode addr = op.get(ClientConstants.OP_ADDR).setEmptyList();
+        for( String seg : address.split("/") )
+            addr.add( seg.substring( 0, seg.indexOf('=') ), seg.substring( seg.indexOf('=') + 1 ) );
+        return op;
+    }
+
+    /**
+     *  @returns  The result.
+     */
+    private static ModelNode assertSuccess( ModelNode response ) {
+        assertEquals( response.toString(), ClientConstants.SUCCESS, response.get(ClientConstants.OUTCOME).asString() );
+        return response.has(ClientConstants.RESULT) ? response.get(ClientConstants.RESULT) : new ModelNode();
+    }
+
+    private static void assertFailure( ModelNode response ) {
+        assertEquals( response.toString(), "failed", response.get(ClientConstants.OUTCOME).asString() );
+    }
+
+
+    /**
+     *  Parses the saved file.
+     */
+    private Element getSubsystem( String name ) throws Exception {
+        Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( configFile ).getDocumentElement();
+        for( Element sub : OfflineResourceMapping.childElements( child( root, "profile" ), "subsystem" ) ) {
+            if( sub.getAttribute("xmlns").startsWith("urn:jboss:domain:" + name + ":") )
+                return sub;
+        }
+        fail("No subsystem " + name);
+        return null;
+    }
+
+    private static Element child( Element parent, String name ) {
+        Element child = OfflineResourceMapping.firstChild( parent, name );
+        assertNotNull( "No <" + name + "> in <" + parent.getNodeName() + ">", child );
+        return child;
+    }
+
+    private static List<String> childNames( Element parent ) {
+        List<String> names = new ArrayList();
+        for( Element el : OfflineResourceMapping.childElements( parent, null ) )
+            names.add( el.getNodeName() );
+        return names;
+    }
+
+}// class
@@ -1,8 +1,10 @@
 package org.jboss.loom.utils.compar;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.commons.io.filefilter.FileFilterUtils;
@@ -48,6 +50,28 @@ public class FileHashComparerTest {
     }
 
 
+    /**
+     * Test of compareHashesAndDir method with a HashDatabase, written and read back.
+     */
+    @Test
+    public void testCompareHashDatabaseAndDir() throws Exception {
+        System.out.println( "compareHashDatabaseAndDir" );
+        
+        File hashes = new File("testdata/utils/crc32hashes.txt");
+        File bin = File.createTempFile("hashes", ".bin");
+        bin.deleteOnExit();
+        HashDatabase.fromHashFiles( Arrays.asList( hashes ), Arrays.asList("1.0") ).write( bin );
+        HashDatabase db = HashDatabase.load( new FileInputStream( bin ) );
+        assertEquals( 0, db.indexOfVersion("1.0") );
+        
+        ComparisonResult results = FileHashComparer.compareHashesAndDir( db, 0, new File("./testdata/singleFiles/"), null );
+        
+        assertEquals( FileHashComparer.MatchResult.MATCH,    results.getMatches().get(PATH_ORACLE_DS) );
+        assertEquals( FileHashComparer.MatchResult.MISMATCH, results.getMatches().get(PATH_DATASOURCES) );
+        assertEquals( FileHashComparer.MatchResult.MISSING,  results.getMatches().get(PATH_NON_EXISTENT) );
+    }
+
+
     /**
      * Test of readHashFile method, of class FileHashComparer.
      */